@@ -1,10 +1,24 @@
 package main.agent;
 
 import main.config.AlfaConfig;
+import main.config.Lane;
 import main.core.BatchHandler;
-import main.core.PathHandler;
+import main.core.GovernorMetrics;
+import main.core.LaneMetrics;
+import main.core.PatternCache;
+import main.core.PatternProfile;
+import main.core.PoolMetrics;
 import main.core.ThreadHandler;
+import main.flow.Match;
+import main.index.MatchIndex;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -13,7 +27,6 @@ import java.util.concurrent.TimeUnit;
 public class AlfaAgent {
 
     private AlfaConfig config;
-    private PathHandler pathHandler;
     private ThreadHandler threadHandler;
     private BatchHandler batchHandler;
     private AlfaNotifier alfaNotifier;
@@ -21,6 +34,9 @@ public class AlfaAgent {
 
     //this field can be approached by several threads
     private volatile boolean isRunning = false;
+    private Thread shutdownHook;
+    // null unless a control port is configured and the agent is running
+    private ControlServer controlServer;
 
     /**
      * Create AlfaAgent
@@ -33,8 +49,6 @@ public class AlfaAgent {
         }
         this.config = config;
 
-        //  Initialize PathHandler
-        this.pathHandler = new PathHandler(this.config);
         //  Initialize ThreadHandler (Runnable tasks)
         this.threadHandler = new ThreadHandler(this.config);
         // Initialize BatchHandler (Scheduler)
@@ -43,7 +57,7 @@ public class AlfaAgent {
 
     /**
      * Starts the main.agent. (Indefinite execution)
-     * Throws RuntimeException if path verification fails.
+     * Sources that cannot be opened are reported to onError and retried in the background.
      */
     public void start() {
         if (isRunning) {
@@ -51,14 +65,6 @@ public class AlfaAgent {
             return;
         }
 
-        try {
-            System.out.println("[AlfaAgent] Starting path verification...");
-            pathHandler.verifyAllPaths();
-            System.out.println("[AlfaAgent] Path verification complete.");
-        } catch (RuntimeException e) {
-            System.err.println("[AlfaAgent] Path verification failed: " + e.getMessage());
-            return;
-        }
         if(config.isNotifierEnabled()){
         System.out.println("[AlfaAgent] Starting file existence notifier...");
         alfaNotifier = new AlfaNotifier(this.config, this);
@@ -68,18 +74,16 @@ public class AlfaAgent {
         notifierThread.start();
         }
 
-        System.out.println("[AlfaAgent] Initializing tasks and file resources...");
-        threadHandler.initializeTasks();
-        System.out.println("[AlfaAgent] Initialization complete.");
+        initializeTasks();
 
         System.out.println("[AlfaAgent] Starting main.agent (indefinite execution)...");
         batchHandler.startBatchProcessing();
         isRunning = true;
+        startControlServer();
     }
 
     /**
      * Starts the main.agent for a specified duration (in seconds) and then automatically stops.
-     * Does not start if path verification fails.
      * @param durationInSeconds The execution duration in seconds.
      */
     public void start(int durationInSeconds) {
@@ -88,15 +92,6 @@ public class AlfaAgent {
             return;
         }
 
-        try {
-            System.out.println("[AlfaAgent] Starting path verification...");
-            pathHandler.verifyAllPaths(); // 1. Validate file paths
-            System.out.println("[AlfaAgent] Path verification complete.");
-        } catch (RuntimeException e) {
-            System.err.println("[AlfaAgent] Path verification failed: " + e.getMessage());
-            return;
-        }
-
         if(config.isNotifierEnabled()) {
             System.out.println("[AlfaAgent] Starting file existence notifier...");
             alfaNotifier = new AlfaNotifier(this.config, this);
@@ -106,17 +101,43 @@ public class AlfaAgent {
             notifierThread.start();
         }
 
-        System.out.println("[AlfaAgent] Initializing tasks and file resources...");
-        threadHandler.initializeTasks();
-        System.out.println("[AlfaAgent] Initialization complete.");
+        initializeTasks();
 
         Runnable onStopCallback = () -> {
+            closeControlServer();
             this.isRunning = false;
             System.out.println("[AlfaAgent] Auto-stop task complete.");
         };
 
         batchHandler.agentOn(durationInSeconds, true, onStopCallback);
         isRunning = true; // Considered 'running' once agentOn is called
+        startControlServer();
+    }
+
+    private synchronized void startControlServer() {
+        if (config.getControlPort() <= 0 || controlServer != null) {
+            return;
+        }
+        try {
+            controlServer = new ControlServer(this, config.getControlPort());
+            controlServer.start();
+        } catch (IOException | IllegalStateException e) {
+            controlServer = null;
+            System.err.println("[AlfaAgent] Could not open the control endpoint on port " + config.getControlPort() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the sources in parallel. Paths are verified per source (see AlfaConfig.isVerifyPathsOnStart()):
+     * a missing or hanging file is reported and retried in the background instead of blocking the start.
+     */
+    private void initializeTasks() {
+        batchHandler.restoreCheckpoint();
+        System.out.println("[AlfaAgent] Initializing tasks and file resources...");
+        threadHandler.initializeTasks();
+        int pending = threadHandler.getPendingSymbols().size();
+        System.out.println("[AlfaAgent] Initialization complete. " + (config.getAbsPathSymbols().size() - pending)
+                + " source(s) ready" + (pending > 0 ? ", " + pending + " pending in the background." : "."));
     }
 
     /**
@@ -146,10 +167,203 @@ public class AlfaAgent {
         notifierThread = null;
 
         batchHandler.stopBatchProcessing();
+        // Flow subscribers resume with matchesFrom() after a restart
+        config.getMatchHub().completeAll();
+        closeControlServer();
         isRunning = false;
         System.out.println("[AlfaAgent] Agent stop complete.");
     }
 
+    /**
+     * Writes the current read positions to the checkpoint file of the config.
+     * @return false if no checkpoint file is configured or writing failed.
+     */
+    public boolean checkpoint() {
+        return batchHandler.saveCheckpoint();
+    }
+
+    private synchronized void closeControlServer() {
+        if (controlServer != null) {
+            controlServer.close();
+            controlServer = null;
+        }
+    }
+
+    /**
+     * Flushes the result handler, then writes the read positions to the checkpoint file, e.g. before a deploy.
+     * @return false if no checkpoint file is configured or flushing or writing failed.
+     */
+    public boolean flushAndCheckpoint() {
+        return batchHandler.flushAndCheckpoint();
+    }
+
+    /**
+     * Stops reading a symbol after its current run; its position is kept. Null pauses every source.
+     */
+    public void pause(String symbol) {
+        for (String s : symbolsOf(symbol)) {
+            config.setPaused(s, true);
+        }
+    }
+
+    /**
+     * Resumes a paused symbol and reads it right away. Null resumes every source.
+     */
+    public void resume(String symbol) {
+        for (String s : symbolsOf(symbol)) {
+            config.setPaused(s, false);
+            batchHandler.wake(s);
+        }
+    }
+
+    public boolean isPaused(String symbol) {
+        return config.isPaused(symbol);
+    }
+
+    /**
+     * Replaces the filters of a symbol without a restart. They are compiled here, so an invalid filter is
+     * rejected before anything changes; the next run of the symbol uses the new filters.
+     * @throws IllegalArgumentException If the symbol is unknown or a filter is invalid (PatternSyntaxException).
+     */
+    public void updateFilters(String symbol, List<String> filters) {
+        if (!config.getAbsPathSymbols().contains(symbol)) {
+            throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        }
+        PatternCache.get(new LinkedHashSet<>(filters));
+        config.setFilters(symbol, filters);
+    }
+
+    /**
+     * @return Symbols whose source is not open yet (missing file, retried in the background).
+     */
+    public Set<String> getPendingSymbols() {
+        return threadHandler.getPendingSymbols();
+    }
+
+    private Set<String> symbolsOf(String symbol) {
+        if (symbol == null) {
+            return config.getAbsPathSymbols();
+        }
+        if (!config.getAbsPathSymbols().contains(symbol)) {
+            throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        }
+        return Set.of(symbol);
+    }
+
+    AlfaConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return Phase name to duration in ms of the last stop (stop-scheduling, drain, flush, checkpoint, close).
+     */
+    public Map<String, Long> getLastShutdownTimings() {
+        return batchHandler.getLastShutdownTimings();
+    }
+
+    /**
+     * @return Where the pool spent its time and the size decisions of the last adjustment (see PoolTuner),
+     * or null before the first start.
+     */
+    public PoolMetrics getPoolMetrics() {
+        return batchHandler.getPoolMetrics();
+    }
+
+    /**
+     * @return Queue time, latency and SLO misses of each lane since start (see Lane).
+     */
+    public Map<Lane, LaneMetrics> getLaneMetrics() {
+        return batchHandler.getLaneMetrics();
+    }
+
+    /**
+     * @return Whether the ResourceGovernor is holding runs back and its totals, see AlfaConfig.setCpuPercent() and
+     * the other resource limits.
+     */
+    public GovernorMetrics getGovernorMetrics() {
+        return config.getResourceGovernor().getMetrics();
+    }
+
+    /**
+     * @return Estimated evaluations, hits and time of each filter of the symbol, most expensive first
+     * (see CompiledFilterSet.getProfile()). Symbols with the same filters share one profile.
+     */
+    public List<PatternProfile> getPatternProfile(String symbol) {
+        Set<String> filters = config.getFilterOpts().get(symbol);
+        return filters == null ? Collections.emptyList() : PatternCache.get(filters).getProfile();
+    }
+
+    /**
+     * Registers a JVM shutdown hook that stops the main.agent (drain, flush, checkpoint) on SIGTERM or System.exit.
+     * Calling it again has no effect.
+     */
+    public synchronized void registerShutdownHook() {
+        if (shutdownHook != null) {
+            return;
+        }
+        shutdownHook = new Thread(() -> {
+            if (isRunning) {
+                stop();
+            }
+        }, "AlfaShutdownHook");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Number of matches in the last 'windowMillis' (see MatchIndex). Returns 0 when no MatchIndex is configured.
+     * @param symbol Path symbol, or null for all.
+     * @param keyword Filter keyword, or null for all.
+     */
+    public long countMatches(String symbol, String keyword, long windowMillis) {
+        MatchIndex index = config.getMatchIndex();
+        return index == null ? 0 : index.count(symbol, keyword, windowMillis);
+    }
+
+    /**
+     * The k most frequent line templates in the last 'windowMillis', e.g. the top error templates of the last hour.
+     * Returns an empty list when no MatchIndex is configured.
+     */
+    public List<MatchIndex.TemplateCount> topTemplates(String symbol, String keyword, long windowMillis, int k) {
+        MatchIndex index = config.getMatchIndex();
+        return index == null ? Collections.emptyList() : index.topTemplates(symbol, keyword, windowMillis, k);
+    }
+
+    /**
+     * The newest raw lines that matched 'keyword' in the file of 'symbol', newest first.
+     * Returns an empty list when no MatchIndex is configured.
+     */
+    public List<String> recentMatches(String symbol, String keyword, int limit) {
+        MatchIndex index = config.getMatchIndex();
+        return index == null ? Collections.emptyList() : index.recentSamples(symbol, keyword, limit);
+    }
+
+    /**
+     * The matches of one symbol as a Flow.Publisher. While it has subscribers, the file is read only as far as
+     * their demand reaches: every subscriber gets each match, and none gets more than it requested.
+     * Subscribers are completed when the agent stops.
+     */
+    public Flow.Publisher<Match> matches(String symbol) {
+        return config.getMatchHub().publisher(symbol);
+    }
+
+    /**
+     * The matches of every symbol in one Publisher. Its demand gates the reading of all files.
+     */
+    public Flow.Publisher<Match> matches() {
+        return config.getMatchHub().merged();
+    }
+
+    /**
+     * Like matches(symbol), but reading restarts at 'offset', usually Match.getOffset() of the last match the
+     * subscriber processed. The result handler sees the lines after 'offset' again.
+     */
+    public Flow.Publisher<Match> matchesFrom(String symbol, long offset) {
+        return subscriber -> {
+            config.getMatchHub().publisher(symbol).subscribe(subscriber);
+            config.getMatchHub().seek(symbol, offset);
+        };
+    }
+
     /**
      * Returns the current running state of the main.agent.
      * @return true if running
@@ -0,0 +1,65 @@
+package main.agent;
+
+import main.config.AlfaConfig;
+import main.config.AlfaConfigLoader;
+import main.core.PatternCache;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs Alfa as a standalone process (sidecar) configured by a properties file.
+ * <pre>
+ * java -cp alfa.jar main.agent.AlfaDaemon alfa.properties           # run until SIGTERM, then drain and checkpoint
+ * java -cp alfa.jar main.agent.AlfaDaemon alfa.properties --check   # validate config and filters, then exit
+ * </pre>
+ * See AlfaConfigLoader for the keys. '--check' runs no task, so it is also the training run for an AppCDS archive.
+ */
+public class AlfaDaemon {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("--check"))) {
+            System.err.println("Usage: AlfaDaemon <config.properties> [--check]");
+            System.exit(2);
+        }
+        long begin = System.nanoTime();
+
+        AlfaConfig config;
+        try {
+            config = AlfaConfigLoader.load(Paths.get(args[0]));
+            compileFilters(config);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[AlfaAgent] Invalid configuration " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (args.length == 2) {
+            System.out.println("[AlfaAgent] Configuration OK: " + config.getAbsPaths().size() + " source(s).");
+            return;
+        }
+
+        AlfaAgent agent = new AlfaAgent(config);
+        // SIGTERM drains the runs in progress and saves the checkpoint before the JVM exits
+        agent.registerShutdownHook();
+
+        agent.start();
+        if (!agent.isRunning()) {
+            System.exit(1);
+        }
+        // the scheduler threads keep the JVM alive until the shutdown hook stops the agent
+        System.out.println("[AlfaAgent] Daemon ready in " + (System.nanoTime() - begin) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Compiles every filter set up front, so invalid regexes fail the start instead of the first batch.
+     */
+    private static void compileFilters(AlfaConfig config) {
+        for (Map.Entry<String, Set<String>> entry : config.getFilterOpts().entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                PatternCache.get(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package main.agent;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.config.AlfaConfig;
+import main.config.Lane;
+import main.core.GovernorMetrics;
+import main.core.LaneMetrics;
+import main.core.PoolMetrics;
+import main.core.SourceRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Small HTTP endpoint to operate a running agent from outside the process, e.g. to drain it before a deploy.
+ * It listens on the loopback interface only and answers with JSON. Every request only reads counters, flips
+ * a flag or starts background work, so polling is cheap; the requests are served one at a time on their own
+ * thread, never on the pool.
+ * <pre>
+ * GET  /status                   running state, paused and pending sources, pool, lane and governor metrics
+ * GET  /metrics[?symbol=S]       offset, lines, bytes and matches per source
+ * POST /pause[?symbol=S]         stop reading S (all sources without symbol) after the current run
+ * POST /resume[?symbol=S]        read again, starting right away
+ * POST /checkpoint               start flushing the result handler and writing the checkpoint file (202)
+ * GET  /checkpoint               progress of the last checkpoint: idle, running, saved or failed
+ * GET  /filters?symbol=S         filters of S, one per line
+ * POST /filters?symbol=S         replace the filters of S with the body, one per line
+ * </pre>
+ * Every request must send the token of the config (AlfaConfig.setControlToken) as "Authorization: Bearer ...";
+ * the endpoint does not open without one. Requests with an Origin header or a Host other than the loopback
+ * address are refused, so a web page in a browser on the host cannot reach it, not even by DNS rebinding.
+ * Errors are answered with a status code and {"error": "..."}.
+ */
+public class ControlServer implements AutoCloseable {
+
+    private final AlfaAgent agent;
+    private final AlfaConfig config;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> daemon(r, "AlfaControl"));
+    // flushes run here, so a hanging result handler never blocks the requests
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> daemon(r, "AlfaControl-flush"));
+    private final byte[] token;
+    // the last flush and checkpoint; a request while it runs joins it instead of queueing another
+    private Future<Boolean> checkpoint;
+    private long checkpointStarted;
+    private volatile long checkpointMillis;
+
+    /**
+     * @param port Port on the loopback interface, 0 for any free port (see getPort()).
+     * @throws IllegalStateException If the config has no control token.
+     */
+    public ControlServer(AlfaAgent agent, int port) throws IOException {
+        this.agent = agent;
+        this.config = agent.getConfig();
+        String configured = config.getControlToken();
+        if (configured == null || configured.isEmpty()) {
+            throw new IllegalStateException("No control token configured");
+        }
+        this.token = configured.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/status", exchange -> handle(exchange, "GET", this::status));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+        server.createContext("/pause", exchange -> handle(exchange, "POST", this::pause));
+        server.createContext("/resume", exchange -> handle(exchange, "POST", this::resume));
+        server.createContext("/checkpoint", exchange -> handle(exchange, null, 202, this::checkpoint));
+        server.createContext("/filters", exchange -> handle(exchange, null, this::filters));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("[AlfaAgent] Control endpoint listening on http://127.0.0.1:" + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        flushExecutor.shutdownNow();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private interface Handler {
+        String handle(HttpExchange exchange) throws IOException;
+    }
+
+    // a bad request, answered with its status code
+    private static class ControlException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ControlException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        handle(exchange, method, 200, handler);
+    }
+
+    /**
+     * @param postStatus The status of a successful POST, e.g. 202 for one that only starts work.
+     */
+    private void handle(HttpExchange exchange, String method, int postStatus, Handler handler) throws IOException {
+        int status = exchange.getRequestMethod().equals("POST") ? postStatus : 200;
+        String body;
+        try {
+            authorize(exchange);
+            if (method != null && !method.equals(exchange.getRequestMethod())) {
+                throw new ControlException(405, "Use " + method);
+            }
+            body = handler.handle(exchange);
+        } catch (ControlException e) {
+            status = e.status;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (RuntimeException e) {
+            status = 500;
+            body = "{\"error\":" + quote(String.valueOf(e)) + "}";
+        }
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                body.startsWith("{") ? "application/json" : "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void authorize(HttpExchange exchange) {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            throw new ControlException(403, "Requests from web pages are not accepted");
+        }
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLoopback(host)) {
+            throw new ControlException(403, "Host must be the loopback address");
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] sent = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (!MessageDigest.isEqual(sent, token)) {
+            throw new ControlException(401, "Missing or wrong token");
+        }
+    }
+
+    // "127.0.0.1:9465", "localhost", "[::1]:9465": names that cannot be rebound to another address
+    private static boolean isLoopback(String host) {
+        String name = host;
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            name = end < 0 ? name : name.substring(1, end);
+        } else if (name.indexOf(':') >= 0) {
+            name = name.substring(0, name.indexOf(':'));
+        }
+        return name.equals("127.0.0.1") || name.equalsIgnoreCase("localhost") || name.equals("::1");
+    }
+
+    private String status(HttpExchange exchange) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"running\":").append(agent.isRunning());
+        json.append(",\"sources\":").append(config.getAbsPathSymbols().size());
+        json.append(",\"paused\":").append(array(config.getPausedSymbols()));
+        json.append(",\"pending\":").append(array(agent.getPendingSymbols()));
+        json.append(",\"checkpoint\":").append(quote(checkpointState()));
+        PoolMetrics pool = agent.getPoolMetrics();
+        if (pool != null) {
+            json.append(",\"pool\":{\"size\":").append(pool.getPoolSize())
+                    .append(",\"target\":").append(pool.getTargetSize())
+                    .append(",\"busyThreads\":").append(number(pool.getBusyThreads()))
+                    .append(",\"ioShare\":").append(number(pool.getIoShare()))
+                    .append(",\"matchShare\":").append(number(pool.getMatchShare()))
+                    .append(",\"handlerShare\":").append(number(pool.getHandlerShare()))
+                    .append(",\"overdueTasks\":").append(pool.getOverdueTasks())
+                    .append('}');
+        }
+        GovernorMetrics governor = agent.getGovernorMetrics();
+        StringJoiner reasons = new StringJoiner(",", "[", "]");
+        governor.getReasons().forEach(reason -> reasons.add(quote(reason.name().toLowerCase())));
+        json.append(",\"governor\":{\"throttled\":").append(governor.isThrottled())
+                .append(",\"reasons\":").append(reasons)
+                .append(",\"deferredRuns\":").append(governor.getDeferredRuns())
+                .append(",\"shortenedRuns\":").append(governor.getShortenedRuns())
+                .append(",\"sampledRuns\":").append(governor.getSampledRuns())
+                .append(",\"throttledMillis\":").append(governor.getThrottledMillis())
+                .append(",\"heldBytes\":").append(governor.getHeldBytes())
+                .append('}');
+        json.append(",\"lanes\":{");
+        String separator = "";
+        for (Map.Entry<Lane, LaneMetrics> entry : agent.getLaneMetrics().entrySet()) {
+            LaneMetrics lane = entry.getValue();
+            json.append(separator).append(quote(entry.getKey().name()))
+                    .append(":{\"runs\":").append(lane.getRuns())
+                    .append(",\"avgLatencyMillis\":").append(number(lane.getAvgLatencyMillis()))
+                    .append(",\"maxLatencyMillis\":").append(number(lane.getMaxLatencyMillis()))
+                    .append(",\"sloMisses\":").append(lane.getSloMisses())
+                    .append(",\"yields\":").append(lane.getYields())
+                    .append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private String metrics(HttpExchange exchange) {
+        String symbol = query(exchange, "symbol");
+        Collection<String> symbols = symbol == null ? new TreeSet<>(config.getAbsPathSymbols()) : List.of(known(symbol));
+        SourceRegistry registry = config.getSourceRegistry();
+        StringBuilder json = new StringBuilder("{");
+        String separator = "";
+        for (String s : symbols) {
+            int slot = registry.slotOf(s);
+            json.append(separator).append(quote(s))
+                    .append(":{\"offset\":").append(registry.getOffset(slot))
+                    .append(",\"linesRead\":").append(registry.getLinesRead(slot))
+                    .append(",\"bytesRead\":").append(registry.getBytesRead(slot))
+                    .append(",\"matches\":").append(registry.getMatches(slot))
+                    .append(",\"paused\":").append(config.isPaused(s))
+                    .append(",\"lane\":").append(quote(config.getLane(s).name()))
+                    .append('}');
+            separator = ",";
+        }
+        return json.append('}').toString();
+    }
+
+    private String pause(HttpExchange exchange) {
+        String symbol = query(exchange, "symbol");
+        agent.pause(symbol == null ? null : known(symbol));
+        return "{\"paused\":" + array(config.getPausedSymbols()) + "}";
+    }
+
+    private String resume(HttpExchange exchange) {
+        String symbol = query(exchange, "symbol");
+        agent.resume(symbol == null ? null : known(symbol));
+        return "{\"paused\":" + array(config.getPausedSymbols()) + "}";
+    }
+
+    /**
+     * POST starts a flush and checkpoint on the flush thread (or joins the one running) and answers 202 at once;
+     * GET reports its progress.
+     */
+    private String checkpoint(HttpExchange exchange) {
+        if (config.getCheckpointFile() == null) {
+            throw new ControlException(409, "No checkpoint file configured");
+        }
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST")) {
+            if (checkpoint == null || checkpoint.isDone()) {
+                checkpointStarted = System.nanoTime();
+                long started = checkpointStarted;
+                checkpoint = flushExecutor.submit(() -> {
+                    try {
+                        return agent.flushAndCheckpoint();
+                    } finally {
+                        checkpointMillis = (System.nanoTime() - started) / 1_000_000;
+                    }
+                });
+            }
+            return checkpointJson();
+        }
+        if (!method.equals("GET")) {
+            throw new ControlException(405, "Use GET or POST");
+        }
+        return checkpointJson();
+    }
+
+    private String checkpointJson() {
+        String state = checkpointState();
+        StringBuilder json = new StringBuilder("{\"state\":").append(quote(state))
+                .append(",\"file\":").append(quote(config.getCheckpointFile()));
+        if (state.equals("running")) {
+            json.append(",\"runningMillis\":").append((System.nanoTime() - checkpointStarted) / 1_000_000);
+        } else if (!state.equals("idle")) {
+            json.append(",\"millis\":").append(checkpointMillis);
+        }
+        if (state.equals("failed")) {
+            json.append(",\"error\":").append(quote(checkpointError()));
+        }
+        return json.append('}').toString();
+    }
+
+    // idle, running, saved or failed; only called on the request thread
+    private String checkpointState() {
+        if (checkpoint == null) {
+            return "idle";
+        }
+        if (!checkpoint.isDone()) {
+            return "running";
+        }
+        return checkpointError() == null ? "saved" : "failed";
+    }
+
+    private String checkpointError() {
+        try {
+            return checkpoint.get() ? null : "Flush or checkpoint failed, see the agent log";
+        } catch (ExecutionException e) {
+            return "Flush or checkpoint failed: " + e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted";
+        } catch (CancellationException e) {
+            return "Cancelled";
+        }
+    }
+
+    private String filters(HttpExchange exchange) throws IOException {
+        String symbol = query(exchange, "symbol");
+        if (symbol == null) {
+            throw new IllegalArgumentException("Missing symbol");
+        }
+        known(symbol);
+        if (exchange.getRequestMethod().equals("POST")) {
+            List<String> filters = new ArrayList<>();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            for (String line : body.split("\r?\n")) {
+                if (!line.isBlank()) {
+                    filters.add(line.strip());
+                }
+            }
+            agent.updateFilters(symbol, filters);
+            return "{\"symbol\":" + quote(symbol) + ",\"filters\":" + array(filters) + "}";
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw new ControlException(405, "Use GET or POST");
+        }
+        Set<String> filters = config.getFilterOpts().get(symbol);
+        return filters == null ? "" : String.join("\n", filters);
+    }
+
+    private String known(String symbol) {
+        if (!config.getAbsPathSymbols().contains(symbol)) {
+            throw new ControlException(404, "Unknown symbol: " + symbol);
+        }
+        return symbol;
+    }
+
+    private static String query(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String array(Collection<String> values) {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (String value : values instanceof List ? values : new TreeSet<>(values)) {
+            joiner.add(quote(value));
+        }
+        return joiner.toString();
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "null";
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -1,5 +1,11 @@
 package main.config;
 
+import main.core.LaneMonitor;
+import main.core.ResourceGovernor;
+import main.core.SourceRegistry;
+import main.flow.MatchHub;
+import main.index.MatchIndex;
+
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -24,16 +30,109 @@ public class AlfaConfig {
     private final  Set<String> absPathSymbols = new HashSet<>();
 
     // in FilterHandler it will be used by filtering log.
-    private Map<String,Set<String>> filterOpts;
+    // replaced as a whole by setFilters(), so readers never see a set change under them
+    private volatile Map<String,Set<String>> filterOpts;
+
+    // read offsets, file keys and counters of every path symbol in flat arrays
+    private final SourceRegistry sourceRegistry = new SourceRegistry();
 
-    private final Map<String, Long> lastReadPositions = new ConcurrentHashMap<>();
+    // optional sampling per path symbol, symbols without an entry deliver every match
+    private final Map<String, SamplingPolicy> samplingPolicies = new ConcurrentHashMap<>();
 
     private Charset fileEncoding = StandardCharsets.UTF_8;
 
+    // encodings of single path symbols, overriding fileEncoding
+    private final Map<String, Charset> symbolEncodings = new ConcurrentHashMap<>();
+
+    // sniff the encoding of symbols without an own encoding (see EncodingDetector), for all or for the listed ones
+    private boolean detectEncoding = false;
+    private final Set<String> detectEncodingSymbols = ConcurrentHashMap.newKeySet();
+
+    // encodings detection chooses from, in order. The first one that decodes the sample without error wins.
+    private List<Charset> encodingCandidates = defaultEncodingCandidates();
+
     private boolean notifierEnabled = true;
 
     private int notifierInterval = 60;
 
+    // check the path with Files.exists before a source is opened. Missing sources are retried either way.
+    private boolean verifyPathsOnStart = true;
+
+    // sources opened in parallel at start.
+    private int initParallelism = 16;
+
+    // time one source may take to open before it is retried in the background.
+    private long sourceInitTimeoutMillis = 5000;
+
+    // delay between retries of a source that could not be opened.
+    private int sourceRetryIntervalSeconds = 30;
+
+    // file the read positions are saved to (see CheckpointStore). null means positions live in memory only.
+    private String checkpointFile;
+
+    // seconds between periodic checkpoints while running (each flushes the handler first). 0 means only at stop.
+    private int checkpointIntervalSeconds = 0;
+
+    // time runs in progress get to finish at stop before they are interrupted.
+    private long drainTimeoutMillis = 5000;
+
+    // optional index of recent matches for queries through AlfaAgent. null means disabled.
+    private MatchIndex matchIndex;
+
+    // resize the thread pool between minPoolSize and maxPoolSize from the observed I/O, matching and handler time
+    private boolean adaptivePool = false;
+    private int minPoolSize = 1;
+    private int maxPoolSize = Runtime.getRuntime().availableProcessors() * 4;
+    private int poolAdjustIntervalSeconds = 10;
+
+    // bytes per read-ahead chunk; the chunk after the one being matched is prefetched on a background I/O thread. 0 means off.
+    private int readAheadBytes = 0;
+    // with read-ahead: open files with O_DIRECT so tailing does not fill the page cache
+    private boolean directIo = false;
+
+    // matcher threads per path symbol for files too hot for one core (see ChunkPipeline), symbols without an entry use none
+    private final Map<String, Integer> pipelineWorkers = new ConcurrentHashMap<>();
+
+    // priority class per path symbol, symbols without an entry are NORMAL
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    // threads reserved for the CRITICAL lane
+    private int criticalLaneThreads = 1;
+    // latency objective per lane in ms, measured from the time a run is due to its end. 0 means none.
+    private final Map<Lane, Long> laneSloMillis = new EnumMap<>(Map.of(Lane.CRITICAL, 1000L, Lane.NORMAL, 10_000L, Lane.BULK, 0L));
+    // CRITICAL activity and latency counters of the lanes
+    private final LaneMonitor laneMonitor = new LaneMonitor();
+
+    // symbols whose runs are skipped until they are resumed
+    private final Set<String> pausedSymbols = ConcurrentHashMap.newKeySet();
+    // port of the HTTP control endpoint on the loopback interface. 0 means off.
+    private int controlPort = 0;
+    // secret every control request must send as "Authorization: Bearer <token>"; the endpoint does not open without it
+    private String controlToken;
+
+    // Flow publishers of the matches (see AlfaAgent.matches()); reading is gated only while they have subscribers
+    private final MatchHub matchHub = new MatchHub();
+
+    // read budget of one task run in bytes. 0 means unlimited (read until end of file).
+    private long maxBytesPerRun = 0;
+
+    // read budget of one task run in milliseconds. 0 means unlimited.
+    private long maxMillisPerRun = 0;
+
+    // resource limits of the whole agent, enforced by the governor. 0 means unlimited.
+    private long maxReadBytesPerSecond = 0;
+    // CPU share of all processors in percent
+    private int cpuPercent = 0;
+    private long heapBudgetBytes = 0;
+    // while CPU is scarce, sources without a sampling policy match one line in N. 0 means never.
+    private int shedEveryNthLine = 0;
+    private final ResourceGovernor resourceGovernor = new ResourceGovernor(this);
+
+    // directory of the local spill queue for undelivered matches. null means spilling is disabled.
+    private String spillDirectory;
+
+    // size of one spill segment file. default is 4 MB.
+    private int spillSegmentSize = 4 * 1024 * 1024;
+
     public AlfaConfig(AlfaResultHandler resultHandler, Map<String, String> absPaths,
                       Map<String, Set<String>> filterOpts, Integer batchTime, Integer threadPoolSize,
                       Integer notifierInterval,Charset fileEncoding, Boolean notifierEnabled) {
@@ -66,6 +165,68 @@ public class AlfaConfig {
         return fileEncoding;
     }
 
+    /**
+     * @return The encoding set for the symbol, or the global one. With detection this is the fallback.
+     */
+    public Charset getFileEncoding(String pathSymbol) {
+        return symbolEncodings.getOrDefault(pathSymbol, fileEncoding);
+    }
+
+    /**
+     * Sets the encoding of one symbol, which also turns detection off for it. null goes back to the global setting.
+     */
+    public void setFileEncoding(String pathSymbol, Charset charset) {
+        detectEncodingSymbols.remove(pathSymbol);
+        if (charset == null) {
+            symbolEncodings.remove(pathSymbol);
+        } else {
+            symbolEncodings.put(pathSymbol, charset);
+        }
+    }
+
+    /**
+     * @return true if the encoding of the symbol is sniffed from the file instead of configured.
+     */
+    public boolean isDetectEncoding(String pathSymbol) {
+        if (detectEncodingSymbols.contains(pathSymbol)) {
+            return true;
+        }
+        return detectEncoding && !symbolEncodings.containsKey(pathSymbol);
+    }
+
+    /**
+     * Sniffs the encoding of every symbol that has no encoding of its own.
+     */
+    public void setDetectEncoding(boolean detectEncoding) {
+        this.detectEncoding = detectEncoding;
+    }
+
+    /**
+     * Sniffs the encoding of one symbol, replacing an encoding set for it.
+     */
+    public void setDetectEncoding(String pathSymbol) {
+        symbolEncodings.remove(pathSymbol);
+        detectEncodingSymbols.add(pathSymbol);
+    }
+
+    public List<Charset> getEncodingCandidates() {
+        return encodingCandidates;
+    }
+
+    public void setEncodingCandidates(List<Charset> encodingCandidates) {
+        this.encodingCandidates = List.copyOf(encodingCandidates);
+    }
+
+    // UTF-8 first: text in legacy multi-byte encodings is almost never valid UTF-8, the other way round it often is
+    private static List<Charset> defaultEncodingCandidates() {
+        List<Charset> candidates = new ArrayList<>();
+        candidates.add(StandardCharsets.UTF_8);
+        if (Charset.isSupported("EUC-KR")) {
+            candidates.add(Charset.forName("EUC-KR"));
+        }
+        return List.copyOf(candidates);
+    }
+
     public boolean isNotifierEnabled() {
         return notifierEnabled;
     }
@@ -74,8 +235,15 @@ public class AlfaConfig {
         this.notifierEnabled = notifierEnabled;
     }
 
+    /**
+     * @return The read offsets per path symbol, a view of the SourceRegistry.
+     */
     public Map<String, Long> getLastReadPositions() {
-        return lastReadPositions;
+        return sourceRegistry.positions();
+    }
+
+    public SourceRegistry getSourceRegistry() {
+        return sourceRegistry;
     }
 
     public AlfaResultHandler getResultHandler() {
@@ -101,9 +269,339 @@ public class AlfaConfig {
         return filterOpts;
     }
 
+    /**
+     * Replaces the filters of a symbol while the agent runs; its next run uses them (see FilterHandler).
+     * Filters are kept in the given order.
+     */
+    public synchronized void setFilters(String pathSymbol, Collection<String> filters) {
+        Map<String, Set<String>> updated = filterOpts == null ? new HashMap<>() : new HashMap<>(filterOpts);
+        updated.put(pathSymbol, Collections.unmodifiableSet(new LinkedHashSet<>(filters)));
+        filterOpts = updated;
+    }
+
+    public boolean isPaused(String pathSymbol) {
+        return pausedSymbols.contains(pathSymbol);
+    }
+
+    /**
+     * A paused symbol is not read until it is resumed; a run in progress ends normally.
+     */
+    public void setPaused(String pathSymbol, boolean paused) {
+        if (paused) {
+            pausedSymbols.add(pathSymbol);
+        } else {
+            pausedSymbols.remove(pathSymbol);
+        }
+    }
+
+    public Set<String> getPausedSymbols() {
+        return Collections.unmodifiableSet(pausedSymbols);
+    }
+
+    public int getControlPort() {
+        return controlPort;
+    }
+
+    /**
+     * Port of the control endpoint on the loopback interface (see ControlServer). 0 means off.
+     */
+    public void setControlPort(int controlPort) {
+        this.controlPort = controlPort;
+    }
+
+    public String getControlToken() {
+        return controlToken;
+    }
+
+    /**
+     * Token of the control endpoint, required when it is on (see ControlServer).
+     */
+    public void setControlToken(String controlToken) {
+        this.controlToken = controlToken;
+    }
+
 
     public int getThreadPoolSize() {
         return threadPoolSize;
     }
 
+    public boolean isVerifyPathsOnStart() {
+        return verifyPathsOnStart;
+    }
+
+    public void setVerifyPathsOnStart(boolean verifyPathsOnStart) {
+        this.verifyPathsOnStart = verifyPathsOnStart;
+    }
+
+    public int getInitParallelism() {
+        return initParallelism;
+    }
+
+    public void setInitParallelism(int initParallelism) {
+        this.initParallelism = initParallelism;
+    }
+
+    public long getSourceInitTimeoutMillis() {
+        return sourceInitTimeoutMillis;
+    }
+
+    public void setSourceInitTimeoutMillis(long sourceInitTimeoutMillis) {
+        this.sourceInitTimeoutMillis = sourceInitTimeoutMillis;
+    }
+
+    public int getSourceRetryIntervalSeconds() {
+        return sourceRetryIntervalSeconds;
+    }
+
+    public void setSourceRetryIntervalSeconds(int sourceRetryIntervalSeconds) {
+        this.sourceRetryIntervalSeconds = sourceRetryIntervalSeconds;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public void setCheckpointFile(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public void setCheckpointIntervalSeconds(int checkpointIntervalSeconds) {
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    public MatchIndex getMatchIndex() {
+        return matchIndex;
+    }
+
+    public void setMatchIndex(MatchIndex matchIndex) {
+        this.matchIndex = matchIndex;
+    }
+
+    public boolean isAdaptivePool() {
+        return adaptivePool;
+    }
+
+    public void setAdaptivePool(boolean adaptivePool) {
+        this.adaptivePool = adaptivePool;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public void setMinPoolSize(int minPoolSize) {
+        this.minPoolSize = minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getPoolAdjustIntervalSeconds() {
+        return poolAdjustIntervalSeconds;
+    }
+
+    public void setPoolAdjustIntervalSeconds(int poolAdjustIntervalSeconds) {
+        this.poolAdjustIntervalSeconds = poolAdjustIntervalSeconds;
+    }
+
+    public int getReadAheadBytes() {
+        return readAheadBytes;
+    }
+
+    public void setReadAheadBytes(int readAheadBytes) {
+        this.readAheadBytes = readAheadBytes;
+    }
+
+    public boolean isDirectIo() {
+        return directIo;
+    }
+
+    public void setDirectIo(boolean directIo) {
+        this.directIo = directIo;
+    }
+
+    /**
+     * @return Matcher threads of the symbol's pipeline, 0 if its runs read and match on the pool thread alone.
+     */
+    public int getPipelineWorkers(String pathSymbol) {
+        return pipelineWorkers.getOrDefault(pathSymbol, 0);
+    }
+
+    /**
+     * Lets runs of a symbol read on one thread and match on 'workers' others, delivering in file order.
+     * Meant for a few very hot files; the threads are in addition to the pool. 0 turns it off.
+     */
+    public void setPipelineWorkers(String pathSymbol, int workers) {
+        if (workers <= 0) {
+            pipelineWorkers.remove(pathSymbol);
+        } else {
+            pipelineWorkers.put(pathSymbol, workers);
+        }
+    }
+
+    public Lane getLane(String pathSymbol) {
+        return lanes.getOrDefault(pathSymbol, Lane.NORMAL);
+    }
+
+    /**
+     * Sets the priority class of a symbol. Takes effect at the next start.
+     */
+    public void setLane(String pathSymbol, Lane lane) {
+        if (lane == null || lane == Lane.NORMAL) {
+            lanes.remove(pathSymbol);
+        } else {
+            lanes.put(pathSymbol, lane);
+        }
+    }
+
+    public int getCriticalLaneThreads() {
+        return criticalLaneThreads;
+    }
+
+    public void setCriticalLaneThreads(int criticalLaneThreads) {
+        this.criticalLaneThreads = criticalLaneThreads;
+    }
+
+    public long getLaneSloMillis(Lane lane) {
+        return laneSloMillis.get(lane);
+    }
+
+    public void setLaneSloMillis(Lane lane, long sloMillis) {
+        laneSloMillis.put(lane, sloMillis);
+    }
+
+    public LaneMonitor getLaneMonitor() {
+        return laneMonitor;
+    }
+
+    public MatchHub getMatchHub() {
+        return matchHub;
+    }
+
+    public long getMaxBytesPerRun() {
+        return maxBytesPerRun;
+    }
+
+    /**
+     * Caps how many bytes one run of a task may read. A task that hits the cap yields its thread
+     * and is queued again right away behind the tasks that are already due.
+     */
+    public void setMaxBytesPerRun(long maxBytesPerRun) {
+        this.maxBytesPerRun = maxBytesPerRun;
+    }
+
+    public long getMaxMillisPerRun() {
+        return maxMillisPerRun;
+    }
+
+    /**
+     * Caps how long one run of a task may read, checked after every line.
+     */
+    public void setMaxMillisPerRun(long maxMillisPerRun) {
+        this.maxMillisPerRun = maxMillisPerRun;
+    }
+
+    public long getMaxReadBytesPerSecond() {
+        return maxReadBytesPerSecond;
+    }
+
+    /**
+     * Caps the bytes all sources together read per second (see ResourceGovernor).
+     */
+    public void setMaxReadBytesPerSecond(long maxReadBytesPerSecond) {
+        this.maxReadBytesPerSecond = maxReadBytesPerSecond;
+        resourceGovernor.reset();
+    }
+
+    public int getCpuPercent() {
+        return cpuPercent;
+    }
+
+    /**
+     * Caps the CPU time of the agent's threads, in percent of all processors.
+     */
+    public void setCpuPercent(int cpuPercent) {
+        this.cpuPercent = cpuPercent;
+        resourceGovernor.reset();
+    }
+
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+
+    /**
+     * Caps the heap held by matched lines that are not delivered yet; a run ends early when it is used up.
+     */
+    public void setHeapBudgetBytes(long heapBudgetBytes) {
+        this.heapBudgetBytes = heapBudgetBytes;
+    }
+
+    public int getShedEveryNthLine() {
+        return shedEveryNthLine;
+    }
+
+    /**
+     * Lets the governor sample sources without their own policy while the CPU limit is nearly used up,
+     * as with SamplingPolicy.everyNthLine(n). 0 defers runs instead.
+     */
+    public void setShedEveryNthLine(int shedEveryNthLine) {
+        this.shedEveryNthLine = shedEveryNthLine;
+    }
+
+    public ResourceGovernor getResourceGovernor() {
+        return resourceGovernor;
+    }
+
+    public SamplingPolicy getSamplingPolicy(String pathSymbol) {
+        return samplingPolicies.get(pathSymbol);
+    }
+
+    /**
+     * Sets the sampling policy of a symbol. null removes it.
+     */
+    public void setSamplingPolicy(String pathSymbol, SamplingPolicy policy) {
+        if (policy == null) {
+            samplingPolicies.remove(pathSymbol);
+        } else {
+            samplingPolicies.put(pathSymbol, policy);
+        }
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Enables the spill queue. Matches the result handler fails to accept are kept under
+     * spillDirectory/[pathSymbol] and replayed in order on the next runs (also after a restart).
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public int getSpillSegmentSize() {
+        return spillSegmentSize;
+    }
+
+    public void setSpillSegmentSize(int spillSegmentSize) {
+        this.spillSegmentSize = spillSegmentSize;
+    }
+
 }
@@ -0,0 +1,437 @@
+package main.config;
+
+import main.index.MatchIndex;
+import main.sink.AlfaSink;
+import main.sink.RollingFileSink;
+import main.sink.SinkCodec;
+import main.sink.SinkResultHandler;
+import main.sink.TcpLineSink;
+import main.sink.UnixSocketSink;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Builds an AlfaConfig from a properties file, so the agent can run without Java code (see AlfaDaemon).
+ * <pre>
+ * alfa.batchTime=5
+ * alfa.threadPoolSize=4
+ * alfa.encoding=UTF-8                 # or auto: sniffed per file, UTF-8 when undecided
+ * alfa.encoding.candidates=UTF-8,EUC-KR  # what auto chooses from, in order
+ * alfa.notifier.enabled=true
+ * alfa.notifier.interval=60
+ * alfa.handler=stdout                 # stdout, stderr, a sink or a class implementing AlfaResultHandler
+ * alfa.verifyPaths=false
+ * alfa.initParallelism=16
+ * alfa.sourceInitTimeoutMillis=5000
+ * alfa.sourceRetryIntervalSeconds=30
+ * alfa.maxBytesPerRun=1048576
+ * alfa.maxMillisPerRun=500
+ * alfa.spill.directory=/var/lib/alfa/spill
+ * alfa.checkpoint.file=/var/lib/alfa/positions
+ * alfa.checkpoint.intervalSeconds=10
+ * alfa.drainTimeoutMillis=5000
+ * alfa.pool.adaptive=true             # resize the pool from observed I/O vs CPU time
+ * alfa.pool.min=2
+ * alfa.pool.max=32
+ * alfa.pool.adjustIntervalSeconds=10
+ * alfa.io.readAheadKB=1024            # read-ahead chunk size, 0 = off
+ * alfa.lane.critical.threads=1        # threads reserved for CRITICAL sources
+ * alfa.lane.critical.sloMillis=1000   # latency objective per lane (critical, normal, bulk), 0 = none
+ * alfa.io.direct=true                 # O_DIRECT reads (needs read-ahead), keeps the page cache for the application
+ * alfa.index.bucketSeconds=60          # enables the MatchIndex
+ * alfa.index.retentionBuckets=60
+ * alfa.index.maxMB=64
+ * alfa.control.port=7070              # HTTP control endpoint on 127.0.0.1 (status, pause, filters), 0 = off
+ * alfa.control.token=...              # required with a port: requests send "Authorization: Bearer ..."
+ * alfa.governor.readKBPerSecond=8192  # resource limits of the agent, 0 = unlimited (see ResourceGovernor)
+ * alfa.governor.cpuPercent=10         # of all processors
+ * alfa.governor.heapMB=64             # matched lines held until delivered
+ * alfa.governor.shedEveryNthLine=10   # sample while CPU is scarce, 0 = only defer
+ *
+ * source.APP.path=/var/log/app.log
+ * source.APP.filter.1=(?i)(FATAL|ERROR)
+ * source.APP.filter.2=DENIED
+ * source.APP.sampling=everyNthLine:10  # everyNthLine:n, everyNthMatch:n or reservoir:k
+ * source.APP.encoding=EUC-KR          # overrides alfa.encoding, auto sniffs this source only
+ * source.APP.lane=critical            # critical, normal (default) or bulk, see Lane
+ * source.APP.pipeline.workers=8       # match a very hot file on 8 threads, see ChunkPipeline
+ * </pre>
+ * Filters of a source are kept in the order of their numbers. When loaded from a file, filter values are taken
+ * as written, so a regex keeps its backslashes (source.APP.filter.1=\bERROR\b); java.util.Properties would
+ * read them as escapes. Other values follow the Properties escapes, and a filter value cannot continue on the
+ * next line.
+ * <p>
+ * Sinks (see main.sink) are selected with alfa.handler=file:/dir, tcp:host:port or unix:/path/to.sock and tuned with
+ * alfa.sink.codec (none, gzip), alfa.sink.batchSize, alfa.sink.lingerMillis, alfa.sink.maxPending,
+ * alfa.sink.maxFileBytes and alfa.sink.maxFiles.
+ */
+public class AlfaConfigLoader {
+
+    private static final String SOURCE_PREFIX = "source.";
+    private static final String AUTO_ENCODING = "auto";
+    private static final Pattern FILTER_KEY = Pattern.compile("source\\.[^.]+\\.filter\\.[^.]+");
+
+    private AlfaConfigLoader() {
+    }
+
+    public static AlfaConfig load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        props.putAll(rawFilterValues(Files.readAllLines(file, StandardCharsets.UTF_8)));
+        return fromProperties(props);
+    }
+
+    /**
+     * Reads the source.*.filter.* lines without the escape handling of Properties.load, which would turn
+     * \bERROR\b into bERRORb.
+     */
+    private static Map<String, String> rawFilterValues(List<String> lines) {
+        Map<String, String> values = new HashMap<>();
+        boolean continued = false;
+        for (String line : lines) {
+            boolean continuation = continued;
+            continued = endsWithEscape(line);
+            String text = line.stripLeading();
+            if (continuation || text.isEmpty() || text.charAt(0) == '#' || text.charAt(0) == '!') {
+                continue;
+            }
+            int end = 0;
+            while (end < text.length() && "=: \t\f".indexOf(text.charAt(end)) < 0) {
+                end++;
+            }
+            String key = text.substring(0, end);
+            if (!FILTER_KEY.matcher(key).matches()) {
+                continue;
+            }
+            if (continued) {
+                throw new IllegalArgumentException(key + " cannot continue on the next line, filter values are read as written");
+            }
+            String value = text.substring(end).stripLeading();
+            if (!value.isEmpty() && (value.charAt(0) == '=' || value.charAt(0) == ':')) {
+                value = value.substring(1).stripLeading();
+            }
+            values.put(key, value);
+        }
+        return values;
+    }
+
+    // an odd number of trailing backslashes continues the line in a properties file
+    private static boolean endsWithEscape(String line) {
+        int count = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    /**
+     * @throws IllegalArgumentException If a value is invalid or no source is configured.
+     */
+    public static AlfaConfig fromProperties(Properties props) {
+        Map<String, String> paths = new LinkedHashMap<>();
+        Map<String, TreeMap<Integer, String>> numberedFilters = new HashMap<>();
+        Map<String, SamplingPolicy> sampling = new HashMap<>();
+        Map<String, String> encodings = new HashMap<>();
+        Map<String, Lane> lanes = new HashMap<>();
+        Map<String, Integer> pipelineWorkers = new HashMap<>();
+
+        for (String key : new TreeSet<>(props.stringPropertyNames())) {
+            if (!key.startsWith(SOURCE_PREFIX)) {
+                continue;
+            }
+            String rest = key.substring(SOURCE_PREFIX.length());
+            int dot = rest.indexOf('.');
+            if (dot <= 0) {
+                throw new IllegalArgumentException("Invalid source key: " + key);
+            }
+            String symbol = rest.substring(0, dot);
+            String attribute = rest.substring(dot + 1);
+            String value = props.getProperty(key).trim();
+
+            if (attribute.equals("path")) {
+                paths.put(symbol, value);
+            } else if (attribute.startsWith("filter.")) {
+                int order = parseInt(key, attribute.substring("filter.".length()));
+                numberedFilters.computeIfAbsent(symbol, s -> new TreeMap<>()).put(order, value);
+            } else if (attribute.equals("sampling")) {
+                sampling.put(symbol, parseSampling(key, value));
+            } else if (attribute.equals("encoding")) {
+                encodings.put(symbol, value);
+            } else if (attribute.equals("lane")) {
+                lanes.put(symbol, parseLane(key, value));
+            } else if (attribute.equals("pipeline.workers")) {
+                int workers = parseInt(key, value);
+                if (workers < 0) {
+                    throw new IllegalArgumentException(key + " must not be negative: " + workers);
+                }
+                pipelineWorkers.put(symbol, workers);
+            } else {
+                throw new IllegalArgumentException("Unknown source attribute: " + key);
+            }
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No source configured (source.<SYMBOL>.path)");
+        }
+
+        Map<String, Set<String>> filters = new HashMap<>();
+        for (Map.Entry<String, TreeMap<Integer, String>> entry : numberedFilters.entrySet()) {
+            if (!paths.containsKey(entry.getKey())) {
+                throw new IllegalArgumentException("Filters configured for unknown source: " + entry.getKey());
+            }
+            filters.put(entry.getKey(), new LinkedHashSet<>(entry.getValue().values()));
+        }
+
+        String encoding = props.getProperty("alfa.encoding");
+        boolean detectEncoding = encoding != null && encoding.trim().equalsIgnoreCase(AUTO_ENCODING);
+        AlfaConfig config = new AlfaConfig(
+                createHandler(props),
+                paths,
+                filters,
+                optionalInt(props, "alfa.batchTime"),
+                optionalInt(props, "alfa.threadPoolSize"),
+                optionalInt(props, "alfa.notifier.interval"),
+                encoding == null || detectEncoding ? null : parseCharset("alfa.encoding", encoding),
+                props.containsKey("alfa.notifier.enabled") ? Boolean.parseBoolean(props.getProperty("alfa.notifier.enabled").trim()) : null);
+
+        config.setVerifyPathsOnStart(Boolean.parseBoolean(props.getProperty("alfa.verifyPaths", "false").trim()));
+        Integer initParallelism = optionalInt(props, "alfa.initParallelism");
+        if (initParallelism != null) {
+            config.setInitParallelism(initParallelism);
+        }
+        Integer initTimeout = optionalInt(props, "alfa.sourceInitTimeoutMillis");
+        if (initTimeout != null) {
+            config.setSourceInitTimeoutMillis(initTimeout);
+        }
+        Integer retryInterval = optionalInt(props, "alfa.sourceRetryIntervalSeconds");
+        if (retryInterval != null) {
+            config.setSourceRetryIntervalSeconds(retryInterval);
+        }
+        Integer maxBytes = optionalInt(props, "alfa.maxBytesPerRun");
+        if (maxBytes != null) {
+            config.setMaxBytesPerRun(maxBytes);
+        }
+        Integer maxMillis = optionalInt(props, "alfa.maxMillisPerRun");
+        if (maxMillis != null) {
+            config.setMaxMillisPerRun(maxMillis);
+        }
+        if (props.containsKey("alfa.checkpoint.file")) {
+            config.setCheckpointFile(props.getProperty("alfa.checkpoint.file").trim());
+        }
+        Integer checkpointInterval = optionalInt(props, "alfa.checkpoint.intervalSeconds");
+        if (checkpointInterval != null) {
+            config.setCheckpointIntervalSeconds(checkpointInterval);
+        }
+        Integer drainTimeout = optionalInt(props, "alfa.drainTimeoutMillis");
+        if (drainTimeout != null) {
+            config.setDrainTimeoutMillis(drainTimeout);
+        }
+        config.setAdaptivePool(Boolean.parseBoolean(props.getProperty("alfa.pool.adaptive", "false").trim()));
+        Integer minPool = optionalInt(props, "alfa.pool.min");
+        if (minPool != null) {
+            config.setMinPoolSize(minPool);
+        }
+        Integer maxPool = optionalInt(props, "alfa.pool.max");
+        if (maxPool != null) {
+            config.setMaxPoolSize(maxPool);
+        }
+        if (config.getMinPoolSize() < 1 || config.getMaxPoolSize() < config.getMinPoolSize()) {
+            throw new IllegalArgumentException("Invalid pool bounds: alfa.pool.min=" + config.getMinPoolSize()
+                    + ", alfa.pool.max=" + config.getMaxPoolSize());
+        }
+        Integer adjustInterval = optionalInt(props, "alfa.pool.adjustIntervalSeconds");
+        if (adjustInterval != null) {
+            config.setPoolAdjustIntervalSeconds(adjustInterval);
+        }
+        Integer readAheadKB = optionalInt(props, "alfa.io.readAheadKB");
+        if (readAheadKB != null) {
+            config.setReadAheadBytes(readAheadKB * 1024);
+        }
+        config.setDirectIo(Boolean.parseBoolean(props.getProperty("alfa.io.direct", "false").trim()));
+        Integer controlPort = optionalInt(props, "alfa.control.port");
+        if (controlPort != null) {
+            if (controlPort < 0 || controlPort > 65535) {
+                throw new IllegalArgumentException("Invalid alfa.control.port: " + controlPort);
+            }
+            config.setControlPort(controlPort);
+        }
+        if (props.containsKey("alfa.control.token")) {
+            config.setControlToken(props.getProperty("alfa.control.token").trim());
+        }
+        if (config.getControlPort() > 0 && (config.getControlToken() == null || config.getControlToken().isEmpty())) {
+            throw new IllegalArgumentException("alfa.control.port needs alfa.control.token");
+        }
+        Integer readKB = optionalInt(props, "alfa.governor.readKBPerSecond");
+        if (readKB != null) {
+            config.setMaxReadBytesPerSecond(readKB * 1024L);
+        }
+        Integer cpuPercent = optionalInt(props, "alfa.governor.cpuPercent");
+        if (cpuPercent != null) {
+            if (cpuPercent < 0 || cpuPercent > 100) {
+                throw new IllegalArgumentException("Invalid alfa.governor.cpuPercent: " + cpuPercent);
+            }
+            config.setCpuPercent(cpuPercent);
+        }
+        Integer heapMB = optionalInt(props, "alfa.governor.heapMB");
+        if (heapMB != null) {
+            config.setHeapBudgetBytes(heapMB * 1024L * 1024L);
+        }
+        Integer shed = optionalInt(props, "alfa.governor.shedEveryNthLine");
+        if (shed != null) {
+            config.setShedEveryNthLine(shed);
+        }
+        Integer indexBucket = optionalInt(props, "alfa.index.bucketSeconds");
+        if (indexBucket != null) {
+            Integer retention = optionalInt(props, "alfa.index.retentionBuckets");
+            Integer maxMB = optionalInt(props, "alfa.index.maxMB");
+            config.setMatchIndex(new MatchIndex(indexBucket * 1000L, retention == null ? 60 : retention,
+                    (maxMB == null ? 64 : maxMB) * 1024L * 1024L));
+        }
+        if (props.containsKey("alfa.spill.directory")) {
+            config.setSpillDirectory(props.getProperty("alfa.spill.directory").trim());
+        }
+        for (Map.Entry<String, SamplingPolicy> entry : sampling.entrySet()) {
+            config.setSamplingPolicy(entry.getKey(), entry.getValue());
+        }
+        config.setDetectEncoding(detectEncoding);
+        if (props.containsKey("alfa.encoding.candidates")) {
+            List<Charset> candidates = new ArrayList<>();
+            for (String name : props.getProperty("alfa.encoding.candidates").split(",")) {
+                if (!name.isBlank()) {
+                    candidates.add(parseCharset("alfa.encoding.candidates", name));
+                }
+            }
+            config.setEncodingCandidates(candidates);
+        }
+        for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+            config.setLane(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Integer> entry : pipelineWorkers.entrySet()) {
+            config.setPipelineWorkers(entry.getKey(), entry.getValue());
+        }
+        Integer criticalThreads = optionalInt(props, "alfa.lane.critical.threads");
+        if (criticalThreads != null) {
+            if (criticalThreads < 1) {
+                throw new IllegalArgumentException("alfa.lane.critical.threads must be positive: " + criticalThreads);
+            }
+            config.setCriticalLaneThreads(criticalThreads);
+        }
+        for (Lane lane : Lane.values()) {
+            Integer slo = optionalInt(props, "alfa.lane." + lane.name().toLowerCase(Locale.ROOT) + ".sloMillis");
+            if (slo != null) {
+                config.setLaneSloMillis(lane, slo);
+            }
+        }
+        for (Map.Entry<String, String> entry : encodings.entrySet()) {
+            if (entry.getValue().equalsIgnoreCase(AUTO_ENCODING)) {
+                config.setDetectEncoding(entry.getKey());
+            } else {
+                config.setFileEncoding(entry.getKey(), parseCharset("source." + entry.getKey() + ".encoding", entry.getValue()));
+            }
+        }
+        return config;
+    }
+
+    private static AlfaResultHandler createHandler(Properties props) {
+        String name = props.getProperty("alfa.handler", "stdout").trim();
+        if (name.startsWith("file:") || name.startsWith("tcp:") || name.startsWith("unix:")) {
+            return createSinkHandler(props, name);
+        }
+        if (name.equals("stdout")) {
+            return new PrintResultHandler(System.out);
+        }
+        if (name.equals("stderr")) {
+            return new PrintResultHandler(System.err);
+        }
+        try {
+            Object handler = Class.forName(name).getDeclaredConstructor().newInstance();
+            if (!(handler instanceof AlfaResultHandler)) {
+                throw new IllegalArgumentException(name + " does not implement AlfaResultHandler");
+            }
+            return (AlfaResultHandler) handler;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create result handler: " + name, e);
+        }
+    }
+
+    private static AlfaResultHandler createSinkHandler(Properties props, String name) {
+        SinkCodec codec = SinkCodec.of(props.getProperty("alfa.sink.codec", "none"));
+        String target = name.substring(name.indexOf(':') + 1);
+        AlfaSink sink;
+        if (name.startsWith("file:")) {
+            Integer maxFiles = optionalInt(props, "alfa.sink.maxFiles");
+            Integer maxFileBytes = optionalInt(props, "alfa.sink.maxFileBytes");
+            sink = new RollingFileSink(Paths.get(target), "alfa",
+                    maxFileBytes == null ? 64 * 1024 * 1024 : maxFileBytes, maxFiles == null ? 5 : maxFiles, codec);
+        } else if (name.startsWith("tcp:")) {
+            int colon = target.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Invalid tcp sink, expected tcp:host:port: " + name);
+            }
+            sink = new TcpLineSink(target.substring(0, colon), parseInt("alfa.handler", target.substring(colon + 1)), codec);
+        } else {
+            sink = new UnixSocketSink(Paths.get(target), codec);
+        }
+        Integer batchSize = optionalInt(props, "alfa.sink.batchSize");
+        Integer linger = optionalInt(props, "alfa.sink.lingerMillis");
+        Integer maxPending = optionalInt(props, "alfa.sink.maxPending");
+        return new SinkResultHandler(sink, batchSize == null ? 1000 : batchSize, linger == null ? 0 : linger,
+                maxPending == null ? 100_000 : maxPending);
+    }
+
+    private static Lane parseLane(String key, String value) {
+        try {
+            return Lane.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid lane for " + key + ": " + value);
+        }
+    }
+
+    private static Charset parseCharset(String key, String name) {
+        try {
+            return Charset.forName(name.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown encoding for " + key + ": " + name.trim(), e);
+        }
+    }
+
+    private static SamplingPolicy parseSampling(String key, String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid sampling for " + key + ": " + value);
+        }
+        int n = parseInt(key, parts[1].trim());
+        switch (parts[0].trim()) {
+            case "everyNthLine":
+                return SamplingPolicy.everyNthLine(n);
+            case "everyNthMatch":
+                return SamplingPolicy.everyNthMatch(n);
+            case "reservoir":
+                return SamplingPolicy.reservoir(n);
+            default:
+                throw new IllegalArgumentException("Unknown sampling mode for " + key + ": " + parts[0]);
+        }
+    }
+
+    private static Integer optionalInt(Properties props, String key) {
+        String value = props.getProperty(key);
+        return value == null ? null : parseInt(key, value.trim());
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + key + ": " + value);
+        }
+    }
+}
@@ -18,6 +18,16 @@ public interface AlfaResultHandler {
         System.out.println(symbol+": Batch processing done. Found " + filteredLines.size() + " lines.");
     }
 
+    /**
+     * (Optional) Same as onBatchComplete(filteredLines, symbol), with the counters of the run.
+     * With a SamplingPolicy, filteredLines only holds the sampled matches while stats has the totals.
+     * The default implementation calls onBatchComplete(filteredLines, symbol).
+     * @param stats Lines, bytes and matches of this batch.
+     */
+    default void onBatchComplete(List<String> filteredLines, String symbol, BatchStats stats) {
+        onBatchComplete(filteredLines, symbol);
+    }
+
     /**
      * (Optional) Method called when an error occurs during log processing.
      * @param pathSymbol The path symbol of the file that caused the error (e.g., "APP_LOG")
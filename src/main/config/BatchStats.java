@@ -0,0 +1,63 @@
+package main.config;
+
+/**
+ * Counters of one task run, passed to AlfaResultHandler.onBatchComplete.
+ */
+public class BatchStats {
+
+    private final long linesRead;
+    private final long bytesRead;
+    private final long matches;
+    private final long delivered;
+    private final boolean estimated;
+
+    public BatchStats(long linesRead, long bytesRead, long matches, long delivered, boolean estimated) {
+        this.linesRead = linesRead;
+        this.bytesRead = bytesRead;
+        this.matches = matches;
+        this.delivered = delivered;
+        this.estimated = estimated;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Lines that matched a filter. Exact unless isEstimated().
+     */
+    public long getMatches() {
+        return matches;
+    }
+
+    /**
+     * @return Matches handed to onLogFiltered. Smaller than getMatches() when sampling is on.
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return true if getMatches() was scaled up from a line sample (SamplingPolicy.everyNthLine).
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    /**
+     * @return Matches per line read, 0 for an empty batch.
+     */
+    public double getMatchRate() {
+        return linesRead == 0 ? 0.0 : (double) matches / linesRead;
+    }
+
+    @Override
+    public String toString() {
+        return "lines=" + linesRead + " bytes=" + bytesRead + " matches=" + (estimated ? "~" : "") + matches
+                + " delivered=" + delivered;
+    }
+}
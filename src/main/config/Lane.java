@@ -0,0 +1,13 @@
+package main.config;
+
+/**
+ * Priority class of a path symbol (AlfaConfig.setLane).
+ * CRITICAL symbols run on threads of their own, so a flooded pool never delays them. BULK symbols share the
+ * normal pool but give way: a BULK run that catches up on a large backlog stops at the next chunk boundary while
+ * a CRITICAL file has new data, and continues once it is read.
+ */
+public enum Lane {
+    CRITICAL,
+    NORMAL,
+    BULK
+}
@@ -0,0 +1,26 @@
+package main.config;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Built-in handler that prints every match as "[keyword] line". Used by the daemon (alfa.handler=stdout).
+ */
+public class PrintResultHandler implements AlfaResultHandler {
+
+    private final PrintStream out;
+
+    public PrintResultHandler(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onLogFiltered(String logLine, String keyword) {
+        out.println("[" + keyword + "] " + logLine);
+    }
+
+    @Override
+    public void onBatchComplete(List<String> filteredLines, String symbol) {
+        // one line per match is enough for a sidecar log
+    }
+}
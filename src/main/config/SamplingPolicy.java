@@ -0,0 +1,71 @@
+package main.config;
+
+/**
+ * Per-symbol sampling for very hot files where an estimate of the match rate is enough.
+ * Counters in BatchStats stay exact (or are scaled estimates, see BatchStats.isEstimated()),
+ * only the delivery to the AlfaResultHandler is thinned out.
+ */
+public class SamplingPolicy {
+
+    public enum Mode {
+        // deterministic: every N-th line (ratesOnly) or every N-th match
+        EVERY_NTH,
+        // a uniform random sample of at most 'size' matches per batch
+        RESERVOIR
+    }
+
+    private final Mode mode;
+    private final int n;
+    private final boolean ratesOnly;
+
+    private SamplingPolicy(Mode mode, int n, boolean ratesOnly) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Sampling parameter must be positive: " + n);
+        }
+        this.mode = mode;
+        this.n = n;
+        this.ratesOnly = ratesOnly;
+    }
+
+    /**
+     * Delivers one in n matches. Every line is still matched, so the match count stays exact.
+     */
+    public static SamplingPolicy everyNthMatch(int n) {
+        return new SamplingPolicy(Mode.EVERY_NTH, n, false);
+    }
+
+    /**
+     * Matches only one in n lines (by line number) and skips the regex work on all other lines.
+     * The match count reported in BatchStats is the sampled count scaled by n.
+     */
+    public static SamplingPolicy everyNthLine(int n) {
+        return new SamplingPolicy(Mode.EVERY_NTH, n, true);
+    }
+
+    /**
+     * Delivers a uniform random sample of at most 'size' matches per batch, in file order.
+     */
+    public static SamplingPolicy reservoir(int size) {
+        return new SamplingPolicy(Mode.RESERVOIR, size, false);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return N for EVERY_NTH, the reservoir size for RESERVOIR.
+     */
+    public int getN() {
+        return n;
+    }
+
+    public boolean isRatesOnly() {
+        return ratesOnly;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.RESERVOIR ? "reservoir(" + n + ")" : (ratesOnly ? "everyNthLine(" : "everyNthMatch(") + n + ")";
+    }
+}
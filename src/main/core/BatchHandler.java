@@ -1,18 +1,50 @@
 package main.core;
 
 import main.config.AlfaConfig;
+import main.config.Lane;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class BatchHandler {
     private ThreadHandler threadHandler;
-    private ScheduledExecutorService scheduler;
+    private volatile ScheduledExecutorService scheduler;
+    // threads reserved for CRITICAL symbols (see Lane), so a flooded pool never delays them
+    private volatile ScheduledExecutorService criticalScheduler;
     private AlfaConfig config;
+    // null when no checkpoint file is configured
+    private final CheckpointStore checkpointStore;
+    // duration in ms of each phase of the last stopBatchProcessing()
+    private volatile Map<String, Long> lastShutdownTimings = Collections.emptyMap();
+    // scheduled task per symbol, to run a starved symbol when Flow demand arrives
+    private final Map<String, LogFilterTask> scheduledTasks = new ConcurrentHashMap<>();
+    // measures the pool and resizes it in adaptive mode; replaced with the scheduler
+    private volatile PoolTuner poolTuner;
+    // BULK runs that gave way to the CRITICAL lane, requeued when it is done
+    private final Queue<LogFilterTask> yielded = new ConcurrentLinkedQueue<>();
+    // tasks with a continuation scheduled after the governor's retry delay
+    private final Set<LogFilterTask> deferred = ConcurrentHashMap.newKeySet();
 
     public BatchHandler(ThreadHandler threadHandler, AlfaConfig config) {
         this.threadHandler = threadHandler;
         this.config = config;
+        this.checkpointStore = config.getCheckpointFile() == null ? null : new CheckpointStore(Paths.get(config.getCheckpointFile()));
         // Read the pool size from the configuration (default is 10)
         int poolSize = config.getThreadPoolSize();
         // Create the thread pool with the size specified in the main.config
@@ -26,30 +58,300 @@ public class BatchHandler {
         if(scheduler == null || scheduler.isShutdown()) {
             scheduler = Executors.newScheduledThreadPool(config.getThreadPoolSize());
         }
-        int batchTime = config.getBatchTime();
-        for (Runnable task : threadHandler.getRunnableTasks()) {
-            scheduler.scheduleAtFixedRate(task, 0, batchTime, TimeUnit.SECONDS);
+        ScheduledThreadPoolExecutor executor = (ScheduledThreadPoolExecutor) scheduler;
+        if (config.isAdaptivePool()) {
+            executor.setCorePoolSize(Math.max(config.getMinPoolSize(), Math.min(config.getMaxPoolSize(), config.getThreadPoolSize())));
+        }
+        if (criticalScheduler == null || criticalScheduler.isShutdown()) {
+            criticalScheduler = Executors.newScheduledThreadPool(Math.max(1, config.getCriticalLaneThreads()));
+        }
+        config.getLaneMonitor().setResumeListener(this::resumeYielded);
+        poolTuner = new PoolTuner(executor, config);
+        int adjustInterval = config.getPoolAdjustIntervalSeconds();
+        if (adjustInterval > 0) {
+            scheduler.scheduleWithFixedDelay(poolTuner::adjust, adjustInterval, adjustInterval, TimeUnit.SECONDS);
+        }
+        config.getMatchHub().setWakeListener(this::wake);
+        // sources that come up later (slow or retried) are scheduled by the listener
+        for (LogFilterTask task : threadHandler.onTaskReady(this::schedule)) {
+            schedule(task);
+        }
+        int interval = config.getCheckpointIntervalSeconds();
+        if (checkpointStore != null && interval > 0) {
+            scheduler.scheduleWithFixedDelay(this::flushAndCheckpoint, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Loads the saved read positions into the config. Positions already in memory (e.g. after a restart by
+     * the notifier) are newer and win.
+     */
+    public void restoreCheckpoint() {
+        if (checkpointStore == null) {
+            return;
+        }
+        try {
+            Map<String, Long> saved = checkpointStore.load();
+            for (Map.Entry<String, Long> entry : saved.entrySet()) {
+                config.getLastReadPositions().putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            System.out.println("[AlfaAgent] Restored " + saved.size() + " position(s) from " + checkpointStore.getFile());
+        } catch (IOException e) {
+            System.err.println("[AlfaAgent] Could not read checkpoint, starting from memory positions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the read positions of the completed batches to the checkpoint file (see SourceRegistry.commitOffset).
+     * @return false if no checkpoint file is configured or writing failed.
+     */
+    public boolean saveCheckpoint() {
+        return saveCheckpoint(config.getSourceRegistry().committedPositions());
+    }
+
+    private boolean saveCheckpoint(Map<String, Long> positions) {
+        if (checkpointStore == null) {
+            return false;
+        }
+        try {
+            checkpointStore.save(positions);
+            return true;
+        } catch (IOException e) {
+            System.err.println("[AlfaAgent] Could not write checkpoint: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void schedule(LogFilterTask task) {
+        ScheduledExecutorService current = executorFor(task);
+        if (current == null || current.isShutdown()) {
+            return;
+        }
+        scheduledTasks.put(task.getPathSymbol(), task);
+        // the tuner sizes the shared pool only
+        task.setPoolTuner(current == scheduler ? poolTuner : null);
+        long period = TimeUnit.SECONDS.toNanos(config.getBatchTime());
+        // fixed rate: the n-th run is due n periods after the first, however late the previous ones were
+        long[] nextDue = {System.nanoTime()};
+        try {
+            current.scheduleAtFixedRate(() -> {
+                long due = nextDue[0];
+                nextDue[0] += period;
+                runWithYield(task, due);
+            }, 0, period, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped concurrently
+        }
+    }
+
+    private ScheduledExecutorService executorFor(LogFilterTask task) {
+        return config.getLane(task.getPathSymbol()) == Lane.CRITICAL ? criticalScheduler : scheduler;
+    }
+
+    // runs a task now, with the current time as its due time
+    private void submit(LogFilterTask task) {
+        ScheduledExecutorService current = executorFor(task);
+        if (current == null || current.isShutdown()) {
+            return;
+        }
+        long due = System.nanoTime();
+        try {
+            current.execute(() -> runWithYield(task, due));
+        } catch (RejectedExecutionException e) {
+            // scheduler is shutting down; the next start continues from the saved position
+        }
+    }
+
+    // runs a task the governor held back after its retry delay; one continuation per task is enough
+    private void defer(LogFilterTask task) {
+        ScheduledExecutorService current = executorFor(task);
+        if (current == null || current.isShutdown() || !deferred.add(task)) {
+            return;
+        }
+        long delay = config.getResourceGovernor().getRetryDelayNanos();
+        long due = System.nanoTime() + delay;
+        try {
+            current.schedule(() -> {
+                deferred.remove(task);
+                runWithYield(task, due);
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            deferred.remove(task);
+        }
+    }
+
+    // called by the LaneMonitor when the last CRITICAL run is done
+    private void resumeYielded() {
+        LogFilterTask task;
+        while ((task = yielded.poll()) != null) {
+            submit(task);
         }
     }
 
     /**
-     * Shuts down the scheduler.
+     * @return The pool measurements of the last adjustment, or null before the first start.
+     */
+    public PoolMetrics getPoolMetrics() {
+        PoolTuner tuner = poolTuner;
+        return tuner == null ? null : tuner.getMetrics();
+    }
+
+    /**
+     * @return Latency counters of every lane (see Lane).
+     */
+    public Map<Lane, LaneMetrics> getLaneMetrics() {
+        return config.getLaneMonitor().getMetrics();
+    }
+
+    /**
+     * Runs the task of a symbol now, e.g. when a Flow subscriber requests more matches of a starved symbol
+     * or the symbol is resumed. Does nothing if the symbol has no scheduled task.
+     */
+    public void wake(String symbol) {
+        LogFilterTask task = scheduledTasks.get(symbol);
+        if (task != null) {
+            submit(task);
+        }
+    }
+
+    /**
+     * Runs a task once and records its latency in its lane. If it stopped at its read budget, it is queued
+     * again immediately. The scheduler orders work by due time, so the continuation runs after every task
+     * that was already waiting: a file that suddenly grows is served round-robin with the others instead of
+     * holding a pool thread until it is fully read.
+     * A BULK run that gave way to the CRITICAL lane waits until the CRITICAL runs are done instead, and a run
+     * the ResourceGovernor held back continues after its retry delay.
+     */
+    private void runWithYield(LogFilterTask task, long dueNanos) {
+        long start = System.nanoTime();
+        if (!task.runOnce()) {
+            // the run in progress covers this one
+            return;
+        }
+        Lane lane = config.getLane(task.getPathSymbol());
+        LaneMonitor lanes = config.getLaneMonitor();
+        lanes.record(lane, Math.max(0, start - dueNanos), System.nanoTime() - dueNanos,
+                config.getLaneSloMillis(lane), task.wasPreempted());
+        if (!task.hasBacklog()) {
+            return;
+        }
+        if (task.wasPreempted()) {
+            yielded.add(task);
+            // the CRITICAL runs may have ended before the task was queued
+            if (!lanes.shouldYield()) {
+                resumeYielded();
+            }
+            return;
+        }
+        if (task.wasThrottled()) {
+            defer(task);
+            return;
+        }
+        submit(task);
+    }
+
+    /**
+     * Stops in phases so that the saved positions cover every line of a completed batch:
+     * <ol>
+     *     <li>stop scheduling and ask runs in progress to stop after their current line</li>
+     *     <li>drain: wait up to the drain timeout of the config for those runs, interrupt the rest</li>
+     *     <li>flush the result handler if it is Flushable (e.g. SinkResultHandler)</li>
+     *     <li>checkpoint the read positions of the completed batches, if a checkpoint file is configured; a run
+     *     interrupted at the drain timeout did not complete its batch and is read again after a restart</li>
+     *     <li>close the files</li>
+     * </ol>
+     * The duration of each phase is printed and available from getLastShutdownTimings().
      */
     public void stopBatchProcessing() {
-        if (scheduler != null ) {
-            scheduler.shutdown();
-            try{
-                if(!scheduler.awaitTermination(5,TimeUnit.SECONDS)){
-                    scheduler.shutdownNow();
-                    scheduler.awaitTermination(5,TimeUnit.SECONDS);
+        Map<String, Long> timings = new LinkedHashMap<>();
+        long phaseStart = System.nanoTime();
+
+        List<ScheduledExecutorService> executors = new ArrayList<>();
+        for (ScheduledExecutorService executor : new ScheduledExecutorService[]{scheduler, criticalScheduler}) {
+            if (executor != null) {
+                executor.shutdown();
+                executors.add(executor);
+            }
+        }
+        for (LogFilterTask task : threadHandler.getRunnableTasks()) {
+            task.requestStop();
+        }
+        phaseStart = endPhase(timings, "stop-scheduling", phaseStart);
+
+        int interrupted = 0;
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getDrainTimeoutMillis());
+        try {
+            for (ScheduledExecutorService executor : executors) {
+                if (!executor.awaitTermination(Math.max(0, drainDeadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    for (LogFilterTask task : threadHandler.getRunnableTasks()) {
+                        interrupted += task.isRunning() && executorFor(task) == executor ? 1 : 0;
+                    }
+                    executor.shutdownNow();
+                    executor.awaitTermination(5, TimeUnit.SECONDS);
                 }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
             }
-            scheduler = null;
+        } catch (InterruptedException e) {
+            executors.forEach(ExecutorService::shutdownNow);
+            Thread.currentThread().interrupt();
         }
+        scheduler = null;
+        criticalScheduler = null;
+        yielded.clear();
+        phaseStart = endPhase(timings, "drain", phaseStart);
+
+        flushResultHandler();
+        phaseStart = endPhase(timings, "flush", phaseStart);
+
+        saveCheckpoint();
+        phaseStart = endPhase(timings, "checkpoint", phaseStart);
+
         threadHandler.closeTasks();
+        scheduledTasks.clear();
+        endPhase(timings, "close", phaseStart);
+
+        lastShutdownTimings = Collections.unmodifiableMap(timings);
+        System.out.println("[AlfaAgent] Shutdown phases (ms): " + timings
+                + (interrupted > 0 ? ", " + interrupted + " run(s) interrupted at the drain timeout" : ""));
+    }
+
+    /**
+     * Takes the read positions of the completed batches, flushes the result handler and then saves the positions
+     * taken, so the checkpoint only covers lines the handler has written out even while runs keep delivering.
+     * @return false if no checkpoint file is configured or flushing or writing failed.
+     */
+    public boolean flushAndCheckpoint() {
+        if (checkpointStore == null) {
+            return false;
+        }
+        // a position is only committed once the handler has completed the batch of its lines
+        Map<String, Long> positions = config.getSourceRegistry().committedPositions();
+        return flushResultHandler() && saveCheckpoint(positions);
+    }
+
+    // flushes the result handler if it is Flushable (e.g. SinkResultHandler); false if that failed
+    private boolean flushResultHandler() {
+        if (config.getResultHandler() instanceof Flushable) {
+            try {
+                ((Flushable) config.getResultHandler()).flush();
+            } catch (IOException e) {
+                System.err.println("[AlfaAgent] Result handler flush failed: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long endPhase(Map<String, Long> timings, String phase, long phaseStart) {
+        long now = System.nanoTime();
+        timings.put(phase, (now - phaseStart) / 1_000_000);
+        return now;
+    }
+
+    /**
+     * @return Phase name to duration in ms of the last stopBatchProcessing(), in phase order.
+     */
+    public Map<String, Long> getLastShutdownTimings() {
+        return lastShutdownTimings;
     }
 
     /**
@@ -0,0 +1,83 @@
+package main.core;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide pool of read buffers. A LineReader borrows one for the duration of a run only, so the number of
+ * buffers follows the number of concurrent runs (the thread pool size) instead of the number of files.
+ * ReadAhead borrows aligned direct buffers the same way.
+ */
+public class BufferPool {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // idle buffers kept for reuse; more are dropped and left to the GC
+    private static final int MAX_IDLE = 64;
+
+    private static final ConcurrentLinkedQueue<byte[]> idle = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger idleCount = new AtomicInteger();
+    private static final AtomicLong allocated = new AtomicLong();
+
+    // idle direct buffers per capacity
+    private static final int MAX_IDLE_DIRECT = 16;
+    private static final Map<Integer, Queue<ByteBuffer>> idleDirect = new ConcurrentHashMap<>();
+
+    private BufferPool() {
+    }
+
+    public static byte[] acquire() {
+        byte[] buf = idle.poll();
+        if (buf != null) {
+            idleCount.decrementAndGet();
+            return buf;
+        }
+        allocated.incrementAndGet();
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of another size (grown for very long lines) are dropped.
+     */
+    public static void release(byte[] buf) {
+        if (buf.length == BUFFER_SIZE && idleCount.incrementAndGet() <= MAX_IDLE) {
+            idle.offer(buf);
+        } else if (buf.length == BUFFER_SIZE) {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return A direct buffer of exactly 'capacity' bytes whose address is a multiple of 'alignment',
+     * as O_DIRECT reads require.
+     */
+    public static ByteBuffer acquireDirect(int capacity, int alignment) {
+        Queue<ByteBuffer> queue = idleDirect.get(capacity);
+        ByteBuffer buffer = queue == null ? null : queue.poll();
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(capacity + alignment).alignedSlice(alignment).slice(0, capacity);
+    }
+
+    public static void releaseDirect(ByteBuffer buffer) {
+        Queue<ByteBuffer> queue = idleDirect.computeIfAbsent(buffer.capacity(), c -> new ConcurrentLinkedQueue<>());
+        if (queue.size() < MAX_IDLE_DIRECT) {
+            queue.offer(buffer);
+        }
+    }
+
+    /**
+     * @return Number of buffers allocated since start.
+     */
+    public static long getAllocatedCount() {
+        return allocated.get();
+    }
+}
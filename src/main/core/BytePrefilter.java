@@ -0,0 +1,152 @@
+package main.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rejects lines on the raw bytes, before they are decoded, when every filter of a set needs one of a few literals.
+ * The ByteScanner looks for one anchor byte per literal many bytes at a time, and only a verified literal
+ * turns its line into a candidate that is decoded and given to CompiledFilterSet.
+ * The anchor is the byte of the literal that is least frequent in typical log text, so that fewer
+ * false candidates have to be verified (for "ERROR" an 'R' is rarer than an 'E').
+ */
+public class BytePrefilter {
+
+    // English letters from most to least frequent
+    private static final String LETTER_FREQUENCY = "etaoinshrdlcumwfgypbvkjxqz";
+
+    private final byte[][] literals;
+    private final boolean[] ignoreCase;
+    // index of the anchor byte inside each literal
+    private final int[] anchors;
+    private final byte[] anchorBytes;
+
+    private BytePrefilter(byte[][] literals, boolean[] ignoreCase, int[] anchors, byte[] anchorBytes) {
+        this.literals = literals;
+        this.ignoreCase = ignoreCase;
+        this.anchors = anchors;
+        this.anchorBytes = anchorBytes;
+    }
+
+    /**
+     * @return A prefilter for the filter set, or null if some filter can match without a known literal,
+     * a literal has non-ASCII case variants or the encoding does not keep ASCII bytes as they are.
+     */
+    public static BytePrefilter create(CompiledFilterSet filters, Charset charset) {
+        List<LiteralMatcher> necessary = filters.getNecessaryLiterals();
+        if (necessary == null || necessary.isEmpty() || !isAsciiCompatible(charset)) {
+            return null;
+        }
+        byte[][] literals = new byte[necessary.size()][];
+        boolean[] ignoreCase = new boolean[necessary.size()];
+        int[] anchors = new int[necessary.size()];
+        Set<Byte> anchorSet = new LinkedHashSet<>();
+        for (int i = 0; i < literals.length; i++) {
+            LiteralMatcher literal = necessary.get(i);
+            if (!literal.isAsciiFoldable()) {
+                return null; // e.g. "(?iu)disk" also matches "DıSK", which has other bytes than any ASCII case flip
+            }
+            literals[i] = literal.getLiteral().getBytes(charset);
+            ignoreCase[i] = literal.isIgnoreAsciiCase();
+            if (literals[i].length == 0) {
+                return null;
+            }
+            anchors[i] = rarestByte(literals[i]);
+            byte b = literals[i][anchors[i]];
+            anchorSet.add(b);
+            if (ignoreCase[i] && isAsciiLetter(b)) {
+                anchorSet.add((byte) (b ^ 0x20));
+            }
+        }
+        byte[] anchorBytes = new byte[anchorSet.size()];
+        int k = 0;
+        for (Byte b : anchorSet) {
+            anchorBytes[k++] = b;
+        }
+        return new BytePrefilter(literals, ignoreCase, anchors, anchorBytes);
+    }
+
+    /**
+     * @return The index in [from, to) where one of the literals starts, or -1.
+     * A literal that starts before 'from' is not reported, so callers pass whole lines.
+     */
+    public int findCandidate(ByteScanner scanner, ByteBuffer buf, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int hit = scanner.indexOfAny(buf, i, to, anchorBytes);
+            if (hit < 0) {
+                return -1;
+            }
+            for (int l = 0; l < literals.length; l++) {
+                int literalStart = hit - anchors[l];
+                if (literalStart >= from && literalAt(buf, literalStart, to, l)) {
+                    return literalStart;
+                }
+            }
+            i = hit + 1;
+        }
+        return -1;
+    }
+
+    private boolean literalAt(ByteBuffer buf, int at, int to, int l) {
+        byte[] literal = literals[l];
+        if (at + literal.length > to) {
+            return false;
+        }
+        for (int j = 0; j < literal.length; j++) {
+            byte actual = buf.get(at + j);
+            byte expected = literal[j];
+            if (actual != expected && !(ignoreCase[l] && isAsciiLetter(expected) && (actual ^ 0x20) == expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // higher score means rarer in log text
+    private static int rarestByte(byte[] literal) {
+        int best = 0;
+        int bestScore = -1;
+        for (int i = 0; i < literal.length; i++) {
+            int b = literal[i] & 0xFF;
+            int score;
+            if (b >= 0x80) {
+                score = 20;
+            } else if (isAsciiLetter((byte) b)) {
+                score = LETTER_FREQUENCY.indexOf(Character.toLowerCase((char) b)) + 1;
+            } else if (b >= '0' && b <= '9') {
+                score = 5;
+            } else if (b == ' ') {
+                score = 0;
+            } else {
+                score = 15;
+            }
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    /**
+     * Stateless encodings that write ASCII as single identical bytes (UTF-8, EUC-KR, ISO-8859-x, ...).
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name().toUpperCase();
+        if (name.contains("2022") || name.contains("UTF-7") || !charset.canEncode()) {
+            return false;
+        }
+        String probe = "\n\r azAZ09[]";
+        return Arrays.equals(probe.getBytes(charset), probe.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,32 @@
+package main.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Searches bytes in a ByteBuffer (heap or direct) by absolute index; the buffer position is not used.
+ * Implementations: ScalarByteScanner (8 bytes per step) and VectorByteScanner (jdk.incubator.vector, optional
+ * source root src/vector).
+ * Use ByteScanners.get() to obtain the best one for the running JVM.
+ */
+public interface ByteScanner {
+
+    /**
+     * @return The index of the first occurrence of b in [from, to), or -1.
+     */
+    int indexOf(ByteBuffer buf, int from, int to, byte b);
+
+    /**
+     * @return The index of the first byte in [from, to) that is contained in 'set', or -1.
+     */
+    int indexOfAny(ByteBuffer buf, int from, int to, byte[] set);
+
+    /**
+     * @return The number of occurrences of b in [from, to).
+     */
+    int count(ByteBuffer buf, int from, int to, byte b);
+
+    /**
+     * @return A short name for logs and benchmarks.
+     */
+    String name();
+}
@@ -0,0 +1,32 @@
+package main.core;
+
+/**
+ * Picks the ByteScanner once per JVM: the Vector API implementation when the jdk.incubator.vector
+ * module is available and VectorByteScanner (source root src/vector, built separately) is on the class path,
+ * otherwise the scalar one. The system property alfa.scanner=scalar forces the fallback.
+ */
+public class ByteScanners {
+
+    private static final ByteScanner INSTANCE = select();
+
+    private ByteScanners() {
+    }
+
+    public static ByteScanner get() {
+        return INSTANCE;
+    }
+
+    private static ByteScanner select() {
+        if (!"scalar".equals(System.getProperty("alfa.scanner"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ByteScanner) Class.forName("main.core.VectorByteScanner").getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException e) {
+                // built without src/vector
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("[AlfaAgent] Vector scanner unavailable, using scalar scanner: " + e);
+            }
+        }
+        return new ScalarByteScanner();
+    }
+}
@@ -0,0 +1,90 @@
+package main.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Persists the read positions of all path symbols ("symbol=offset" lines), so a restarted agent continues
+ * where the last one stopped instead of reading every file from the start.
+ * The file is replaced atomically (written to a temp file, forced, then moved), so a crash leaves either the
+ * old or the new checkpoint, never a mix.
+ */
+public class CheckpointStore {
+
+    private final Path file;
+
+    public CheckpointStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The saved positions, or an empty map if no checkpoint was written yet.
+     * @throws IOException If the file exists but cannot be read or holds an invalid offset.
+     */
+    public Map<String, Long> load() throws IOException {
+        Map<String, Long> positions = new HashMap<>();
+        if (!Files.exists(file)) {
+            return positions;
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        for (String symbol : props.stringPropertyNames()) {
+            try {
+                positions.put(symbol, Long.parseLong(props.getProperty(symbol).trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid offset for " + symbol + " in " + file, e);
+            }
+        }
+        return positions;
+    }
+
+    public synchronized void save(Map<String, Long> positions) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Long> entry : new TreeMap<>(positions).entrySet()) {
+            content.append(escape(entry.getKey())).append('=').append(entry.getValue()).append('\n');
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(content.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // escapes characters that java.util.Properties treats specially in keys
+    private static String escape(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : key.toCharArray()) {
+            if (c == '\\' || c == '=' || c == ':' || c == ' ' || c == '#' || c == '!') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,385 @@
+package main.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches one file on several cores for a single run of a hot file (see AlfaConfig.setPipelineWorkers).
+ * A reader thread cuts the file into chunks of whole lines in pooled buffers and hands chunk n to worker
+ * n % workers through that worker's SpscRing; each worker decodes and matches its chunks and passes the matches
+ * back through its own output ring. The caller, the sequencer, takes chunk n from output ring n % workers, so the
+ * matches come out in file order without any reordering buffer, and every ring has exactly one producer and one
+ * consumer.
+ * <p>
+ * The caller sees a LineReader-like view: next() returns the next matched line, position() and getLineCount()
+ * are those after that line. Lines that do not match are never shown, so everything the run does per line
+ * (sampling by line number, budgets) is based on these values as with readCandidateLine().
+ * close() must be called to end the threads and give the buffers back.
+ */
+public class ChunkPipeline {
+
+    // shared by all pipelines; threads are reused between runs and die after a minute idle
+    private static final ExecutorService threads = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "AlfaPipeline-" + number.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // chunks queued per worker in each direction; bounds the memory of a pipeline
+    private static final int RING_CAPACITY = 4;
+
+    private static class Chunk {
+        final long start;
+        final byte[] data;
+        final int length;
+
+        Chunk(long start, byte[] data, int length) {
+            this.start = start;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private static class Matches {
+        // end offset of the chunk and lines in it
+        final long end;
+        long lineCount;
+        final List<String> lines = new ArrayList<>();
+        final List<String> keywords = new ArrayList<>();
+        // per match: file offset after the line and line number within the chunk (1 based)
+        long[] ends = new long[8];
+        long[] lineNumbers = new long[8];
+
+        Matches(long end) {
+            this.end = end;
+        }
+
+        void add(String line, String keyword, long end, long lineNumber) {
+            int i = lines.size();
+            if (i == ends.length) {
+                ends = Arrays.copyOf(ends, i * 2);
+                lineNumbers = Arrays.copyOf(lineNumbers, i * 2);
+            }
+            lines.add(line);
+            keywords.add(keyword);
+            ends[i] = end;
+            lineNumbers[i] = lineNumber;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long stopAt;
+    private final Charset charset;
+    private final CompiledFilterSet filters;
+    private final BytePrefilter prefilter;
+    private final List<SpscRing<Chunk>> inputs = new ArrayList<>();
+    private final List<SpscRing<Matches>> outputs = new ArrayList<>();
+    private final CountDownLatch finished;
+
+    private volatile boolean cancelled;
+    // chunks cut by the reader, known once it is done; -1 while it is reading
+    private volatile long chunkCount = -1;
+    private volatile Throwable failure;
+    // CPU time of the reader and the workers, complete after close()
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    // sequencer state, caller thread only
+    private long nextChunk;
+    private Matches current;
+    private int currentIndex = -1;
+    private long position;
+    private long linesBefore;
+    private long lineCount;
+    private long waitNanos;
+
+    /**
+     * Starts reading at 'start'. Lines that start at or after 'stopAt' are left unread.
+     * @param prefilter May be null.
+     */
+    public ChunkPipeline(FileChannel channel, long start, long stopAt, Charset charset, CompiledFilterSet filters,
+                         BytePrefilter prefilter, int workers) {
+        this.channel = channel;
+        this.stopAt = stopAt;
+        this.charset = charset;
+        this.filters = filters;
+        this.prefilter = prefilter;
+        this.position = start;
+        this.finished = new CountDownLatch(workers + 1);
+        for (int i = 0; i < workers; i++) {
+            inputs.add(new SpscRing<>(RING_CAPACITY));
+            outputs.add(new SpscRing<>(RING_CAPACITY));
+        }
+        threads.execute(() -> read(start));
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            threads.execute(() -> match(worker));
+        }
+    }
+
+    /**
+     * @return The next matched line in file order, or null when the reader reached 'stopAt' or end of file.
+     * @throws IOException If reading or matching failed.
+     */
+    public String next() throws IOException {
+        while (current == null || currentIndex + 1 >= current.lines.size()) {
+            if (current != null) {
+                position = current.end;
+                linesBefore += current.lineCount;
+                lineCount = linesBefore;
+                current = null;
+            }
+            current = take();
+            if (current == null) {
+                return null;
+            }
+            currentIndex = -1;
+        }
+        currentIndex++;
+        position = current.ends[currentIndex];
+        lineCount = linesBefore + current.lineNumbers[currentIndex];
+        return current.lines.get(currentIndex);
+    }
+
+    /**
+     * @return The keyword of the line returned by next().
+     */
+    public String keyword() {
+        return current.keywords.get(currentIndex);
+    }
+
+    /**
+     * @return The file offset after the last line returned, or after the last chunk at the end.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return Lines up to the last line returned, unmatched lines included.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return Nanoseconds the caller waited for the workers.
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return CPU nanoseconds the pipeline threads spent on this pipeline; complete after close().
+     */
+    public long getCpuNanos() {
+        return cpuNanos.get();
+    }
+
+    /**
+     * Stops the threads, waits for them and gives their buffers back. Chunks not yet returned are dropped.
+     */
+    public void close() {
+        cancelled = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (SpscRing<Chunk> input : inputs) {
+            Chunk chunk;
+            while ((chunk = input.poll()) != null) {
+                BufferPool.release(chunk.data);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // sequencer: the matches of chunk nextChunk, or null after the last chunk
+    private Matches take() throws IOException {
+        SpscRing<Matches> output = outputs.get((int) (nextChunk % outputs.size()));
+        long waitStart = System.nanoTime();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                Matches matches = output.poll();
+                if (matches != null) {
+                    nextChunk++;
+                    return matches;
+                }
+                Throwable t = failure;
+                if (t != null) {
+                    throw t instanceof IOException ? (IOException) t : new IOException("Pipeline worker failed", t);
+                }
+                if (chunkCount == nextChunk) {
+                    return null;
+                }
+                SpscRing.idle(attempt);
+            }
+        } finally {
+            waitNanos += System.nanoTime() - waitStart;
+        }
+    }
+
+    private void read(long start) {
+        long cpuStart = ResourceGovernor.threadCpuNanos();
+        long count = 0;
+        try {
+            long offset = start;
+            byte[] carry = null;
+            int carryLength = 0;
+            while (offset < stopAt && !cancelled) {
+                byte[] data;
+                int length = 0;
+                if (carry == null) {
+                    data = BufferPool.acquire();
+                } else {
+                    // a line longer than a buffer: keep it whole in a larger array
+                    data = Arrays.copyOf(carry, carry.length * 2);
+                    BufferPool.release(carry);
+                    length = carryLength;
+                    carry = null;
+                }
+                boolean eof = false;
+                while (length < data.length) {
+                    int n = channel.read(ByteBuffer.wrap(data, length, data.length - length), offset + length);
+                    if (n <= 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += n;
+                }
+                // whole lines only, the rest goes to the next chunk; at end of file the last line may be unterminated
+                int cut = eof ? length : lastNewline(data, 0, length) + 1;
+                long lineLimit = stopAt - offset;
+                if (lineLimit < cut) {
+                    // the line holding the byte before 'stopAt' is the last one
+                    int nl = indexOfNewline(data, (int) lineLimit - 1, cut);
+                    cut = nl < 0 ? cut : nl + 1;
+                }
+                if (cut == 0) {
+                    if (eof) {
+                        BufferPool.release(data);
+                        break;
+                    }
+                    carry = data;
+                    carryLength = length;
+                    continue;
+                }
+                put(inputs.get((int) (count % inputs.size())), new Chunk(offset, data, cut));
+                count++;
+                offset += cut;
+                if (eof || offset >= stopAt) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            chunkCount = count;
+            cpuNanos.addAndGet(ResourceGovernor.threadCpuNanos() - cpuStart);
+            finished.countDown();
+        }
+    }
+
+    private void match(int worker) {
+        SpscRing<Chunk> input = inputs.get(worker);
+        SpscRing<Matches> output = outputs.get(worker);
+        long cpuStart = ResourceGovernor.threadCpuNanos();
+        try {
+            for (int attempt = 0; !cancelled; attempt++) {
+                Chunk chunk = input.poll();
+                if (chunk == null) {
+                    if (chunkCount >= 0 && input.isEmpty()) {
+                        return;
+                    }
+                    SpscRing.idle(attempt);
+                    continue;
+                }
+                attempt = -1;
+                Matches matches;
+                try {
+                    matches = scan(chunk);
+                } finally {
+                    BufferPool.release(chunk.data);
+                }
+                put(output, matches);
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            cpuNanos.addAndGet(ResourceGovernor.threadCpuNanos() - cpuStart);
+            finished.countDown();
+        }
+    }
+
+    private Matches scan(Chunk chunk) throws IOException {
+        Matches matches = new Matches(chunk.start + chunk.length);
+        LineReader lines = new LineReader(new ByteArrayInputStream(chunk.data, 0, chunk.length), charset);
+        try {
+            lines.seek(0);
+            String line;
+            while ((line = prefilter != null ? lines.readCandidateLine(prefilter, Long.MAX_VALUE) : lines.readLine()) != null) {
+                String keyword = filters.match(line);
+                if (keyword != null) {
+                    matches.add(line, keyword, chunk.start + lines.position(), lines.getLineCount());
+                }
+            }
+            matches.lineCount = lines.getLineCount();
+        } finally {
+            lines.release();
+        }
+        return matches;
+    }
+
+    private <E> void put(SpscRing<E> ring, E item) {
+        for (int attempt = 0; !ring.offer(item); attempt++) {
+            if (cancelled) {
+                if (item instanceof Chunk) {
+                    BufferPool.release(((Chunk) item).data);
+                }
+                return;
+            }
+            SpscRing.idle(attempt);
+        }
+    }
+
+    private static int lastNewline(byte[] data, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfNewline(byte[] data, int from, int to) {
+        for (int i = Math.max(from, 0); i < to; i++) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,503 @@
+package main.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The compiled form of one filter set (the Set&lt;String&gt; of a path symbol).
+ * Immutable and thread-safe, so one instance is shared by every symbol that uses the same filters.
+ * Patterns are tried in the order of the given collection and the first hit wins; inDefinedOrder() gives sets
+ * without an order of their own (Set.of, HashSet) a fixed one, so the reported keyword does not change between runs.
+ * <p>
+ * Besides plain filters (regex, "literal:", "literal-ci:", see PatternAnalyzer) a set can hold pipeline stages:
+ * <ul>
+ *     <li>"exclude:FILTER" drops lines that match FILTER, e.g. "exclude:literal:HealthCheck"</li>
+ *     <li>"all:A &amp;&amp; B" matches lines that match every one of the filters A and B</li>
+ *     <li>"mask:REGEX =&gt; REPLACEMENT" rewrites delivered lines, e.g. "mask:\b\d{16}\b =&gt; ****"</li>
+ * </ul>
+ * A set without include filters (only excludes and masks) matches every line that is not excluded, as "*".
+ * Excludes and the members of an AND group decide nothing about the reported keyword, so they are
+ * reordered from the hit rates observed at runtime: the cheapest test that most likely ends the evaluation
+ * runs first, and the exclude stage runs before the includes when that is cheaper on average.
+ * Includes keep their configured order, so the keyword stays the first configured filter that matches; with that
+ * rule no other order could save work, as a hit still needs every include before it tried.
+ * <p>
+ * About one line in PROFILE_INTERVAL is evaluated with a timer around every test. These samples make the profile
+ * (getProfile()) and replace the fixed cost estimates of the adaptive stages once a test has enough of them.
+ */
+public class CompiledFilterSet {
+
+    public static final String EXCLUDE_PREFIX = "exclude:";
+    public static final String ALL_PREFIX = "all:";
+    public static final String MASK_PREFIX = "mask:";
+    private static final String ALL_SEPARATOR = " && ";
+    private static final String MASK_SEPARATOR = " => ";
+    // keyword reported by a set without include filters
+    public static final String MATCH_ALL_KEYWORD = "*";
+
+    // lines between two reorderings of the adaptive stages
+    private static final int REORDER_INTERVAL = 4096;
+    // one line in this many, on average, is evaluated with timing
+    private static final int PROFILE_INTERVAL = 64;
+    // timed evaluations a test needs before its measured cost is used
+    private static final int MIN_PROFILE_SAMPLES = 32;
+
+    private static class FilterPattern {
+        final String keyword;
+        // the filter as configured, with the member for stages, e.g. "all:A && B [B]"
+        final String label;
+        final Pattern pattern;
+        // when set, the pattern is fully decided by these literals and never runs as a regex
+        final LiteralMatcher[] alternatives;
+        // when set, lines without this literal cannot match
+        final LiteralMatcher required;
+        // relative evaluation cost used to order the adaptive stages until measured
+        final int cost;
+        // timed evaluations, their hits and time
+        final LongAdder sampledEvaluations = new LongAdder();
+        final LongAdder sampledHits = new LongAdder();
+        final LongAdder sampledNanos = new LongAdder();
+
+        FilterPattern(PatternAnalyzer.Analysis analysis, String label) {
+            this.keyword = analysis.keyword;
+            this.label = label;
+            if (analysis.literalAlternatives != null) {
+                this.pattern = null;
+                this.alternatives = new LiteralMatcher[analysis.literalAlternatives.size()];
+                for (int i = 0; i < alternatives.length; i++) {
+                    alternatives[i] = new LiteralMatcher(analysis.literalAlternatives.get(i), analysis.ignoreCase, analysis.unicodeCase);
+                }
+                this.required = null;
+                this.cost = alternatives.length;
+            } else {
+                this.pattern = Pattern.compile(analysis.regex);
+                this.alternatives = null;
+                this.required = analysis.requiredLiteral == null ? null : new LiteralMatcher(analysis.requiredLiteral, analysis.ignoreCase, analysis.unicodeCase);
+                this.cost = required != null ? 3 : 5;
+            }
+        }
+
+        boolean matches(String line, boolean profiled) {
+            if (!profiled) {
+                return matches(line);
+            }
+            long start = System.nanoTime();
+            boolean hit = matches(line);
+            sampledNanos.add(System.nanoTime() - start);
+            sampledEvaluations.increment();
+            if (hit) {
+                sampledHits.increment();
+            }
+            return hit;
+        }
+
+        /**
+         * @param nanosPerUnit Measured nanoseconds per unit of the fixed estimate, 0 if nothing is measured yet.
+         * @return Measured average nanoseconds, the fixed estimate in nanoseconds, or the bare estimate.
+         */
+        double cost(double nanosPerUnit) {
+            long samples = sampledEvaluations.sum();
+            if (samples >= MIN_PROFILE_SAMPLES) {
+                return (double) sampledNanos.sum() / samples;
+            }
+            return nanosPerUnit > 0 ? cost * nanosPerUnit : cost;
+        }
+
+        boolean matches(String line) {
+            if (alternatives != null) {
+                for (LiteralMatcher literal : alternatives) {
+                    if (literal.matches(line)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (required != null && !required.matches(line)) {
+                return false;
+            }
+            return pattern.matcher(line).find();
+        }
+
+        // literals of which every match contains one, or null
+        List<LiteralMatcher> necessaryLiterals() {
+            if (alternatives != null) {
+                return Arrays.asList(alternatives);
+            }
+            return required == null ? null : List.of(required);
+        }
+    }
+
+    /**
+     * Tests whose evaluation order may change. Counts how often each one ended an evaluation and
+     * sorts them by that rate per unit of cost.
+     */
+    private static class AdaptiveOrder {
+        final FilterPattern[] tests;
+        final LongAdder[] decisive;
+        final LongAdder evaluations = new LongAdder();
+        volatile int[] order;
+
+        AdaptiveOrder(List<FilterPattern> tests) {
+            this.tests = tests.toArray(new FilterPattern[0]);
+            this.decisive = new LongAdder[this.tests.length];
+            int[] initial = new int[this.tests.length];
+            for (int i = 0; i < initial.length; i++) {
+                decisive[i] = new LongAdder();
+                initial[i] = i;
+            }
+            this.order = initial;
+        }
+
+        // the index of the first test in the current order whose result is 'stopOn', or -1
+        int firstWith(String line, boolean stopOn, boolean profiled) {
+            evaluations.increment();
+            for (int i : order) {
+                if (tests[i].matches(line, profiled) == stopOn) {
+                    decisive[i].increment();
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        double rate() {
+            long total = evaluations.sum();
+            long hits = 0;
+            for (LongAdder d : decisive) {
+                hits += d.sum();
+            }
+            return total == 0 ? 0.5 : (double) hits / total;
+        }
+
+        double totalCost(double nanosPerUnit) {
+            double sum = 0;
+            for (FilterPattern test : tests) {
+                sum += test.cost(nanosPerUnit);
+            }
+            return sum;
+        }
+
+        void reorder(double nanosPerUnit) {
+            Integer[] sorted = new Integer[tests.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, (a, b) -> Double.compare(
+                    decisive[b].sum() / tests[b].cost(nanosPerUnit), decisive[a].sum() / tests[a].cost(nanosPerUnit)));
+            int[] next = new int[sorted.length];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = sorted[i];
+            }
+            order = next;
+        }
+
+        List<String> describe() {
+            List<String> keywords = new ArrayList<>();
+            for (int i : order) {
+                keywords.add(tests[i].keyword);
+            }
+            return keywords;
+        }
+    }
+
+    // one include filter: a single pattern, or an AND group whose members are ordered adaptively
+    private static class Include {
+        final String keyword;
+        final FilterPattern single;
+        final AdaptiveOrder group;
+
+        Include(FilterPattern single) {
+            this.keyword = single.keyword;
+            this.single = single;
+            this.group = null;
+        }
+
+        Include(String keyword, List<FilterPattern> members) {
+            this.keyword = keyword;
+            this.single = null;
+            this.group = new AdaptiveOrder(members);
+        }
+
+        boolean matches(String line, boolean profiled) {
+            // an AND group fails at its first member that does not match
+            return single != null ? single.matches(line, profiled) : group.firstWith(line, false, profiled) < 0;
+        }
+
+        double cost(double nanosPerUnit) {
+            return single != null ? single.cost(nanosPerUnit) : group.totalCost(nanosPerUnit);
+        }
+    }
+
+    private static class Mask {
+        final Pattern pattern;
+        final String replacement;
+
+        Mask(Pattern pattern, String replacement) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+    }
+
+    private final List<Include> includes = new ArrayList<>();
+    // null without exclude filters
+    private final AdaptiveOrder excludes;
+    private final List<Mask> masks = new ArrayList<>();
+    private final List<String> report = new ArrayList<>();
+    // every test of every stage, in configured order
+    private final List<FilterPattern> patterns = new ArrayList<>();
+    // every match contains one of these literals; null if some filter has no such literal
+    private List<LiteralMatcher> necessaryLiterals = new ArrayList<>();
+    // false for sets of plain filters, which are never reordered
+    private final boolean adaptive;
+    // a pipeline without includes passes every line that is not excluded; an empty set matches nothing
+    private final boolean matchAll;
+
+    private final LongAdder includeEvaluations = new LongAdder();
+    private final LongAdder includeHits = new LongAdder();
+    private volatile boolean excludeFirst;
+    // racy on purpose, it only paces the reordering
+    private int sinceReorder;
+
+    /**
+     * Validates and compiles the filters (regexes, prefixed literals and pipeline stages).
+     * @throws java.util.regex.PatternSyntaxException If one of the filters is not a valid regex or stage.
+     */
+    public CompiledFilterSet(Collection<String> filters) {
+        List<FilterPattern> excludePatterns = new ArrayList<>();
+        boolean groups = false;
+        for (String filter : filters) {
+            if (filter.startsWith(EXCLUDE_PREFIX)) {
+                excludePatterns.add(compile(filter.substring(EXCLUDE_PREFIX.length()), filter));
+            } else if (filter.startsWith(MASK_PREFIX)) {
+                masks.add(compileMask(filter));
+                report.add(filter + " : applied to delivered lines");
+            } else if (filter.startsWith(ALL_PREFIX)) {
+                List<FilterPattern> members = new ArrayList<>();
+                for (String member : filter.substring(ALL_PREFIX.length()).split(Pattern.quote(ALL_SEPARATOR))) {
+                    members.add(compile(member.trim(), filter));
+                }
+                includes.add(new Include(filter, members));
+                groups |= members.size() > 1;
+                addNecessary(firstWithLiterals(members));
+            } else {
+                FilterPattern compiled = compile(filter, filter);
+                includes.add(new Include(compiled));
+                addNecessary(compiled.necessaryLiterals());
+            }
+        }
+        if (includes.isEmpty()) {
+            necessaryLiterals = null;
+        }
+        this.excludes = excludePatterns.isEmpty() ? null : new AdaptiveOrder(excludePatterns);
+        this.adaptive = excludes != null || groups;
+        this.matchAll = includes.isEmpty() && (excludes != null || !masks.isEmpty());
+    }
+
+    /**
+     * @return The filters in the order they are tried: as given for a List, LinkedHashSet or SortedSet (e.g. the
+     * numbered filters of AlfaConfigLoader), sorted for any other collection, whose iteration order may differ
+     * from one JVM run to the next.
+     */
+    public static List<String> inDefinedOrder(Collection<String> filters) {
+        if (filters instanceof List || filters instanceof LinkedHashSet || filters instanceof SortedSet) {
+            return List.copyOf(filters);
+        }
+        List<String> sorted = new ArrayList<>(filters);
+        Collections.sort(sorted);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private FilterPattern compile(String filter, String stage) {
+        Pattern.compile(PatternAnalyzer.sourceRegex(filter)); // validate the original before any rewrite
+        PatternAnalyzer.Analysis analysis = PatternAnalyzer.analyze(filter);
+        String label = stage.equals(filter) ? filter : stage + " [" + filter + "]";
+        report.add(label + (analysis.notes.isEmpty() ? " : compiled as is" : " : " + String.join("; ", analysis.notes)));
+        FilterPattern compiled = new FilterPattern(analysis, label);
+        patterns.add(compiled);
+        return compiled;
+    }
+
+    private static Mask compileMask(String filter) {
+        String body = filter.substring(MASK_PREFIX.length());
+        int separator = body.lastIndexOf(MASK_SEPARATOR);
+        if (separator < 0) {
+            throw new PatternSyntaxException("A mask needs the form 'mask:REGEX => REPLACEMENT'", filter, -1);
+        }
+        return new Mask(Pattern.compile(body.substring(0, separator)), body.substring(separator + MASK_SEPARATOR.length()));
+    }
+
+    // every member of an AND group is required, so the literals of any one of them will do
+    private static List<LiteralMatcher> firstWithLiterals(List<FilterPattern> members) {
+        for (FilterPattern member : members) {
+            if (member.necessaryLiterals() != null) {
+                return member.necessaryLiterals();
+            }
+        }
+        return null;
+    }
+
+    private void addNecessary(List<LiteralMatcher> literals) {
+        if (necessaryLiterals == null) {
+            return;
+        }
+        if (literals == null) {
+            necessaryLiterals = null;
+        } else {
+            necessaryLiterals.addAll(literals);
+        }
+    }
+
+    /**
+     * @return The keyword (original filter string) of the first include that matches, or null if none
+     * matches or an exclude does.
+     */
+    public String match(String line) {
+        // picked at random, as every n-th line would only ever see one phase of periodic log output
+        boolean profiled = ThreadLocalRandom.current().nextInt(PROFILE_INTERVAL) == 0;
+        if (!adaptive) {
+            for (Include include : includes) {
+                if (include.matches(line, profiled)) {
+                    return include.keyword;
+                }
+            }
+            return matchAll ? MATCH_ALL_KEYWORD : null;
+        }
+        if (++sinceReorder >= REORDER_INTERVAL) {
+            sinceReorder = 0;
+            reorder();
+        }
+        if (excludes == null) {
+            return firstInclude(line, profiled);
+        }
+        if (excludeFirst) {
+            return excludes.firstWith(line, true, profiled) >= 0 ? null : firstInclude(line, profiled);
+        }
+        String keyword = firstInclude(line, profiled);
+        return keyword != null && excludes.firstWith(line, true, profiled) >= 0 ? null : keyword;
+    }
+
+    private String firstInclude(String line, boolean profiled) {
+        if (includes.isEmpty()) {
+            return matchAll ? MATCH_ALL_KEYWORD : null;
+        }
+        includeEvaluations.increment();
+        for (Include include : includes) {
+            if (include.matches(line, profiled)) {
+                includeHits.increment();
+                return include.keyword;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void reorder() {
+        double nanosPerUnit = nanosPerCostUnit();
+        double includeCost = 0;
+        for (Include include : includes) {
+            if (include.group != null) {
+                include.group.reorder(nanosPerUnit);
+            }
+            includeCost += include.cost(nanosPerUnit);
+        }
+        if (excludes == null) {
+            return;
+        }
+        excludes.reorder(nanosPerUnit);
+        long evaluations = includeEvaluations.sum();
+        double includeRate = includes.isEmpty() ? 1 : evaluations == 0 ? 0.5 : (double) includeHits.sum() / evaluations;
+        double excludeRate = excludes.rate();
+        double excludeCost = excludes.totalCost(nanosPerUnit);
+        // expected cost per line of either stage order
+        double includesFirst = includeCost + includeRate * excludeCost;
+        double excludesFirst = excludeCost + (1 - excludeRate) * includeCost;
+        excludeFirst = excludesFirst < includesFirst;
+    }
+
+    // scale of the fixed estimates from the tests measured so far, so measured and estimated costs compare
+    private double nanosPerCostUnit() {
+        double nanos = 0;
+        long units = 0;
+        for (FilterPattern pattern : patterns) {
+            long samples = pattern.sampledEvaluations.sum();
+            if (samples >= MIN_PROFILE_SAMPLES) {
+                nanos += (double) pattern.sampledNanos.sum() / samples;
+                units += pattern.cost;
+            }
+        }
+        return units == 0 ? 0 : nanos / units;
+    }
+
+    /**
+     * @return Evaluations, hits and time of every test, estimated from the timed sample of lines,
+     * most expensive in total first.
+     */
+    public List<PatternProfile> getProfile() {
+        List<PatternProfile> profile = new ArrayList<>();
+        for (FilterPattern pattern : patterns) {
+            long samples = pattern.sampledEvaluations.sum();
+            long nanos = pattern.sampledNanos.sum();
+            profile.add(new PatternProfile(pattern.label, samples * PROFILE_INTERVAL,
+                    pattern.sampledHits.sum() * PROFILE_INTERVAL, nanos * PROFILE_INTERVAL,
+                    samples == 0 ? 0 : (double) nanos / samples));
+        }
+        profile.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return profile;
+    }
+
+    /**
+     * Applies the mask stages, in configured order, to a line that matched.
+     */
+    public String mask(String line) {
+        for (Mask mask : masks) {
+            Matcher matcher = mask.pattern.matcher(line);
+            if (matcher.find()) {
+                line = matcher.replaceAll(mask.replacement);
+            }
+        }
+        return line;
+    }
+
+    public boolean hasMasks() {
+        return !masks.isEmpty();
+    }
+
+    /**
+     * @return Literals of which every matching line contains at least one, or null if there is no such set.
+     */
+    public List<LiteralMatcher> getNecessaryLiterals() {
+        return necessaryLiterals == null ? null : Collections.unmodifiableList(necessaryLiterals);
+    }
+
+    /**
+     * @return The current order of the adaptive stages, e.g. "excludes first [exclude:B, exclude:A]".
+     */
+    public String describeOrder() {
+        StringBuilder sb = new StringBuilder();
+        if (excludes != null) {
+            sb.append(excludeFirst ? "excludes first " : "includes first ").append(excludes.describe());
+        }
+        for (Include include : includes) {
+            if (include.group != null) {
+                sb.append(sb.length() > 0 ? ", " : "").append(include.keyword).append(' ').append(include.group.describe());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return One line per filter describing what the analysis changed.
+     */
+    public List<String> getReport() {
+        return Collections.unmodifiableList(report);
+    }
+}
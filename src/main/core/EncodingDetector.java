@@ -0,0 +1,67 @@
+package main.core;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Guesses the encoding of a log file from a sample of its bytes.
+ * A UTF-8 byte order mark decides at once. Otherwise the first candidate that decodes the sample without a
+ * malformed or unmappable sequence wins, so candidates go from the strictest to the most lenient (UTF-8 before
+ * EUC-KR). A sample of ASCII bytes only (see isAscii) decides nothing: every ASCII compatible encoding reads it
+ * the same way, so the caller samples again once later bytes arrive.
+ */
+public class EncodingDetector {
+
+    private EncodingDetector() {
+    }
+
+    /**
+     * @param candidates Encodings to try, in order.
+     * @return The encoding of bytes [from, to) of the sample, or null if no candidate decodes them.
+     */
+    public static Charset detect(byte[] sample, int from, int to, List<Charset> candidates) {
+        if (to - from >= 3 && sample[from] == (byte) 0xEF && sample[from + 1] == (byte) 0xBB && sample[from + 2] == (byte) 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        for (Charset candidate : candidates) {
+            if (decodesCleanly(sample, from, to, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isAscii(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a sequence cut off at the end of the sample is not an error: the sample may end in the middle of a char
+    private static boolean decodesCleanly(byte[] sample, int from, int to, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample, from, to - from);
+        CharBuffer out = CharBuffer.allocate(1024);
+        while (true) {
+            CoderResult result = decoder.decode(in, out, false);
+            if (result.isError()) {
+                return false;
+            }
+            if (result.isUnderflow()) {
+                return true;
+            }
+            out.clear();
+        }
+    }
+}
@@ -1,21 +1,76 @@
 package main.core;
 
 import main.config.AlfaConfig;
+import main.config.BatchStats;
+import main.config.Lane;
+import main.config.SamplingPolicy;
+import main.flow.Match;
+import main.flow.MatchHub;
+import main.index.MatchIndex;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class FilterHandler {
+    // a BULK run checks for CRITICAL work once per chunk of this many bytes
+    private static final int YIELD_CHUNK_BYTES = BufferPool.BUFFER_SIZE;
+
     private AlfaConfig config;
     private String pathSymbol;
     private String path;
 
     private RandomAccessFile raf;
-    private BufferedReader br;
+    private LineReader reader;
+    // null unless read-ahead is configured
+    private ReadAhead readAhead;
+    // set during a run of a symbol with pipeline workers; lines then come matched from it instead of the reader
+    private ChunkPipeline pipeline;
+    private long pipelineWaitNanos;
+    private long pipelineCpuNanos;
+    // encoding of the open file; while detection has seen ASCII only, the configured fallback
+    private Charset charset;
+    // set while the encoding is still to be sniffed from the bytes ahead (see EncodingDetector)
+    private boolean encodingPending;
+
+    // offset, file key and counters of this symbol live in the shared registry
+    private SourceRegistry registry;
+    private int slot;
+
+    // shared with every symbol that uses the same filter set (see PatternCache)
+    private CompiledFilterSet compiledFilters;
+    // the configured set compiledFilters was made from; a different one in the config is compiled at the next run
+    private Set<String> compiledFrom;
+    // byte-level rejection of lines before decoding; null when the filters allow no such shortcut
+    private BytePrefilter prefilter;
+
+    // null when spilling is disabled in the config
+    private SpillQueue spillQueue;
+    // set when the result handler failed in the current run; remaining matches go to the spill queue
+    private boolean deliveryFailed;
+
+    // true when the last run stopped because of the read budget and unread data is left
+    private boolean backlog;
+    // true when the last run stopped early to give way to the CRITICAL lane
+    private boolean preempted;
+    // true when the ResourceGovernor deferred or shortened the last run
+    private boolean throttled;
+    // heap reserved in the governor for the lines of the last run, released once they are delivered
+    private long heldBytes;
 
-    private Set<Pattern> compiledFilterPatterns;
+    // null unless the symbol has a SamplingPolicy
+    private MatchSampler sampler;
+    // lines read by earlier runs, keeps 1-in-N line sampling continuous
+    private long linesBeforeRun;
+    // time spent in the result handler by the current or last run, see PoolTuner
+    private long handlerNanos;
+    private BatchStats lastBatchStats = new BatchStats(0, 0, 0, 0, false);
+
+    // set by requestStop(); a run in progress ends after its current line
+    private volatile boolean stopRequested;
 
     /**
      * Constructor: Opens file resources when the FilterHandler is created.
@@ -32,22 +87,34 @@ public class FilterHandler {
             throw new IOException("Path not found for symbol: " + pathSymbol);
         }
 
+        this.charset = config.getFileEncoding(pathSymbol);
+        this.encodingPending = config.isDetectEncoding(pathSymbol);
         this.raf = new RandomAccessFile(path, "r");
-        FileInputStream fis = new FileInputStream(raf.getFD());
-        InputStreamReader isr = new InputStreamReader(fis, config.getFileEncoding());
-        this.br = new BufferedReader(isr);
+        this.reader = openReader();
+        this.registry = config.getSourceRegistry();
+        this.slot = registry.slotOf(pathSymbol);
+        registry.setFileKey(slot, SourceRegistry.fileKeyOf(Paths.get(path)));
 
         Set<String> filterOpts = config.getFilterOpts().get(pathSymbol);
+        this.compiledFrom = filterOpts;
         if (filterOpts != null) {
-            this.compiledFilterPatterns = new HashSet<>();
-            for (String regex : filterOpts) {
-                try {
-                    this.compiledFilterPatterns.add(Pattern.compile(regex));
-                } catch (Exception e) {
-                    config.getResultHandler().onError(pathSymbol, new IllegalArgumentException("Invalid regex filter: " + regex, e));
-                    close();
-                    throw new IOException("Failed to initialize FilterHandler due to invalid regex pattern: " + regex);
-                }
+            try {
+                this.compiledFilters = PatternCache.get(filterOpts);
+                this.prefilter = BytePrefilter.create(compiledFilters, charset);
+            } catch (PatternSyntaxException e) {
+                String regex = e.getPattern();
+                config.getResultHandler().onError(pathSymbol, new IllegalArgumentException("Invalid regex filter: " + regex, e));
+                close();
+                throw new IOException("Failed to initialize FilterHandler due to invalid regex pattern: " + regex, e);
+            }
+        }
+
+        if (config.getSpillDirectory() != null) {
+            try {
+                this.spillQueue = new SpillQueue(Paths.get(config.getSpillDirectory(), pathSymbol), config.getSpillSegmentSize());
+            } catch (IOException e) {
+                close();
+                throw new IOException("Failed to open spill queue for symbol: " + pathSymbol, e);
             }
         }
     }
@@ -55,57 +122,502 @@ public class FilterHandler {
 
     /**
      * Performs the filtering operation (reuses resources).
+     * A run stops early when the read budget of the config (bytes or time per run) is used up;
+     * hasBacklog() then tells the caller that the task should be rescheduled.
+     * When the path now names another file (rotation by rename), the old file is read to its end first
+     * and the next run continues with the new file from the start.
+     * While the symbol has Flow subscribers (see MatchHub) each match needs their demand; without it
+     * the run ends in front of the matched line and continues when demand arrives.
+     * A run of a BULK symbol also ends at a chunk boundary while a CRITICAL file is being read (see LaneMonitor).
+     * A symbol with pipeline workers has its lines matched on other threads (see ChunkPipeline); the matches
+     * still arrive here in file order and go through the same steps.
+     * The ResourceGovernor may defer a run, grant it fewer bytes or end it when the heap budget is used up;
+     * wasThrottled() then tells the caller to continue later rather than right away.
      * @return A list of filtered log lines.
      */
     public List<String> doFilter() {
         List<String> filteredLines = new ArrayList<>();
-        Map<String, Long> positions = config.getLastReadPositions();
-        long startPosition = positions.getOrDefault(pathSymbol, 0L);
+        MatchHub hub = config.getMatchHub();
+        Long seek = hub.takeSeek(pathSymbol);
+        if (seek != null) {
+            registry.setOffset(slot, seek);
+        }
+        long startPosition = Math.max(registry.getOffset(slot), 0L);
+        boolean gated = hub.isGated(pathSymbol);
+        Set<String> filters = config.getFilterOpts().get(pathSymbol);
+        if (filters != compiledFrom) {
+            updateFilters(filters);
+        }
+        boolean masking = compiledFilters != null && compiledFilters.hasMasks();
+        boolean starved = false;
+        MatchIndex matchIndex = config.getMatchIndex();
+        long matches = 0;
+        long maxBytes = config.getMaxBytesPerRun();
+        long deadline = config.getMaxMillisPerRun() > 0 ? System.nanoTime() + config.getMaxMillisPerRun() * 1_000_000L : 0L;
+        Lane lane = config.getLane(pathSymbol);
+        LaneMonitor lanes = config.getLaneMonitor();
+        boolean critical = false;
+        ResourceGovernor governor = config.getResourceGovernor();
+        long cpuStart = ResourceGovernor.threadCpuNanos();
+        releaseBatchMemory();
+        backlog = false;
+        preempted = false;
+        throttled = false;
+        handlerNanos = 0;
+        pipelineWaitNanos = 0;
+        pipelineCpuNanos = 0;
+        if (stopRequested) {
+            lastBatchStats = new BatchStats(0, 0, 0, 0, false);
+            return filteredLines;
+        }
 
         try {
+            boolean rotated = isReplaced();
             long currentFileSize = raf.length();
 
             if (startPosition > currentFileSize) {
                 startPosition = 0L;
             }
+            if (lane == Lane.CRITICAL && (currentFileSize > startPosition || rotated)) {
+                // BULK runs give way until this one is done
+                critical = true;
+                lanes.beginCritical();
+            }
 
-            raf.seek(startPosition);
+            // until the sniffed bytes show the encoding, read no further than the bytes checked to be ASCII
+            long sniffedEnd = encodingPending ? sniffEncoding(startPosition) : Long.MAX_VALUE;
+            long stopAt = Math.min(maxBytes > 0 ? startPosition + maxBytes : Long.MAX_VALUE, sniffedEnd);
+            long wanted = Math.min(stopAt, currentFileSize) - startPosition;
+            long granted = 0;
+            SamplingPolicy shedPolicy = null;
+            if (wanted > 0) {
+                boolean exempt = lane == Lane.CRITICAL;
+                granted = governor.admit(exempt) ? governor.acquireRead(wanted, exempt) : 0;
+                if (granted == 0) {
+                    // deferred: nothing is read, the task continues after the governor's retry delay
+                    throttled = true;
+                    backlog = true;
+                    lastBatchStats = new BatchStats(0, 0, 0, 0, false);
+                    return filteredLines;
+                }
+                if (granted < wanted) {
+                    throttled = true;
+                    stopAt = startPosition + granted;
+                }
+                shedPolicy = governor.shedPolicy(exempt);
+            }
+            MatchSampler sampler = currentSampler(shedPolicy);
+            reader.seek(startPosition);
+            replaySpilled();
 
+            int workers = config.getPipelineWorkers(pathSymbol);
+            if (workers > 0 && compiledFilters != null) {
+                pipeline = new ChunkPipeline(raf.getChannel(), startPosition, stopAt, charset, compiledFilters, prefilter, workers);
+            }
+            boolean budgetUsed = false;
+            boolean heapFull = false;
+            // start of the line being read, where a run without subscriber demand ends
+            long lineStart = position();
+            long nextYieldCheck = lane == Lane.BULK ? startPosition + YIELD_CHUNK_BYTES : Long.MAX_VALUE;
             String line;
-            while ((line = br.readLine()) != null) {
-                if (compiledFilterPatterns != null) {
-                    for (Pattern pattern : compiledFilterPatterns) {
-                        Matcher matcher = pattern.matcher(line);
-                        if (matcher.find()) {
-                            filteredLines.add(line);
-                            config.getResultHandler().onLogFiltered(line, pattern.pattern());
+            while ((line = nextLine(stopAt)) != null) {
+                if (compiledFilters != null
+                        && (sampler == null || sampler.shouldEvaluate(linesBeforeRun + lineCount()))) {
+                    String keyword = pipeline != null ? pipeline.keyword() : compiledFilters.match(line);
+                    if (keyword != null) {
+                        MatchHub.Grant grant = gated ? hub.tryAcquire(pathSymbol) : null;
+                        if (gated && grant == null) {
+                            starved = true;
                             break;
                         }
+                        matches++;
+                        if (masking) {
+                            // everything downstream, index and spill files included, sees the masked line
+                            line = compiledFilters.mask(line);
+                        }
+                        if (matchIndex != null) {
+                            matchIndex.add(pathSymbol, keyword, line);
+                        }
+                        if (gated) {
+                            hub.publish(grant, new Match(pathSymbol, keyword, line, position()));
+                        }
+                        if (sampler == null || sampler.onMatch(line, keyword)) {
+                            filteredLines.add(line);
+                            heapFull |= !hold(governor, line);
+                            deliver(line, keyword);
+                            if (!deliveryFailed && (spillQueue == null || !spillQueue.hasPending())) {
+                                // the handler has the line: a run aborted after this point must not deliver it again
+                                registry.setOffset(slot, position());
+                            }
+                        }
                     }
                 }
+                if (stopRequested) {
+                    break;
+                }
+                if (position() >= stopAt || (deadline != 0L && System.nanoTime() - deadline >= 0)) {
+                    budgetUsed = true;
+                    break;
+                }
+                if (heapFull) {
+                    // the rest waits until this batch is delivered and its heap released
+                    throttled = true;
+                    budgetUsed = true;
+                    break;
+                }
+                if (position() >= nextYieldCheck) {
+                    nextYieldCheck = position() + YIELD_CHUNK_BYTES;
+                    if (lanes.shouldYield()) {
+                        preempted = true;
+                        budgetUsed = true;
+                        break;
+                    }
+                }
+                lineStart = position();
+            }
+            long endPosition = starved ? lineStart : position();
+            budgetUsed |= endPosition >= stopAt;
+            backlog = budgetUsed && endPosition < raf.length();
+            if (starved) {
+                hub.markStarved(pathSymbol);
+                // demand that arrived before the mark did not wake the task
+                backlog = hub.hasDemand(pathSymbol);
             }
 
-            long currentPosition = raf.getFilePointer();
-            positions.put(pathSymbol, currentPosition);
+            if (sampler != null) {
+                for (String[] sampled : sampler.drainReservoir()) {
+                    filteredLines.add(sampled[0]);
+                    hold(governor, sampled[0]);
+                    deliver(sampled[0], sampled[1]);
+                }
+            }
+            linesBeforeRun += lineCount();
+            lastBatchStats = new BatchStats(lineCount(), endPosition - startPosition,
+                    sampler == null ? matches : sampler.estimateMatches(matches), filteredLines.size(),
+                    sampler != null && sampler.isEstimated());
+            registry.addStats(slot, lineCount(), endPosition - startPosition, matches);
+            if (wanted > 0) {
+                governor.settleRead(granted, endPosition - startPosition);
+            }
 
+            if (spillQueue != null) {
+                // spilled matches must be durable before the offset moves past their lines
+                spillQueue.sync();
+            }
+            registry.setOffset(slot, endPosition);
+            closePipeline();
+
+            if (rotated && !backlog && !stopRequested && !starved) {
+                switchToNewFile();
+            }
         } catch (IOException e) {
             config.getResultHandler().onError(pathSymbol, e);
+        } finally {
+            closePipeline();
+            reader.release();
+            if (critical) {
+                lanes.endCritical();
+            }
+            governor.chargeCpu(ResourceGovernor.threadCpuNanos() - cpuStart + pipelineCpuNanos);
         }
 
         return filteredLines;
     }
 
+    // compiles filters replaced through AlfaConfig.setFilters(); an invalid set is reported and the old one kept
+    private void updateFilters(Set<String> filters) {
+        compiledFrom = filters;
+        if (filters == null) {
+            compiledFilters = null;
+            prefilter = null;
+            return;
+        }
+        try {
+            compiledFilters = PatternCache.get(filters);
+            prefilter = BytePrefilter.create(compiledFilters, charset);
+            System.out.println("[AlfaAgent] Filters of " + pathSymbol + " updated: " + filters);
+        } catch (PatternSyntaxException e) {
+            config.getResultHandler().onError(pathSymbol, new IllegalArgumentException("Invalid regex filter: " + e.getPattern(), e));
+        }
+    }
+
+    // ends the threads of a pipelined run; its counters must have been taken
+    private void closePipeline() {
+        if (pipeline != null) {
+            pipeline.close();
+            pipelineWaitNanos = pipeline.getWaitNanos();
+            pipelineCpuNanos = pipeline.getCpuNanos();
+            pipeline = null;
+        }
+    }
+
+    // true if the path names another file than the open handle; a missing path is not a rotation yet
+    private boolean isReplaced() throws IOException {
+        long openKey = registry.getFileKey(slot);
+        long currentKey;
+        try {
+            currentKey = SourceRegistry.fileKeyOf(Paths.get(path));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return openKey != 0 && currentKey != 0 && openKey != currentKey;
+    }
+
+    private LineReader openReader() throws IOException {
+        if (config.getReadAheadBytes() <= 0) {
+            return new LineReader(raf, charset);
+        }
+        try {
+            readAhead = new ReadAhead(Paths.get(path), config.getReadAheadBytes(), config.isDirectIo());
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        return new LineReader(raf, charset, BufferPool.BUFFER_SIZE, readAhead);
+    }
+
+    private void closeReadAhead() {
+        if (readAhead != null) {
+            try {
+                readAhead.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            readAhead = null;
+        }
+    }
+
+    // called once the old file is read to its end
+    private void switchToNewFile() throws IOException {
+        RandomAccessFile next = new RandomAccessFile(path, "r");
+        long nextKey = SourceRegistry.fileKeyOf(Paths.get(path));
+        reader.release();
+        closeReadAhead();
+        raf.close();
+        raf = next;
+        reader = openReader();
+        encodingPending = config.isDetectEncoding(pathSymbol);
+        registry.setFileKey(slot, nextKey);
+        registry.setOffset(slot, 0L);
+        // the new file may already have content
+        backlog = true;
+        System.out.println("[AlfaAgent] " + pathSymbol + " was rotated, continuing with the new file.");
+    }
+
     /**
-     * Closes the file resources when they are no longer in use.
+     * Reads a sample at 'from' and switches the reader (and the prefilter, whose literals are encoded bytes)
+     * to the encoding it shows.
+     * @return The offset up to which the current encoding is safe: the end of the sample while it is ASCII only.
      */
-    public void close() {
+    private long sniffEncoding(long from) throws IOException {
+        byte[] sample = BufferPool.acquire();
         try {
-            if (br != null) {
-                br.close();
+            raf.seek(from);
+            int n = 0;
+            int read;
+            while (n < sample.length && (read = raf.read(sample, n, sample.length - n)) > 0) {
+                n += read;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (EncodingDetector.isAscii(sample, 0, n)) {
+                // the line cut at the end of a full sample is sniffed again with the next one
+                int safe = n;
+                if (n == sample.length) {
+                    while (safe > 0 && sample[safe - 1] != '\n') {
+                        safe--;
+                    }
+                    if (safe == 0) {
+                        safe = n;
+                    }
+                }
+                return from + safe;
+            }
+            encodingPending = false;
+            Charset detected = EncodingDetector.detect(sample, 0, n, config.getEncodingCandidates());
+            if (detected == null) {
+                detected = config.getFileEncoding(pathSymbol);
+                System.err.println("[AlfaAgent] No encoding candidate fits " + pathSymbol + ", using " + detected.name());
+            } else {
+                System.out.println("[AlfaAgent] Detected encoding of " + pathSymbol + ": " + detected.name());
+            }
+            if (!detected.equals(charset)) {
+                charset = detected;
+                reader.setCharset(charset);
+                if (compiledFilters != null) {
+                    prefilter = BytePrefilter.create(compiledFilters, charset);
+                }
+            }
+            return Long.MAX_VALUE;
+        } finally {
+            BufferPool.release(sample);
+        }
+    }
+
+    // picks up policy changes made through the config between runs; 'shedPolicy' applies if the symbol has none
+    private MatchSampler currentSampler(SamplingPolicy shedPolicy) {
+        SamplingPolicy policy = config.getSamplingPolicy(pathSymbol);
+        if (policy == null) {
+            policy = shedPolicy;
+        }
+        if (policy == null) {
+            sampler = null;
+        } else if (sampler == null || sampler.getPolicy() != policy) {
+            sampler = new MatchSampler(policy);
+        }
+        return sampler;
+    }
+
+    /**
+     * Asks a run in progress to stop after its current line and makes later runs return immediately.
+     * The run still delivers its reservoir sample and saves its position, so nothing is read twice.
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    /**
+     * @return Counters of the last doFilter() run.
+     */
+    public BatchStats getLastBatchStats() {
+        return lastBatchStats;
+    }
+
+    private String nextLine(long stopAt) throws IOException {
+        if (pipeline != null) {
+            return pipeline.next();
+        }
+        return prefilter != null ? reader.readCandidateLine(prefilter, stopAt) : reader.readLine();
+    }
+
+    // offset after the current line, from the pipeline in a pipelined run
+    private long position() {
+        return pipeline != null ? pipeline.position() : reader.position();
+    }
+
+    private long lineCount() {
+        return pipeline != null ? pipeline.getLineCount() : reader.getLineCount();
+    }
+
+    /**
+     * @return true if the last run of a BULK symbol stopped early because a CRITICAL file had new data.
+     * hasBacklog() is then true as well.
+     */
+    public boolean wasPreempted() {
+        return preempted;
+    }
+
+    /**
+     * @return true if the last run left unread data because its read budget was used up.
+     */
+    public boolean hasBacklog() {
+        return backlog;
+    }
+
+    /**
+     * @return true if the ResourceGovernor deferred or shortened the last run; hasBacklog() is then true as well
+     * unless the file was read to its end anyway.
+     */
+    public boolean wasThrottled() {
+        return throttled;
+    }
+
+    // reserves the heap of a line the run keeps until its batch is delivered; false once the budget is used up
+    private boolean hold(ResourceGovernor governor, String line) {
+        if (!governor.hasHeapBudget()) {
+            return true;
+        }
+        long bytes = ResourceGovernor.estimateBytes(line);
+        heldBytes += bytes;
+        return governor.reserveHeap(bytes);
+    }
+
+    /**
+     * Called once the result handler has completed the batch of the last run: checkpoints may now cover its
+     * lines (see SourceRegistry.commitOffset).
+     */
+    public void commitBatch() {
+        registry.commitOffset(slot);
+    }
+
+    /**
+     * Gives the heap reserved for the lines of the last run back to the governor. Called once the batch
+     * was delivered; the next run does it otherwise.
+     */
+    public void releaseBatchMemory() {
+        if (heldBytes > 0) {
+            config.getResourceGovernor().releaseHeap(heldBytes);
+            heldBytes = 0;
+        }
+    }
+
+    /**
+     * Hands a match to the result handler. With a spill queue, a failing handler does not lose the match:
+     * it is appended to the queue together with every later match of this run, keeping the original order.
+     */
+    private void deliver(String line, String keyword) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (spillQueue == null) {
+                config.getResultHandler().onLogFiltered(line, keyword);
+                return;
+            }
+            if (!deliveryFailed && !spillQueue.hasPending()) {
+                try {
+                    config.getResultHandler().onLogFiltered(line, keyword);
+                    return;
+                } catch (RuntimeException e) {
+                    deliveryFailed = true;
+                    config.getResultHandler().onError(pathSymbol, e);
+                }
+            }
+            spillQueue.append(line, keyword);
+        } finally {
+            handlerNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return Nanoseconds the last run spent reading the file; in a pipelined run, waiting for the pipeline.
+     */
+    public long getLastIoNanos() {
+        return reader.getIoNanos() + pipelineWaitNanos;
+    }
+
+    /**
+     * @return Nanoseconds the last run spent delivering matches to the result handler.
+     */
+    public long getLastHandlerNanos() {
+        return handlerNanos;
+    }
+
+    /**
+     * Delivers matches left over from earlier runs before any new line is read.
+     */
+    private void replaySpilled() {
+        deliveryFailed = false;
+        if (spillQueue == null || !spillQueue.hasPending()) {
+            return;
+        }
+        try {
+            int replayed = spillQueue.replay((line, keyword) -> config.getResultHandler().onLogFiltered(line, keyword));
+            System.out.println("[AlfaAgent] Replayed " + replayed + " spilled matches for " + pathSymbol + ".");
+        } catch (Exception e) {
+            deliveryFailed = true;
+            config.getResultHandler().onError(pathSymbol, e);
+        }
+    }
+
+    public long getSpilledCount() {
+        return spillQueue == null ? 0 : spillQueue.getPendingCount();
+    }
+
+    /**
+     * Closes the file resources when they are no longer in use.
+     */
+    public void close() {
+        if (spillQueue != null) {
+            spillQueue.close();
         }
+        closeReadAhead();
         try {
             if (raf != null) {
                 raf.close();
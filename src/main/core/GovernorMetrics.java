@@ -0,0 +1,103 @@
+package main.core;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot of the ResourceGovernor: whether it is holding runs back right now, why, and its totals since start.
+ */
+public class GovernorMetrics {
+
+    private final boolean throttled;
+    private final Set<ResourceGovernor.Reason> reasons;
+    private final Map<ResourceGovernor.Reason, Long> events;
+    private final long deferredRuns;
+    private final long shortenedRuns;
+    private final long sampledRuns;
+    private final long throttledMillis;
+    private final long readBytes;
+    private final long cpuMillis;
+    private final long heldBytes;
+
+    public GovernorMetrics(boolean throttled, Set<ResourceGovernor.Reason> reasons, Map<ResourceGovernor.Reason, Long> events,
+                           long deferredRuns, long shortenedRuns, long sampledRuns, long throttledMillis,
+                           long readBytes, long cpuMillis, long heldBytes) {
+        this.throttled = throttled;
+        this.reasons = reasons;
+        this.events = events;
+        this.deferredRuns = deferredRuns;
+        this.shortenedRuns = shortenedRuns;
+        this.sampledRuns = sampledRuns;
+        this.throttledMillis = throttledMillis;
+        this.readBytes = readBytes;
+        this.cpuMillis = cpuMillis;
+        this.heldBytes = heldBytes;
+    }
+
+    /**
+     * @return true if a run was deferred, shortened or sampled within the last second.
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * @return The limits that held runs back in the current throttling episode, empty when not throttled.
+     */
+    public Set<ResourceGovernor.Reason> getReasons() {
+        return reasons;
+    }
+
+    /**
+     * @return How often each limit held a run back.
+     */
+    public Map<ResourceGovernor.Reason, Long> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return Runs that read nothing because the I/O or CPU bucket was empty.
+     */
+    public long getDeferredRuns() {
+        return deferredRuns;
+    }
+
+    /**
+     * @return Runs that ended early because of the I/O grant or the heap budget.
+     */
+    public long getShortenedRuns() {
+        return shortenedRuns;
+    }
+
+    /**
+     * @return Runs that matched only one line in N to save CPU.
+     */
+    public long getSampledRuns() {
+        return sampledRuns;
+    }
+
+    public long getThrottledMillis() {
+        return throttledMillis;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * @return Heap reserved for matched lines of runs whose batch is not delivered yet.
+     */
+    public long getHeldBytes() {
+        return heldBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("throttled=%s %s, deferred=%d, shortened=%d, sampled=%d, throttledMs=%d, read=%d B, cpu=%d ms, held=%d B",
+                throttled, reasons, deferredRuns, shortenedRuns, sampledRuns, throttledMillis, readBytes, cpuMillis, heldBytes);
+    }
+}
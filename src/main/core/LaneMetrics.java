@@ -0,0 +1,85 @@
+package main.core;
+
+import main.config.Lane;
+
+/**
+ * Latency of the runs of one lane since start (see LaneMonitor).
+ * Queue time is the delay between the time a run was due and its start; latency adds the run itself,
+ * so it is the time new data at the due time waited until it was delivered.
+ */
+public class LaneMetrics {
+
+    private final Lane lane;
+    private final long runs;
+    private final double avgQueueMillis;
+    private final double maxQueueMillis;
+    private final double avgLatencyMillis;
+    private final double maxLatencyMillis;
+    private final long sloMillis;
+    private final long sloMisses;
+    private final long yields;
+
+    public LaneMetrics(Lane lane, long runs, double avgQueueMillis, double maxQueueMillis, double avgLatencyMillis,
+                       double maxLatencyMillis, long sloMillis, long sloMisses, long yields) {
+        this.lane = lane;
+        this.runs = runs;
+        this.avgQueueMillis = avgQueueMillis;
+        this.maxQueueMillis = maxQueueMillis;
+        this.avgLatencyMillis = avgLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.sloMillis = sloMillis;
+        this.sloMisses = sloMisses;
+        this.yields = yields;
+    }
+
+    public Lane getLane() {
+        return lane;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public double getAvgQueueMillis() {
+        return avgQueueMillis;
+    }
+
+    public double getMaxQueueMillis() {
+        return maxQueueMillis;
+    }
+
+    public double getAvgLatencyMillis() {
+        return avgLatencyMillis;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * @return The latency objective of the lane, 0 if it has none.
+     */
+    public long getSloMillis() {
+        return sloMillis;
+    }
+
+    /**
+     * @return Runs whose latency exceeded the objective.
+     */
+    public long getSloMisses() {
+        return sloMisses;
+    }
+
+    /**
+     * @return Runs that stopped early to give way to the CRITICAL lane.
+     */
+    public long getYields() {
+        return yields;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s runs=%d queue avg=%.1fms max=%.1fms latency avg=%.1fms max=%.1fms slo=%dms misses=%d yields=%d",
+                lane, runs, avgQueueMillis, maxQueueMillis, avgLatencyMillis, maxLatencyMillis, sloMillis, sloMisses, yields);
+    }
+}
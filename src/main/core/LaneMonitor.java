@@ -0,0 +1,103 @@
+package main.core;
+
+import main.config.Lane;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinates the lanes (see Lane) and keeps their latency counters.
+ * A CRITICAL run with new data to read is active between beginCritical() and endCritical(); while any is active,
+ * BULK runs yield at their next chunk boundary. When the last one ends, the resume listener (BatchHandler)
+ * requeues the runs that yielded.
+ */
+public class LaneMonitor {
+
+    private static class Counters {
+        long runs;
+        long queueNanos;
+        long maxQueueNanos;
+        long latencyNanos;
+        long maxLatencyNanos;
+        long sloMillis;
+        long sloMisses;
+        long yields;
+    }
+
+    private final AtomicInteger criticalActive = new AtomicInteger();
+    private final Map<Lane, Counters> counters = new EnumMap<>(Lane.class);
+    private volatile Runnable resumeListener;
+
+    public LaneMonitor() {
+        for (Lane lane : Lane.values()) {
+            counters.put(lane, new Counters());
+        }
+    }
+
+    public void beginCritical() {
+        criticalActive.incrementAndGet();
+    }
+
+    public void endCritical() {
+        if (criticalActive.decrementAndGet() == 0) {
+            Runnable listener = resumeListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * @return true while a CRITICAL file is being read, so BULK work should give way.
+     */
+    public boolean shouldYield() {
+        return criticalActive.get() > 0;
+    }
+
+    public void setResumeListener(Runnable resumeListener) {
+        this.resumeListener = resumeListener;
+    }
+
+    /**
+     * Adds a finished run.
+     * @param queueNanos Delay between the time the run was due and its start.
+     * @param latencyNanos Delay between the time the run was due and its end.
+     * @param sloMillis Latency objective of the lane, 0 for none.
+     * @param yielded The run stopped early to give way to the CRITICAL lane.
+     */
+    public void record(Lane lane, long queueNanos, long latencyNanos, long sloMillis, boolean yielded) {
+        Counters c = counters.get(lane);
+        synchronized (c) {
+            c.runs++;
+            c.queueNanos += queueNanos;
+            c.maxQueueNanos = Math.max(c.maxQueueNanos, queueNanos);
+            c.latencyNanos += latencyNanos;
+            c.maxLatencyNanos = Math.max(c.maxLatencyNanos, latencyNanos);
+            c.sloMillis = sloMillis;
+            if (sloMillis > 0 && latencyNanos > sloMillis * 1_000_000L) {
+                c.sloMisses++;
+            }
+            if (yielded) {
+                c.yields++;
+            }
+        }
+    }
+
+    /**
+     * @return The counters of every lane, in lane order.
+     */
+    public Map<Lane, LaneMetrics> getMetrics() {
+        Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+        for (Map.Entry<Lane, Counters> entry : counters.entrySet()) {
+            Counters c = entry.getValue();
+            synchronized (c) {
+                double runs = Math.max(1, c.runs);
+                metrics.put(entry.getKey(), new LaneMetrics(entry.getKey(), c.runs, c.queueNanos / runs / 1e6,
+                        c.maxQueueNanos / 1e6, c.latencyNanos / runs / 1e6, c.maxLatencyNanos / 1e6,
+                        c.sloMillis, c.sloMisses, c.yields));
+            }
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,273 @@
+package main.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reads lines from a RandomAccessFile and keeps the exact byte offset of the next unread line.
+ * BufferedReader reads ahead, so the file pointer cannot tell how far the returned lines go;
+ * this reader splits on '\n' bytes itself, which works for ASCII compatible encodings (UTF-8, EUC-KR, ...).
+ * With the default size the buffer is borrowed from BufferPool at seek() and given back by release(),
+ * so an idle reader holds no buffer.
+ * A reader can also take an InputStream (e.g. a GZIPInputStream); it then only moves forward.
+ * Lines are decoded with String(byte[], Charset), which copies runs of ASCII bytes without a CharsetDecoder
+ * for UTF-8 and EUC-KR alike; an extra ASCII check in front of it measured slower.
+ */
+public class LineReader {
+
+    private final RandomAccessFile raf;
+    // set instead of raf for stream sources
+    private final InputStream in;
+    private final int bufferSize;
+    // null unless read-ahead is configured; then all reads go through it
+    private final ReadAhead readAhead;
+    private Charset charset;
+    private final ByteScanner scanner = ByteScanners.get();
+
+    private byte[] buf;
+    // ByteBuffer view of buf for the scanner
+    private ByteBuffer view;
+    // file offset of buf[0]
+    private long bufOffset;
+    // first unread byte and end of valid data in buf
+    private int start;
+    private int end;
+    // file offset of the first byte of the last line returned
+    private long lastLineStart;
+    // lines consumed since the last seek, including lines skipped by readCandidateLine
+    private long lineCount;
+    // time spent in file reads since the last seek
+    private long ioNanos;
+
+    public LineReader(RandomAccessFile raf, Charset charset) {
+        this(raf, charset, BufferPool.BUFFER_SIZE);
+    }
+
+    public LineReader(RandomAccessFile raf, Charset charset, int bufferSize) {
+        this(raf, charset, bufferSize, null);
+    }
+
+    /**
+     * Reads a stream from its current position, which counts as offset 0. seek() may only be called once, with 0.
+     */
+    public LineReader(InputStream in, Charset charset) {
+        this.raf = null;
+        this.in = in;
+        this.bufferSize = BufferPool.BUFFER_SIZE;
+        this.readAhead = null;
+        this.charset = charset;
+    }
+
+    public LineReader(RandomAccessFile raf, Charset charset, int bufferSize, ReadAhead readAhead) {
+        this.raf = raf;
+        this.in = null;
+        this.bufferSize = bufferSize;
+        this.readAhead = readAhead;
+        this.charset = charset;
+    }
+
+    /**
+     * Changes the encoding of the lines returned from now on (see EncodingDetector).
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Moves the reader to the given file offset and drops buffered data.
+     * Borrows a buffer if the reader has none.
+     */
+    public void seek(long position) throws IOException {
+        if (buf == null) {
+            buf = bufferSize == BufferPool.BUFFER_SIZE ? BufferPool.acquire() : new byte[bufferSize];
+            view = ByteBuffer.wrap(buf);
+        }
+        if (raf != null) {
+            raf.seek(position);
+        } else if (position != 0 || bufOffset + end != 0) {
+            throw new IOException("A stream can only be read once from its start");
+        }
+        bufOffset = position;
+        start = 0;
+        end = 0;
+        lineCount = 0;
+        ioNanos = 0;
+    }
+
+    /**
+     * Gives the buffer back to the pool. Buffered data is dropped; the next seek() borrows a buffer again.
+     */
+    public void release() {
+        if (readAhead != null) {
+            readAhead.release();
+        }
+        if (buf != null) {
+            BufferPool.release(buf);
+            buf = null;
+            view = null;
+            start = 0;
+            end = 0;
+        }
+    }
+
+    /**
+     * Reads the next line without its terminator ("\n" or "\r\n").
+     * Like BufferedReader, an unterminated last line is returned at end of file.
+     * @return The line, or null at end of file.
+     */
+    public String readLine() throws IOException {
+        int scanFrom = start;
+        while (true) {
+            int nl = scanner.indexOf(view, scanFrom, end, (byte) '\n');
+            if (nl >= 0) {
+                return takeLine(start, nl);
+            }
+            scanFrom = end - start;
+            if (!fill()) {
+                if (start == end) {
+                    return null;
+                }
+                String line = new String(buf, start, end - start, charset);
+                lastLineStart = bufOffset + start;
+                start = end;
+                lineCount++;
+                return line;
+            }
+            scanFrom = start + scanFrom;
+        }
+    }
+
+    /**
+     * Like readLine(), but lines without any literal of the prefilter are skipped without being decoded.
+     * Only lines that start before 'stopAt' are looked at, so a read budget still applies to skipped bytes
+     * and a line that starts at 'stopAt' is left unread.
+     * @return The next line that may match, or null at end of file or at 'stopAt'.
+     */
+    public String readCandidateLine(BytePrefilter prefilter, long stopAt) throws IOException {
+        while (position() < stopAt) {
+            int limit = (int) Math.min(end, stopAt - bufOffset);
+            int lastNl = lastIndexOfNewline(start, limit);
+            if (lastNl < 0) {
+                int nl = limit < end ? scanner.indexOf(view, limit, end, (byte) '\n') : -1;
+                if (nl >= 0) {
+                    // the last line before 'stopAt' ends after it
+                    if (prefilter.findCandidate(scanner, view, start, nl) >= 0) {
+                        return takeLine(start, nl);
+                    }
+                    lineCount++;
+                    start = nl + 1;
+                    continue;
+                }
+                if (fill()) {
+                    continue;
+                }
+                // unterminated last line at end of file
+                boolean candidate = start < end && prefilter.findCandidate(scanner, view, start, end) >= 0;
+                String line = candidate ? new String(buf, start, end - start, charset) : null;
+                lastLineStart = bufOffset + start;
+                if (start < end) {
+                    lineCount++;
+                }
+                start = end;
+                return line;
+            }
+            int hit = prefilter.findCandidate(scanner, view, start, lastNl);
+            if (hit < 0) {
+                // every complete line in the buffer is rejected
+                lineCount += scanner.count(view, start, lastNl + 1, (byte) '\n');
+                start = lastNl + 1;
+                continue;
+            }
+            int lineStart = lastIndexOfNewline(start, hit) + 1;
+            if (lineStart > 0) {
+                lineCount += scanner.count(view, start, lineStart, (byte) '\n');
+                start = lineStart;
+            }
+            return takeLine(start, scanner.indexOf(view, hit, lastNl + 1, (byte) '\n'));
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of lines consumed since the last seek, skipped lines included.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return Nanoseconds spent reading the file since the last seek.
+     */
+    public long getIoNanos() {
+        return ioNanos;
+    }
+
+    /**
+     * @return The file offset of the first byte of the last line returned.
+     */
+    public long getLastLineStart() {
+        return lastLineStart;
+    }
+
+    /**
+     * @return The file offset just after the last line returned by readLine().
+     */
+    public long position() {
+        return bufOffset + start;
+    }
+
+    // decodes [from, nl) without a trailing '\r' and moves past the newline
+    private String takeLine(int from, int nl) {
+        int lineEnd = (nl > from && buf[nl - 1] == '\r') ? nl - 1 : nl;
+        String line = new String(buf, from, lineEnd - from, charset);
+        lastLineStart = bufOffset + from;
+        start = nl + 1;
+        lineCount++;
+        return line;
+    }
+
+    private int lastIndexOfNewline(int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compacts the buffer (growing it for very long lines) and reads more bytes from the file.
+     * @return false at end of file.
+     */
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            bufOffset += start;
+            end -= start;
+            start = 0;
+        }
+        if (end == buf.length) {
+            byte[] grown = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, end);
+            buf = grown;
+            view = ByteBuffer.wrap(buf);
+        }
+        long readStart = System.nanoTime();
+        int n = readAhead != null
+                ? readAhead.read(bufOffset + end, buf, end, buf.length - end)
+                : raf != null ? raf.read(buf, end, buf.length - end) : in.read(buf, end, buf.length - end);
+        ioNanos += System.nanoTime() - readStart;
+        if (n <= 0) {
+            return false;
+        }
+        end += n;
+        return true;
+    }
+}
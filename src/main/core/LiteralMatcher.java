@@ -0,0 +1,140 @@
+package main.core;
+
+/**
+ * Plain substring search used instead of java.util.regex for filters that are (or contain) literals.
+ * Case-insensitive search folds ASCII letters only, which is exactly what the (?i) regex flag does
+ * without the UNICODE_CASE flag. With unicodeCase every char is folded like (?iu) does
+ * (Character.toLowerCase(Character.toUpperCase(c))), in the same single pass: ASCII chars of the line take the
+ * cheap path and only other chars go through Character. Chars outside the BMP compare exactly.
+ */
+public class LiteralMatcher {
+
+    // ASCII chars that non-ASCII chars fold to under Unicode case folding ('K' for the Kelvin sign, 's' for 'ſ' ...)
+    private static final boolean[] ASCII_WITH_UNICODE_VARIANTS = new boolean[128];
+
+    static {
+        for (char c = 128; c < Character.MIN_SURROGATE; c++) {
+            char folded = foldUnicode(c);
+            if (folded < 128) {
+                ASCII_WITH_UNICODE_VARIANTS[folded] = true;
+            }
+        }
+    }
+
+    private final String literal;
+    private final boolean ignoreAsciiCase;
+    private final boolean unicodeCase;
+    // literal with ASCII letters lowered (or every char folded with unicodeCase), used when ignoreAsciiCase is set
+    private final char[] folded;
+
+    public LiteralMatcher(String literal, boolean ignoreAsciiCase) {
+        this(literal, ignoreAsciiCase, false);
+    }
+
+    /**
+     * @param unicodeCase Fold every char and not only ASCII letters, ignored unless ignoreCase is set.
+     */
+    public LiteralMatcher(String literal, boolean ignoreCase, boolean unicodeCase) {
+        this.literal = literal;
+        this.ignoreAsciiCase = ignoreCase;
+        this.unicodeCase = ignoreCase && unicodeCase;
+        this.folded = new char[literal.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = this.unicodeCase ? fold(literal.charAt(i)) : lowerAscii(literal.charAt(i));
+        }
+    }
+
+    /**
+     * @return true if the literal occurs in the line.
+     */
+    public boolean matches(String line) {
+        if (!ignoreAsciiCase) {
+            return line.contains(literal);
+        }
+        if (unicodeCase) {
+            return matchesFolded(line);
+        }
+        int n = folded.length;
+        if (n == 0) {
+            return true;
+        }
+        char first = folded[0];
+        int last = line.length() - n;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (lowerAscii(line.charAt(i)) != first) {
+                continue;
+            }
+            for (int j = 1; j < n; j++) {
+                if (lowerAscii(line.charAt(i + j)) != folded[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matchesFolded(String line) {
+        int n = folded.length;
+        if (n == 0) {
+            return true;
+        }
+        char first = folded[0];
+        int last = line.length() - n;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (fold(line.charAt(i)) != first) {
+                continue;
+            }
+            for (int j = 1; j < n; j++) {
+                if (fold(line.charAt(i + j)) != folded[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public boolean isIgnoreAsciiCase() {
+        return ignoreAsciiCase;
+    }
+
+    public boolean isUnicodeCase() {
+        return unicodeCase;
+    }
+
+    /**
+     * @return true if every match is the literal's bytes with at most ASCII letters flipped in case,
+     * which is what BytePrefilter can verify on raw bytes.
+     */
+    public boolean isAsciiFoldable() {
+        if (!unicodeCase) {
+            return true;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c >= 128 || ASCII_WITH_UNICODE_VARIANTS[fold(c)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char fold(char c) {
+        return c < 128 ? lowerAscii(c) : foldUnicode(c);
+    }
+
+    private static char foldUnicode(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static char lowerAscii(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+}
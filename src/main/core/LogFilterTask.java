@@ -3,12 +3,21 @@ package main.core;
 import main.config.AlfaConfig;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LogFilterTask implements Runnable {
 
     private AlfaConfig config;
     private String pathSymbol;
     private FilterHandler filterHandler;
+    // a periodic run and a backlog continuation must never read the same file at the same time
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // timings of the last run, see PoolTuner
+    private volatile long lastRunNanos;
+    private volatile long lastIoNanos;
+    private volatile long lastHandlerNanos;
+    // receives the timings of every run, null if nobody measures
+    private volatile PoolTuner poolTuner;
 
     /**
      * Constructor: Receives the main.config and the path symbol this task is responsible for.
@@ -21,14 +30,93 @@ public class LogFilterTask implements Runnable {
 
     @Override
     public void run() {
+        runOnce();
+    }
+
+    /**
+     * Runs the task unless a run is already in progress or the symbol is paused (see AlfaConfig.setPaused).
+     * @return false if it did not run.
+     */
+    public boolean runOnce() {
+        if (config.isPaused(pathSymbol) || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
         try {
             List<String> filteredLines = filterHandler.doFilter();
 
-            config.getResultHandler().onBatchComplete(filteredLines, pathSymbol);
-
+            long batchStart = System.nanoTime();
+            config.getResultHandler().onBatchComplete(filteredLines, pathSymbol, filterHandler.getLastBatchStats());
+            filterHandler.commitBatch();
+            lastHandlerNanos = filterHandler.getLastHandlerNanos() + (System.nanoTime() - batchStart);
+            lastIoNanos = filterHandler.getLastIoNanos();
         } catch (Exception e) {
             config.getResultHandler().onError(pathSymbol, e);
+        } finally {
+            filterHandler.releaseBatchMemory();
+            lastRunNanos = System.nanoTime() - start;
+            PoolTuner tuner = poolTuner;
+            if (tuner != null) {
+                tuner.record(this);
+            }
+            running.set(false);
         }
+        return true;
+    }
+
+    /**
+     * @return true if the last run stopped at its read budget and the file still has unread data.
+     */
+    public boolean hasBacklog() {
+        return filterHandler.hasBacklog();
+    }
+
+    /**
+     * @return true if the last run gave way to the CRITICAL lane, see FilterHandler.wasPreempted().
+     */
+    public boolean wasPreempted() {
+        return filterHandler.wasPreempted();
+    }
+
+    /**
+     * @return true if the ResourceGovernor held the last run back, see FilterHandler.wasThrottled().
+     */
+    public boolean wasThrottled() {
+        return filterHandler.wasThrottled();
+    }
+
+    /**
+     * See FilterHandler.requestStop().
+     */
+    public void requestStop() {
+        filterHandler.requestStop();
+    }
+
+    /**
+     * @return true while a run of this task is in progress.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public void setPoolTuner(PoolTuner poolTuner) {
+        this.poolTuner = poolTuner;
+    }
+
+    public long getLastRunNanos() {
+        return lastRunNanos;
+    }
+
+    public long getLastIoNanos() {
+        return lastIoNanos;
+    }
+
+    public long getLastHandlerNanos() {
+        return lastHandlerNanos;
+    }
+
+    public String getPathSymbol() {
+        return pathSymbol;
     }
 
     public void close() {
@@ -0,0 +1,98 @@
+package main.core;
+
+import main.config.SamplingPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Applies a SamplingPolicy inside FilterHandler.doFilter().
+ * Line and match counters keep running across runs so 1-in-N sampling does not restart at every batch.
+ */
+public class MatchSampler {
+
+    private final SamplingPolicy policy;
+    private final Random random = new Random();
+
+    private long matchNumber;
+
+    // reservoir of the current batch, with the arrival index to restore file order
+    private final List<String[]> reservoir = new ArrayList<>();
+    private final List<Long> reservoirOrder = new ArrayList<>();
+    private long offered;
+
+    public MatchSampler(SamplingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @param lineNumber Number of the line in the file since the handler was created (1-based).
+     * @return false if the line is not in the sample and must not even be matched.
+     */
+    public boolean shouldEvaluate(long lineNumber) {
+        return !policy.isRatesOnly() || lineNumber % policy.getN() == 0;
+    }
+
+    /**
+     * Records a match.
+     * @return true if it should be delivered right away; reservoir matches are delivered by drainReservoir().
+     */
+    public boolean onMatch(String line, String keyword) {
+        if (policy.getMode() == SamplingPolicy.Mode.RESERVOIR) {
+            offer(line, keyword);
+            return false;
+        }
+        // ratesOnly already sampled the lines, so every evaluated match is delivered
+        return policy.isRatesOnly() || matchNumber++ % policy.getN() == 0;
+    }
+
+    /**
+     * @return The reservoir of this batch as {line, keyword} pairs in file order, and starts a new batch.
+     */
+    public List<String[]> drainReservoir() {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < reservoir.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort((a, b) -> Long.compare(reservoirOrder.get(a), reservoirOrder.get(b)));
+        List<String[]> ordered = new ArrayList<>();
+        for (int i : indexes) {
+            ordered.add(reservoir.get(i));
+        }
+        reservoir.clear();
+        reservoirOrder.clear();
+        offered = 0;
+        return ordered;
+    }
+
+    /**
+     * @return The reported match count for the number of matches found on evaluated lines.
+     */
+    public long estimateMatches(long evaluatedMatches) {
+        return policy.isRatesOnly() ? evaluatedMatches * policy.getN() : evaluatedMatches;
+    }
+
+    public boolean isEstimated() {
+        return policy.isRatesOnly();
+    }
+
+    public SamplingPolicy getPolicy() {
+        return policy;
+    }
+
+    // Algorithm R: the k-th offer replaces a random slot with probability size/k
+    private void offer(String line, String keyword) {
+        long index = offered++;
+        if (reservoir.size() < policy.getN()) {
+            reservoir.add(new String[]{line, keyword});
+            reservoirOrder.add(index);
+            return;
+        }
+        long slot = (long) (random.nextDouble() * (index + 1));
+        if (slot < policy.getN()) {
+            reservoir.set((int) slot, new String[]{line, keyword});
+            reservoirOrder.set((int) slot, index);
+        }
+    }
+}
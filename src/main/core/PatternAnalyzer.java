@@ -0,0 +1,472 @@
+package main.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Static analysis of one filter regex before it is compiled.
+ * Filters are evaluated with Matcher.find() and only the yes/no answer is used, which allows a few rewrites:
+ * <ul>
+ *     <li>leading and trailing ".*" are removed ("(?i).*(FATAL|ERROR).*" scans the line quadratically with find())</li>
+ *     <li>a pattern that is only a literal or an alternation of literals is evaluated with a substring search</li>
+ *     <li>a literal every match must contain is extracted to reject lines before the regex runs</li>
+ *     <li>nested quantifiers such as "(a+)+" are flagged as a catastrophic backtracking risk</li>
+ * </ul>
+ * Patterns with inline flags other than (?i) and (?iu), and patterns with quoted text (\Q...\E), are compiled
+ * as they are.
+ * <p>
+ * A filter can also name its kind with a prefix: "literal:text" is a case-sensitive substring,
+ * "literal-ci:text" a case-insensitive one with Unicode folding (like (?iu) on the quoted text, without the regex),
+ * and "regex:..." forces a regex, e.g. for a pattern that itself starts with "literal:".
+ * The keyword reported to handlers is always the whole filter string, prefix included.
+ */
+public class PatternAnalyzer {
+
+    private static final String META = "\\^$.|?*+()[]{}";
+
+    public static final String LITERAL_PREFIX = "literal:";
+    public static final String LITERAL_CI_PREFIX = "literal-ci:";
+    public static final String REGEX_PREFIX = "regex:";
+
+    /**
+     * Result of the analysis. 'keyword' is always the original filter string reported to handlers.
+     */
+    public static class Analysis {
+        public final String keyword;
+        public final String regex;
+        public final boolean ignoreCase;
+        // with ignoreCase: fold every char (?iu) instead of ASCII letters only
+        public final boolean unicodeCase;
+        // non-null when the whole pattern is equivalent to "contains one of these literals"
+        public final List<String> literalAlternatives;
+        // non-null when every match contains this literal
+        public final String requiredLiteral;
+        public final List<String> notes;
+
+        Analysis(String keyword, String regex, boolean ignoreCase, boolean unicodeCase, List<String> literalAlternatives,
+                 String requiredLiteral, List<String> notes) {
+            this.keyword = keyword;
+            this.regex = regex;
+            this.ignoreCase = ignoreCase;
+            this.unicodeCase = unicodeCase;
+            this.literalAlternatives = literalAlternatives;
+            this.requiredLiteral = requiredLiteral;
+            this.notes = notes;
+        }
+    }
+
+    /**
+     * @return The regex a filter stands for: the filter itself, the part after "regex:",
+     * or the quoted text of a literal filter.
+     */
+    public static String sourceRegex(String filter) {
+        if (filter.startsWith(LITERAL_PREFIX)) {
+            return Pattern.quote(filter.substring(LITERAL_PREFIX.length()));
+        }
+        if (filter.startsWith(LITERAL_CI_PREFIX)) {
+            return "(?iu)" + Pattern.quote(filter.substring(LITERAL_CI_PREFIX.length()));
+        }
+        if (filter.startsWith(REGEX_PREFIX)) {
+            return filter.substring(REGEX_PREFIX.length());
+        }
+        return filter;
+    }
+
+    public static Analysis analyze(String keyword) {
+        List<String> notes = new ArrayList<>();
+        String regexSource = sourceRegex(keyword);
+        if (keyword.startsWith(LITERAL_PREFIX) || keyword.startsWith(LITERAL_CI_PREFIX)) {
+            boolean ignoreCase = keyword.startsWith(LITERAL_CI_PREFIX);
+            String literal = keyword.substring((ignoreCase ? LITERAL_CI_PREFIX : LITERAL_PREFIX).length());
+            notes.add("evaluated as " + (ignoreCase ? "Unicode case-insensitive " : "") + "literal search [" + literal + "]");
+            return new Analysis(keyword, regexSource, ignoreCase, ignoreCase, List.of(literal), null, notes);
+        }
+
+        String flags = "";
+        String body = regexSource;
+        int flagEnd = inlineFlagsEnd(regexSource);
+        if (flagEnd > 0) {
+            flags = regexSource.substring(2, flagEnd - 1);
+            body = regexSource.substring(flagEnd);
+        }
+        boolean unicodeCase = flags.equals("iu") || flags.equals("ui");
+        if (!flags.isEmpty() && !flags.equals("i") && !unicodeCase) {
+            notes.add("inline flags (?" + flags + ") are not analyzed");
+            return new Analysis(keyword, regexSource, false, false, null, null, notes);
+        }
+        boolean ignoreCase = !flags.isEmpty();
+        if (hasQuote(body)) {
+            // inside \Q...\E metacharacters are literal and \E? quantifies the last quoted char only
+            notes.add("quoted text (\\Q...\\E) is not analyzed");
+            return new Analysis(keyword, regexSource, false, false, null, null, notes);
+        }
+
+        String stripped = stripLeadingDotStar(body);
+        if (stripped.length() != body.length()) {
+            notes.add("removed leading '.*'");
+        }
+        String trimmed = stripTrailingDotStar(stripped);
+        if (trimmed.length() != stripped.length()) {
+            notes.add("removed trailing '.*'");
+        }
+        body = trimmed;
+
+        if (hasNestedQuantifier(body)) {
+            notes.add("WARNING nested quantifier, risk of catastrophic backtracking");
+        }
+
+        String regex = (ignoreCase ? "(?" + flags + ")" : "") + body;
+        List<String> alternatives = literalAlternatives(body);
+        if (alternatives != null) {
+            String folding = unicodeCase ? "Unicode case-insensitive " : ignoreCase ? "ASCII case-insensitive " : "";
+            notes.add("evaluated as " + folding + "literal search " + alternatives);
+            return new Analysis(keyword, regex, ignoreCase, unicodeCase, alternatives, null, notes);
+        }
+
+        String required = requiredLiteral(body);
+        if (required != null) {
+            notes.add("lines without \"" + required + "\" are rejected before the regex runs");
+        }
+        return new Analysis(keyword, regex, ignoreCase, unicodeCase, null, required, notes);
+    }
+
+    /**
+     * @return The index after a leading inline flag group like "(?i)", or 0 if there is none.
+     */
+    private static int inlineFlagsEnd(String regex) {
+        if (!regex.startsWith("(?")) {
+            return 0;
+        }
+        int i = 2;
+        while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+            i++;
+        }
+        return (i > 2 && i < regex.length() && regex.charAt(i) == ')') ? i + 1 : 0;
+    }
+
+    private static String stripLeadingDotStar(String body) {
+        while (body.startsWith(".*") && !body.startsWith(".*+")) {
+            body = body.startsWith(".*?") ? body.substring(3) : body.substring(2);
+        }
+        return body;
+    }
+
+    private static String stripTrailingDotStar(String body) {
+        while (true) {
+            int cut;
+            if (body.endsWith(".*?")) {
+                cut = body.length() - 3;
+            } else if (body.endsWith(".*")) {
+                cut = body.length() - 2;
+            } else {
+                return body;
+            }
+            if (isEscaped(body, cut) || opensInsideClass(body, cut)) {
+                return body;
+            }
+            body = body.substring(0, cut);
+        }
+    }
+
+    // true if the pattern quotes text with \Q
+    private static boolean hasQuote(String body) {
+        for (int i = 0; i + 1 < body.length(); i++) {
+            if (body.charAt(i) == '\\' && body.charAt(++i) == 'Q') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // true if the char at index is preceded by an odd number of backslashes
+    private static boolean isEscaped(String s, int index) {
+        int count = 0;
+        for (int i = index - 1; i >= 0 && s.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    // true if index lies inside an unterminated character class, e.g. "[a.*"
+    private static boolean opensInsideClass(String s, int index) {
+        boolean inClass = false;
+        for (int i = 0; i < index; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            }
+        }
+        return inClass;
+    }
+
+    /**
+     * Detects a quantified group whose content is quantified as well, e.g. "(a+)+" or "(\w*\s?)*".
+     */
+    static boolean hasNestedQuantifier(String body) {
+        // for every open group: does it contain a quantifier?
+        List<Boolean> stack = new ArrayList<>();
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(body, i);
+            } else if (c == '(') {
+                stack.add(false);
+            } else if (c == ')' && !stack.isEmpty()) {
+                boolean quantifiedInside = stack.remove(stack.size() - 1);
+                char next = i + 1 < body.length() ? body.charAt(i + 1) : 0;
+                if (quantifiedInside && (next == '*' || next == '+' || next == '{')) {
+                    return true;
+                }
+                if (!stack.isEmpty() && (quantifiedInside || next == '*' || next == '+' || next == '{')) {
+                    stack.set(stack.size() - 1, true);
+                }
+            } else if ((c == '*' || c == '+' || c == '{') && !stack.isEmpty()) {
+                stack.set(stack.size() - 1, true);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The literals if the body is "A|B|C", "(A|B|C)" or "(?:A|B|C)" with plain literals, otherwise null.
+     */
+    static List<String> literalAlternatives(String body) {
+        String inner = body;
+        if (inner.startsWith("(") && matchingParen(inner, 0) == inner.length() - 1) {
+            inner = inner.startsWith("(?:") ? inner.substring(3, inner.length() - 1) : inner.substring(1, inner.length() - 1);
+            if (inner.startsWith("?")) {
+                return null; // lookaround or named group
+            }
+        }
+        List<String> literals = new ArrayList<>();
+        int depth = 0;
+        int from = 0;
+        for (int i = 0; i <= inner.length(); i++) {
+            char c = i < inner.length() ? inner.charAt(i) : '|';
+            if (c == '\\') {
+                i++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                String literal = unescapeLiteral(inner.substring(from, i));
+                if (literal == null || literal.isEmpty()) {
+                    return null;
+                }
+                literals.add(literal);
+                from = i + 1;
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * @return The plain text of a regex without metacharacters ("\." becomes "."), or null.
+     */
+    static String unescapeLiteral(String regex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                sb.append(regex.charAt(++i));
+            } else if (META.indexOf(c) >= 0) {
+                return null;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds the longest run of literal characters at the top level of the pattern (outside groups and
+     * not made optional by a quantifier). Every match must contain it.
+     * Escapes with arguments (\x41, \u0041, \0101, \cM, \p{L}, ...) are not literal, and the search stops at
+     * an inline flag group such as (?i), since the characters after it may match in another case.
+     * Quoted text (\Q...\E) is not parsed.
+     * @return The literal, or null if there is none of at least two characters, or if the pattern quotes text.
+     */
+    static String requiredLiteral(String body) {
+        if (hasQuote(body)) {
+            return null;
+        }
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            char literal;
+            if (c == '\\') {
+                if (i + 1 >= body.length()) {
+                    return null;
+                }
+                char escaped = body.charAt(i + 1);
+                i += 2;
+                if (Character.isLetterOrDigit(escaped)) {
+                    flush(run, runs); // \d, \w, \Q, back references ...
+                    i = skipEscapeArgument(body, escaped, i);
+                    continue;
+                }
+                literal = escaped;
+            } else if (c == '|') {
+                return null; // top-level alternation: nothing is required
+            } else if (c == '[') {
+                flush(run, runs);
+                i = skipClass(body, i) + 1;
+                continue;
+            } else if (c == '(') {
+                flush(run, runs);
+                if (isFlagGroup(body, i)) {
+                    break;
+                }
+                int close = matchingParen(body, i);
+                if (close < 0) {
+                    return null;
+                }
+                i = close + 1;
+                continue;
+            } else if (c == '*' || c == '+' || c == '?') {
+                flush(run, runs);
+                i++;
+                continue;
+            } else if (c == '{') {
+                flush(run, runs);
+                int close = body.indexOf('}', i);
+                i = close < 0 ? body.length() : close + 1;
+                continue;
+            } else if (c == '.' || c == '^' || c == '$') {
+                flush(run, runs);
+                i++;
+                continue;
+            } else {
+                literal = c;
+                i++;
+            }
+
+            char next = i < body.length() ? body.charAt(i) : 0;
+            if (next == '?' || next == '*' || next == '{') {
+                flush(run, runs); // this character is optional
+            } else if (next == '+') {
+                run.append(literal);
+                flush(run, runs);
+            } else {
+                run.append(literal);
+            }
+        }
+        flush(run, runs);
+
+        String longest = null;
+        for (String r : runs) {
+            if (r.length() >= 2 && (longest == null || r.length() > longest.length())) {
+                longest = r;
+            }
+        }
+        return longest;
+    }
+
+    // returns the index after the argument of the escape letter or digit that ends just before 'from'
+    private static int skipEscapeArgument(String s, char escaped, int from) {
+        int end = from;
+        switch (escaped) {
+            case 'x':
+                end = s.startsWith("{", from) ? s.indexOf('}', from) + 1 : from + 2;
+                break;
+            case 'u':
+                end = from + 4;
+                break;
+            case 'c':
+                end = from + 1;
+                break;
+            case '0':
+                while (end < s.length() && end < from + 3 && s.charAt(end) >= '0' && s.charAt(end) <= '7') {
+                    end++;
+                }
+                break;
+            case 'N':
+            case 'p':
+            case 'P':
+                end = s.startsWith("{", from) ? s.indexOf('}', from) + 1 : escaped == 'N' ? from : from + 1;
+                break;
+            case 'k':
+                end = s.startsWith("<", from) ? s.indexOf('>', from) + 1 : from;
+                break;
+            default:
+                // a back reference takes as many digits as there are
+                while (Character.isDigit(escaped) && end < s.length() && Character.isDigit(s.charAt(end))) {
+                    end++;
+                }
+        }
+        return end <= 0 ? s.length() : Math.min(end, s.length());
+    }
+
+    // true for "(?flags)" and "(?flags:" at 'open', e.g. "(?i)", "(?-i)" or "(?iu:"
+    private static boolean isFlagGroup(String s, int open) {
+        if (!s.startsWith("(?", open)) {
+            return false;
+        }
+        for (int i = open + 2; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ')' || c == ':') {
+                return i > open + 2;
+            }
+            if (!Character.isLetter(c) && c != '-') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void flush(StringBuilder run, List<String> runs) {
+        if (run.length() > 0) {
+            runs.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    // returns the index of the ']' closing the class that starts at 'open'
+    private static int skipClass(String s, int open) {
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && i > open + 1 && !(i == open + 2 && s.charAt(open + 1) == '^')) {
+                if (--depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return s.length() - 1;
+    }
+
+    // returns the index of the ')' closing the group that starts at 'open', or -1
+    private static int matchingParen(String s, int open) {
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(s, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,73 @@
+package main.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of compiled filter sets, keyed by the filter strings.
+ * Symbols that share a filter set (Main uses one set for all files) compile and keep it only once.
+ * The cache is bounded and evicts the least recently used set.
+ */
+public class PatternCache {
+
+    private static final int MAX_ENTRIES = 256;
+
+    private static final Map<List<String>, CompiledFilterSet> cache =
+            new LinkedHashMap<List<String>, CompiledFilterSet>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, CompiledFilterSet> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns the shared compiled form of the filters, compiling it on the first request.
+     * The analysis report is printed once, when the set is compiled.
+     * @throws java.util.regex.PatternSyntaxException If one of the filters is not a valid regex.
+     */
+    public static CompiledFilterSet get(Set<String> filters) {
+        List<String> key = CompiledFilterSet.inDefinedOrder(filters);
+        synchronized (cache) {
+            CompiledFilterSet compiled = cache.get(key);
+            if (compiled == null) {
+                compiled = new CompiledFilterSet(key);
+                cache.put(key, compiled);
+                for (String line : compiled.getReport()) {
+                    System.out.println("[AlfaAgent] Filter analysis: " + line);
+                }
+            }
+            return compiled;
+        }
+    }
+
+    /**
+     * @return The analysis report of every cached filter set.
+     */
+    public static List<String> getReport() {
+        List<String> report = new ArrayList<>();
+        synchronized (cache) {
+            for (CompiledFilterSet compiled : cache.values()) {
+                report.addAll(compiled.getReport());
+            }
+        }
+        return report;
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
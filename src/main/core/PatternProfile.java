@@ -0,0 +1,56 @@
+package main.core;
+
+/**
+ * Cost of one test of a filter set since it was compiled (see CompiledFilterSet.getProfile()).
+ * Counts are estimated from about one line in 64 that is evaluated with timing, and cover every symbol that
+ * shares the set.
+ */
+public class PatternProfile {
+
+    private final String filter;
+    private final long evaluations;
+    private final long hits;
+    private final long totalNanos;
+    private final double avgNanos;
+
+    public PatternProfile(String filter, long evaluations, long hits, long totalNanos, double avgNanos) {
+        this.filter = filter;
+        this.evaluations = evaluations;
+        this.hits = hits;
+        this.totalNanos = totalNanos;
+        this.avgNanos = avgNanos;
+    }
+
+    /**
+     * @return The filter as configured; for a stage member, the stage followed by the member in brackets.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return evaluations == 0 ? 0 : (double) hits / evaluations;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public double getAvgNanos() {
+        return avgNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d evaluations, %.2f%% hits, %.0f ns avg, %d ms total",
+                filter, evaluations, getHitRate() * 100, avgNanos, totalNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,83 @@
+package main.core;
+
+/**
+ * Snapshot of the thread pool as seen by PoolTuner at its last adjustment.
+ * The shares split the busy time of the pool into reading, matching and the result handler.
+ */
+public class PoolMetrics {
+
+    private final int poolSize;
+    private final int targetSize;
+    private final double busyThreads;
+    private final double ioShare;
+    private final double matchShare;
+    private final double handlerShare;
+    private final int overdueTasks;
+    private final long resizes;
+    private final String lastDecision;
+
+    public PoolMetrics(int poolSize, int targetSize, double busyThreads, double ioShare, double matchShare,
+                       double handlerShare, int overdueTasks, long resizes, String lastDecision) {
+        this.poolSize = poolSize;
+        this.targetSize = targetSize;
+        this.busyThreads = busyThreads;
+        this.ioShare = ioShare;
+        this.matchShare = matchShare;
+        this.handlerShare = handlerShare;
+        this.overdueTasks = overdueTasks;
+        this.resizes = resizes;
+        this.lastDecision = lastDecision;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return The size the measurements suggest, before bounds and step limits.
+     */
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * @return Average number of threads running a task during the last interval.
+     */
+    public double getBusyThreads() {
+        return busyThreads;
+    }
+
+    public double getIoShare() {
+        return ioShare;
+    }
+
+    public double getMatchShare() {
+        return matchShare;
+    }
+
+    public double getHandlerShare() {
+        return handlerShare;
+    }
+
+    /**
+     * @return Tasks that were due but waiting for a thread at the last adjustment.
+     */
+    public int getOverdueTasks() {
+        return overdueTasks;
+    }
+
+    public long getResizes() {
+        return resizes;
+    }
+
+    public String getLastDecision() {
+        return lastDecision;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pool=%d target=%d busy=%.1f io=%.0f%% match=%.0f%% handler=%.0f%% overdue=%d resizes=%d (%s)",
+                poolSize, targetSize, busyThreads, ioShare * 100, matchShare * 100, handlerShare * 100,
+                overdueTasks, resizes, lastDecision);
+    }
+}
@@ -0,0 +1,125 @@
+package main.core;
+
+import main.config.AlfaConfig;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures where the pool spends its time and, in adaptive mode (AlfaConfig.isAdaptivePool()), resizes it.
+ * Every run reports its total time, the time blocked in file reads and the time in the result handler;
+ * the rest is matching. At each adjustment the pool is sized with the usual
+ * threads = cores * (1 + wait / compute) rule, where wait is reading plus handler time:
+ * <ul>
+ *     <li>it grows (at most doubling) only while due tasks wait for a thread, so a CPU-bound pool stays near the core count</li>
+ *     <li>it shrinks (by at most a quarter) when nothing waits and less than half of the threads were busy</li>
+ * </ul>
+ * The result of every adjustment is available as PoolMetrics, resizes are also printed.
+ */
+public class PoolTuner {
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final AlfaConfig config;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder handlerNanos = new LongAdder();
+
+    private long lastAdjust = System.nanoTime();
+    private long resizes;
+    private volatile PoolMetrics metrics;
+
+    public PoolTuner(ScheduledThreadPoolExecutor executor, AlfaConfig config) {
+        this.executor = executor;
+        this.config = config;
+        this.metrics = new PoolMetrics(executor.getCorePoolSize(), executor.getCorePoolSize(), 0, 0, 0, 0, 0, 0, "initial");
+    }
+
+    /**
+     * Adds the timings of a finished run.
+     */
+    public void record(LogFilterTask task) {
+        runNanos.add(task.getLastRunNanos());
+        ioNanos.add(task.getLastIoNanos());
+        handlerNanos.add(task.getLastHandlerNanos());
+    }
+
+    /**
+     * Takes the measurements since the last call and resizes the pool if adaptive mode is on.
+     */
+    public synchronized void adjust() {
+        long now = System.nanoTime();
+        long window = Math.max(1, now - lastAdjust);
+        lastAdjust = now;
+        long run = runNanos.sumThenReset();
+        long io = Math.min(ioNanos.sumThenReset(), run);
+        long handler = Math.min(handlerNanos.sumThenReset(), run - io);
+        int overdue = overdueTasks();
+        int size = executor.getCorePoolSize();
+
+        int target = targetSize(cores, run, io, handler);
+        int next = size;
+        String decision = "kept";
+        if (config.isAdaptivePool()) {
+            next = nextSize(size, target, (double) run / window, overdue, config.getMinPoolSize(), config.getMaxPoolSize());
+            if (next != size) {
+                executor.setCorePoolSize(next);
+                resizes++;
+                decision = (next > size ? "grown " : "shrunk ") + size + " -> " + next;
+                System.out.println("[AlfaAgent] Thread pool " + decision + " (" + overdue + " task(s) waiting, io "
+                        + percent(io, run) + "%, match " + percent(run - io - handler, run) + "%, handler " + percent(handler, run) + "%)");
+            }
+        }
+        double total = Math.max(1, run);
+        metrics = new PoolMetrics(next, target, (double) run / window, io / total, (run - io - handler) / total,
+                handler / total, overdue, resizes, decision);
+    }
+
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The pool size the blocking ratio asks for: cores * (1 + (io + handler) / matching).
+     */
+    public static int targetSize(int cores, long runNanos, long ioNanos, long handlerNanos) {
+        if (runNanos <= 0) {
+            return cores;
+        }
+        long compute = Math.max(1, runNanos - ioNanos - handlerNanos);
+        double ratio = (double) (ioNanos + handlerNanos) / compute;
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(cores * (1 + ratio)));
+    }
+
+    /**
+     * @param busyThreads Average number of threads running a task since the last adjustment.
+     * @param overdue Tasks that were due but had no thread.
+     */
+    public static int nextSize(int size, int target, double busyThreads, int overdue, int min, int max) {
+        int next = size;
+        if (overdue > 0 && target > size) {
+            next = Math.min(target, size * 2);
+        } else if (overdue == 0 && busyThreads < size / 2.0) {
+            int needed = (int) Math.ceil(busyThreads) + 1;
+            next = Math.max(needed, size - Math.max(1, size / 4));
+        }
+        return Math.max(min, Math.min(max, next));
+    }
+
+    private int overdueTasks() {
+        int overdue = 0;
+        for (Runnable r : executor.getQueue()) {
+            if (r instanceof Delayed && ((Delayed) r).getDelay(TimeUnit.NANOSECONDS) <= 0) {
+                overdue++;
+            }
+        }
+        return overdue;
+    }
+
+    private static long percent(long part, long total) {
+        return total <= 0 ? 0 : Math.round(100.0 * part / total);
+    }
+}
@@ -0,0 +1,217 @@
+package main.core;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Large aligned reads of one file for a LineReader. The chunk the reader needs is read on the caller's thread;
+ * the chunk after it is prefetched on a background I/O thread shared by all sources. A prefetch that has not
+ * started when the reader gets to it (e.g. queued behind a slow read of another source) is cancelled and
+ * read on the caller's thread too, so one hanging file system does not hold up the other sources.
+ * Chunks live in pooled direct buffers (BufferPool.acquireDirect) that are held only during a run: release()
+ * gives them back.
+ * <p>
+ * With direct I/O the file is opened with O_DIRECT (ExtendedOpenOption.DIRECT), so tailing does not fill the
+ * page cache and evict the pages of the application on the host. File systems without O_DIRECT support
+ * (tmpfs, ...) fall back to normal reads with a warning.
+ * Data past the end of file at the time of a read is never trusted: a short chunk is read again when the
+ * reader gets to its end, which is how appended lines are picked up.
+ */
+public class ReadAhead {
+
+    // one thread for the prefetches of all sources: parallel reads would only seek more
+    private static final ExecutorService ioThread = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "AlfaReadAhead");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final int DEFAULT_ALIGNMENT = 4096;
+
+    private static class Chunk {
+        final long start;
+        final ByteBuffer buffer;
+        final Future<Integer> read;
+
+        Chunk(long start, ByteBuffer buffer, Future<Integer> read) {
+            this.start = start;
+            this.buffer = buffer;
+            this.read = read;
+        }
+    }
+
+    private final FileChannel channel;
+    private final boolean direct;
+    private final int alignment;
+    private final int chunkSize;
+
+    // chunk being consumed and the one read in the background, either may be null
+    private Chunk current;
+    private int currentLength;
+    private Chunk next;
+
+    /**
+     * @param chunkSize Bytes per read, rounded up to the block size.
+     * @param direct Try to bypass the page cache with O_DIRECT.
+     */
+    public ReadAhead(Path path, int chunkSize, boolean direct) throws IOException {
+        FileChannel opened = null;
+        int align = DEFAULT_ALIGNMENT;
+        if (direct) {
+            try {
+                align = (int) Math.max(DEFAULT_ALIGNMENT, Files.getFileStore(path).getBlockSize());
+                opened = FileChannel.open(path, new OpenOption[]{StandardOpenOption.READ, ExtendedOpenOption.DIRECT});
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("[AlfaAgent] Direct I/O not available for " + path + ", using buffered reads: " + e);
+            }
+        }
+        this.direct = opened != null;
+        this.channel = opened != null ? opened : FileChannel.open(path, StandardOpenOption.READ);
+        this.alignment = align;
+        this.chunkSize = Math.max(align, (chunkSize + align - 1) / align * align);
+    }
+
+    /**
+     * Copies file bytes at 'position' into dst.
+     * @return The number of bytes copied, or -1 at end of file.
+     */
+    public int read(long position, byte[] dst, int off, int len) throws IOException {
+        if (current == null || position < current.start || position >= current.start + currentLength) {
+            take(position);
+        }
+        if (position >= current.start + currentLength) {
+            return -1;
+        }
+        int from = (int) (position - current.start);
+        int n = Math.min(len, currentLength - from);
+        ByteBuffer view = current.buffer.duplicate();
+        view.position(from);
+        view.get(dst, off, n);
+        return n;
+    }
+
+    // makes the chunk that holds 'position' current and starts reading the one after it
+    private void take(long position) throws IOException {
+        if (next != null && next.start <= position && position < next.start + chunkSize) {
+            Chunk prefetched = next;
+            next = null;
+            if (prefetched.read.cancel(false)) {
+                prefetched = readNow(prefetched.start, prefetched.buffer);
+            }
+            int length = await(prefetched);
+            if (position < prefetched.start + length) {
+                drop(current);
+                current = prefetched;
+                currentLength = length;
+            } else {
+                // read before the file grew that far
+                drop(prefetched);
+            }
+        }
+        if (current == null || position < current.start || position >= current.start + currentLength) {
+            drop(next);
+            next = null;
+            drop(current);
+            // cleared first: after a failed read no released buffer may stay current
+            current = null;
+            current = readNow(position / alignment * alignment, BufferPool.acquireDirect(chunkSize, alignment));
+            currentLength = await(current);
+        }
+        // a full chunk means the file goes on: prefetch the next one
+        if (currentLength == chunkSize && next == null) {
+            ByteBuffer buffer = BufferPool.acquireDirect(chunkSize, alignment);
+            long start = current.start + chunkSize;
+            next = new Chunk(start, buffer, ioThread.submit(() -> fill(buffer, start)));
+        }
+    }
+
+    // reads on the caller's thread; the buffer goes back to the pool if the read fails
+    private Chunk readNow(long start, ByteBuffer buffer) throws IOException {
+        try {
+            return new Chunk(start, buffer, CompletableFuture.completedFuture(fill(buffer, start)));
+        } catch (IOException e) {
+            BufferPool.releaseDirect(buffer);
+            throw e;
+        }
+    }
+
+    // reads the chunk at 'start' into buffer, on whichever thread calls it
+    private int fill(ByteBuffer buffer, long start) throws IOException {
+        buffer.clear();
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, start + total);
+            if (n <= 0) {
+                break;
+            }
+            total += n;
+            if (direct && total % alignment != 0) {
+                // a direct read stops short only at end of file, and the next one would be unaligned
+                break;
+            }
+        }
+        return total;
+    }
+
+    private static int await(Chunk chunk) throws IOException {
+        try {
+            return chunk.read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading ahead", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    // waits for a read in flight before the buffer goes back to the pool; one not started yet is cancelled
+    private static void drop(Chunk chunk) {
+        if (chunk == null) {
+            return;
+        }
+        if (chunk.read.cancel(false)) {
+            BufferPool.releaseDirect(chunk.buffer);
+            return;
+        }
+        try {
+            chunk.read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // the read may still write into the buffer: leave it to the GC
+        } catch (ExecutionException e) {
+            // the data is not used
+        }
+        BufferPool.releaseDirect(chunk.buffer);
+    }
+
+    /**
+     * Gives the buffers back to the pool. The next read starts over.
+     */
+    public void release() {
+        drop(current);
+        drop(next);
+        current = null;
+        next = null;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public void close() throws IOException {
+        release();
+        channel.close();
+    }
+}
@@ -0,0 +1,290 @@
+package main.core;
+
+import main.config.AlfaConfig;
+import main.config.SamplingPolicy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the agent inside the resource limits of the config, so a backlog or an error storm cannot take the CPU,
+ * heap or disk bandwidth of the application it runs in (see AlfaConfig.setMaxReadBytesPerSecond and the
+ * neighbouring setters). Every limit is off at 0.
+ * <ul>
+ *     <li>I/O: a token bucket of bytes per second, one second deep. A run may only read the bytes it was granted;
+ *     a run granted nothing is deferred.</li>
+ *     <li>CPU: a token bucket of CPU nanoseconds (the share of all processors per second). Runs are charged the
+ *     CPU time of their threads when they end; while the bucket is in debt, runs are deferred, and while it is
+ *     less than half full, sources without their own sampling policy match only one line in N.</li>
+ *     <li>Heap: the matched lines a run holds until its batch is delivered are reserved in the budget; a run
+ *     ends early once the budget is full.</li>
+ * </ul>
+ * A deferred or shortened run keeps its backlog and is queued again after getRetryDelayNanos(), so the catch-up
+ * is spread over time instead of being dropped. CRITICAL sources (see Lane) are charged like the others but
+ * never deferred or sampled; the other sources give way to them.
+ */
+public class ResourceGovernor {
+
+    public enum Reason {
+        IO, CPU, HEAP
+    }
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+    // a throttling episode ends when no run was held back for this long
+    private static final long EPISODE_GAP_NANOS = 1_000_000_000L;
+    private static final long MIN_RETRY_NANOS = 10_000_000L;
+    private static final long MAX_RETRY_NANOS = 1_000_000_000L;
+
+    private final AlfaConfig config;
+
+    // both buckets are one second deep and may go into debt; guarded by this
+    private double readTokens;
+    private double cpuTokens;
+    private long refilledAt = System.nanoTime();
+    private boolean full = true;
+
+    private final AtomicLong heldBytes = new AtomicLong();
+
+    // the everyNthLine policy used for shedding, replaced when the setting changes
+    private volatile SamplingPolicy shedPolicy;
+
+    // counters and the current episode; guarded by this
+    private final Map<Reason, Long> events = new EnumMap<>(Reason.class);
+    private final Set<Reason> episodeReasons = EnumSet.noneOf(Reason.class);
+    private long episodeStart;
+    private long lastEvent;
+    private long throttledNanos;
+    private long deferredRuns;
+    private long sampledRuns;
+    private long shortenedRuns;
+    private long readBytes;
+    private long cpuNanos;
+
+    public ResourceGovernor(AlfaConfig config) {
+        this.config = config;
+        for (Reason reason : Reason.values()) {
+            events.put(reason, 0L);
+        }
+    }
+
+    /**
+     * @return The CPU time of the calling thread, or the wall clock where the JVM does not measure it.
+     */
+    public static long threadCpuNanos() {
+        return CPU_TIME ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Decides whether a run may start; a run that may not is counted as deferred.
+     * @return false while the CPU bucket is in debt, unless the run is critical.
+     */
+    public synchronized boolean admit(boolean critical) {
+        refill();
+        if (critical || config.getCpuPercent() <= 0 || cpuTokens >= 0) {
+            return true;
+        }
+        deferredRuns++;
+        mark(Reason.CPU);
+        return false;
+    }
+
+    /**
+     * Takes read tokens for a run. A critical run gets what it asks for, up to one second of reading, and may
+     * leave the bucket in debt. The bytes actually read are settled with settleRead().
+     * @return The bytes the run may read, 0 if it is deferred.
+     */
+    public synchronized long acquireRead(long wanted, boolean critical) {
+        long rate = config.getMaxReadBytesPerSecond();
+        if (rate <= 0 || wanted <= 0) {
+            return wanted;
+        }
+        refill();
+        long granted;
+        if (critical) {
+            granted = Math.min(wanted, rate);
+        } else {
+            // no runs for a few bytes: wait until a buffer (or all that is wanted) can be read
+            granted = readTokens < Math.min(wanted, Math.min(rate, BufferPool.BUFFER_SIZE)) ? 0 : (long) Math.min(wanted, readTokens);
+        }
+        readTokens -= granted;
+        if (granted == 0) {
+            deferredRuns++;
+            mark(Reason.IO);
+        } else if (granted < wanted) {
+            shortenedRuns++;
+            mark(Reason.IO);
+        }
+        return granted;
+    }
+
+    /**
+     * Gives back the unused part of a grant, or charges what a run read past it (the rest of its last line).
+     */
+    public synchronized void settleRead(long granted, long read) {
+        readBytes += read;
+        if (config.getMaxReadBytesPerSecond() > 0) {
+            readTokens += granted - read;
+        }
+    }
+
+    /**
+     * Charges the CPU time of a run, including the threads of a pipelined run.
+     */
+    public synchronized void chargeCpu(long nanos) {
+        cpuNanos += nanos;
+        if (config.getCpuPercent() > 0) {
+            refill();
+            cpuTokens -= nanos;
+        }
+    }
+
+    /**
+     * @return The sampling policy a source without its own policy runs with while CPU is scarce, or null.
+     */
+    public SamplingPolicy shedPolicy(boolean critical) {
+        int n = config.getShedEveryNthLine();
+        if (critical || n <= 1 || config.getCpuPercent() <= 0) {
+            return null;
+        }
+        synchronized (this) {
+            refill();
+            if (cpuTokens >= cpuRate() / 2) {
+                return null;
+            }
+            sampledRuns++;
+            mark(Reason.CPU);
+        }
+        SamplingPolicy policy = shedPolicy;
+        if (policy == null || policy.getN() != n) {
+            policy = SamplingPolicy.everyNthLine(n);
+            shedPolicy = policy;
+        }
+        return policy;
+    }
+
+    public boolean hasHeapBudget() {
+        return config.getHeapBudgetBytes() > 0;
+    }
+
+    /**
+     * Reserves heap for a line a run holds. The reservation is always made, so a run can hold at least one line.
+     * @return false if the budget is now used up and the run should end.
+     */
+    public boolean reserveHeap(long bytes) {
+        if (heldBytes.addAndGet(bytes) <= config.getHeapBudgetBytes()) {
+            return true;
+        }
+        synchronized (this) {
+            shortenedRuns++;
+            mark(Reason.HEAP);
+        }
+        return false;
+    }
+
+    public void releaseHeap(long bytes) {
+        heldBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * @return A rough size of a String on the heap, for reserveHeap().
+     */
+    public static long estimateBytes(String line) {
+        return 48 + 2L * line.length();
+    }
+
+    /**
+     * @return How long a deferred or shortened run should wait before it continues: until the buckets allow
+     * another buffer of reading and are out of debt, between 10 ms and 1 s.
+     */
+    public synchronized long getRetryDelayNanos() {
+        refill();
+        double seconds = 0;
+        long readRate = config.getMaxReadBytesPerSecond();
+        if (readRate > 0 && readTokens < BufferPool.BUFFER_SIZE) {
+            seconds = (Math.min(BufferPool.BUFFER_SIZE, readRate) - readTokens) / readRate;
+        }
+        if (config.getCpuPercent() > 0 && cpuTokens < 0) {
+            seconds = Math.max(seconds, -cpuTokens / cpuRate());
+        }
+        return Math.max(MIN_RETRY_NANOS, Math.min(MAX_RETRY_NANOS, (long) (seconds * 1e9)));
+    }
+
+    /**
+     * @return true while runs are being held back, i.e. one was deferred, shortened or sampled within the last second.
+     */
+    public synchronized boolean isThrottled() {
+        return endEpisode(System.nanoTime());
+    }
+
+    public synchronized GovernorMetrics getMetrics() {
+        long now = System.nanoTime();
+        boolean throttled = endEpisode(now);
+        return new GovernorMetrics(throttled, throttled ? EnumSet.copyOf(episodeReasons) : EnumSet.noneOf(Reason.class),
+                new EnumMap<>(events), deferredRuns, shortenedRuns, sampledRuns,
+                (throttledNanos + (throttled ? now - episodeStart : 0)) / 1_000_000,
+                readBytes, cpuNanos / 1_000_000, heldBytes.get());
+    }
+
+    private double cpuRate() {
+        return config.getCpuPercent() / 100.0 * Runtime.getRuntime().availableProcessors() * 1e9;
+    }
+
+    // adds the tokens of the time since the last refill, up to one second worth
+    private void refill() {
+        long now = System.nanoTime();
+        double seconds = (now - refilledAt) / 1e9;
+        refilledAt = now;
+        long readRate = config.getMaxReadBytesPerSecond();
+        double cpuRate = cpuRate();
+        if (full) {
+            // the limits were just set: start with full buckets
+            readTokens = readRate;
+            cpuTokens = cpuRate;
+            full = false;
+            return;
+        }
+        readTokens = Math.min(readRate, readTokens + seconds * readRate);
+        cpuTokens = Math.min(cpuRate, cpuTokens + seconds * cpuRate);
+    }
+
+    /**
+     * Fills both buckets, e.g. after the limits were changed.
+     */
+    public synchronized void reset() {
+        full = true;
+    }
+
+    private void mark(Reason reason) {
+        long now = System.nanoTime();
+        events.merge(reason, 1L, Long::sum);
+        if (!endEpisode(now)) {
+            episodeStart = now;
+            episodeReasons.clear();
+            System.out.println("[AlfaAgent] Resource governor: throttling (" + reason.name().toLowerCase() + ")");
+        }
+        episodeReasons.add(reason);
+        lastEvent = now;
+    }
+
+    // closes the current episode if it is over; true while it still runs
+    private boolean endEpisode(long now) {
+        if (episodeStart == 0) {
+            return false;
+        }
+        if (now - lastEvent < EPISODE_GAP_NANOS) {
+            return true;
+        }
+        throttledNanos += lastEvent - episodeStart;
+        System.out.println("[AlfaAgent] Resource governor: throttling ended after " + (lastEvent - episodeStart) / 1_000_000
+                + " ms " + episodeReasons.toString().toLowerCase());
+        episodeStart = 0;
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+package main.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Portable ByteScanner that tests 8 bytes per step with the "has zero byte" bit trick (SWAR).
+ * Words are always read little-endian so the lowest flagged byte is the first match in memory order.
+ */
+public class ScalarByteScanner implements ByteScanner {
+
+    private static final VarHandle LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+
+    @Override
+    public int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        long pattern = (b & 0xFFL) * ONES;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long x = (long) LONG_LE.get(buf, i) ^ pattern;
+            long found = (x - ONES) & ~x & HIGHS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOfAny(ByteBuffer buf, int from, int to, byte[] set) {
+        if (set.length == 1) {
+            return indexOf(buf, from, to, set[0]);
+        }
+        long[] patterns = new long[set.length];
+        for (int k = 0; k < set.length; k++) {
+            patterns[k] = (set[k] & 0xFFL) * ONES;
+        }
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = (long) LONG_LE.get(buf, i);
+            long found = 0;
+            for (long pattern : patterns) {
+                long x = word ^ pattern;
+                found |= (x - ONES) & ~x & HIGHS;
+            }
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            byte v = buf.get(i);
+            for (byte s : set) {
+                if (v == s) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int count(ByteBuffer buf, int from, int to, byte b) {
+        long pattern = (b & 0xFFL) * ONES;
+        int count = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long x = (long) LONG_LE.get(buf, i) ^ pattern;
+            // exact variant of the zero byte test: no borrow between bytes, so every flag is a real match
+            long zeros = ~(((x & LOWS) + LOWS) | x | LOWS);
+            count += Long.bitCount(zeros);
+        }
+        for (; i < to; i++) {
+            if (buf.get(i) == b) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() {
+        return "scalar-swar";
+    }
+}
@@ -0,0 +1,250 @@
+package main.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-symbol state of all sources in flat primitive arrays: read offset, committed offset, file key (to detect
+ * rotation by rename) and cumulative counters. Each symbol gets a slot once; the state of a slot is six longs in
+ * a chunk of 1024 slots, so 10 000 sources cost about 480 KB instead of a map entry and boxed values each.
+ * Chunks never move once allocated, so writers of different slots never block each other.
+ * AlfaConfig.getLastReadPositions() is a Map view of the offsets.
+ * <p>
+ * The read offset moves with every line a run delivers. The committed offset only moves once the result handler
+ * has completed the batch of the run (see commitOffset), and it is what checkpoints save: a handler may hold the
+ * lines of a run until onBatchComplete (e.g. SinkResultHandler), and a crash must not lose them.
+ */
+public class SourceRegistry {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+    private static final int FIELDS = 6;
+    private static final int OFFSET = 0;
+    private static final int FILE_KEY = 1;
+    private static final int LINES = 2;
+    private static final int BYTES = 3;
+    private static final int MATCHES = 4;
+    private static final int COMMITTED = 5;
+
+    private static final long NO_OFFSET = -1L;
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+    private volatile String[] symbols = new String[0];
+    private int size;
+
+    private final Map<String, Long> positions = new PositionView();
+
+    /**
+     * @return The slot of the symbol, allocated on first use.
+     */
+    public int slotOf(String symbol) {
+        Integer slot = slots.get(symbol);
+        return slot != null ? slot : allocate(symbol);
+    }
+
+    private synchronized int allocate(String symbol) {
+        Integer existing = slots.get(symbol);
+        if (existing != null) {
+            return existing;
+        }
+        int slot = size++;
+        if ((slot >> CHUNK_BITS) >= chunks.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            AtomicLongArray chunk = new AtomicLongArray(CHUNK_SLOTS * FIELDS);
+            for (int i = 0; i < CHUNK_SLOTS; i++) {
+                chunk.set(i * FIELDS + OFFSET, NO_OFFSET);
+                chunk.set(i * FIELDS + COMMITTED, NO_OFFSET);
+            }
+            grown[chunks.length] = chunk;
+            chunks = grown;
+        }
+        if (slot >= symbols.length) {
+            symbols = Arrays.copyOf(symbols, Math.max(16, symbols.length * 2));
+        }
+        symbols[slot] = symbol;
+        slots.put(symbol, slot);
+        return slot;
+    }
+
+    private AtomicLongArray chunk(int slot) {
+        return chunks[slot >> CHUNK_BITS];
+    }
+
+    private static int index(int slot, int field) {
+        return (slot & (CHUNK_SLOTS - 1)) * FIELDS + field;
+    }
+
+    /**
+     * @return The saved read offset, or -1 if there is none.
+     */
+    public long getOffset(int slot) {
+        return chunk(slot).get(index(slot, OFFSET));
+    }
+
+    public void setOffset(int slot, long offset) {
+        chunk(slot).set(index(slot, OFFSET), offset);
+    }
+
+    /**
+     * Marks the lines before the current read offset as completed by the result handler.
+     */
+    public void commitOffset(int slot) {
+        chunk(slot).set(index(slot, COMMITTED), getOffset(slot));
+    }
+
+    /**
+     * @return The read offset at the last completed batch, or -1 if there is none.
+     */
+    public long getCommittedOffset(int slot) {
+        return chunk(slot).get(index(slot, COMMITTED));
+    }
+
+    /**
+     * @return A copy of the committed offsets (symbol to offset), for a checkpoint.
+     */
+    public Map<String, Long> committedPositions() {
+        Map<String, Long> committed = new HashMap<>();
+        int count = size();
+        for (int slot = 0; slot < count; slot++) {
+            long offset = getCommittedOffset(slot);
+            if (offset != NO_OFFSET) {
+                committed.put(symbolAt(slot), offset);
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * @return The key of the file the symbol's handle was opened on, or 0 if unknown.
+     */
+    public long getFileKey(int slot) {
+        return chunk(slot).get(index(slot, FILE_KEY));
+    }
+
+    public void setFileKey(int slot, long fileKey) {
+        chunk(slot).set(index(slot, FILE_KEY), fileKey);
+    }
+
+    public void addStats(int slot, long lines, long bytes, long matches) {
+        AtomicLongArray chunk = chunk(slot);
+        chunk.addAndGet(index(slot, LINES), lines);
+        chunk.addAndGet(index(slot, BYTES), bytes);
+        chunk.addAndGet(index(slot, MATCHES), matches);
+    }
+
+    public long getLinesRead(int slot) {
+        return chunk(slot).get(index(slot, LINES));
+    }
+
+    public long getBytesRead(int slot) {
+        return chunk(slot).get(index(slot, BYTES));
+    }
+
+    public long getMatches(int slot) {
+        return chunk(slot).get(index(slot, MATCHES));
+    }
+
+    /**
+     * @return Number of symbols that have a slot.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public String symbolAt(int slot) {
+        return symbols[slot];
+    }
+
+    /**
+     * @return The read offsets as a Map (symbol to offset). Symbols without an offset are absent.
+     * Offsets put or removed through the view (e.g. a restored checkpoint) are committed as well.
+     */
+    public Map<String, Long> positions() {
+        return positions;
+    }
+
+    /**
+     * Identifies the file behind a path, so that a rename rotation (new file, same path) can be told apart
+     * from appends to the same file. Uses BasicFileAttributes.fileKey() (device and inode on Unix).
+     * @return A non-zero key, or 0 if the file system has no file keys.
+     */
+    public static long fileKeyOf(Path path) throws IOException {
+        Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        if (key == null) {
+            return 0;
+        }
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L ^ key.toString().hashCode();
+        return hash == 0 ? 1 : hash;
+    }
+
+    private class PositionView extends AbstractMap<String, Long> {
+
+        @Override
+        public Long get(Object key) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            long offset = getOffset(slot);
+            return offset == NO_OFFSET ? null : offset;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Long put(String key, Long value) {
+            int slot = slotOf(key);
+            long old = chunk(slot).getAndSet(index(slot, OFFSET), value);
+            chunk(slot).set(index(slot, COMMITTED), value);
+            return old == NO_OFFSET ? null : old;
+        }
+
+        @Override
+        public Long remove(Object key) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            long old = chunk(slot).getAndSet(index(slot, OFFSET), NO_OFFSET);
+            chunk(slot).set(index(slot, COMMITTED), NO_OFFSET);
+            return old == NO_OFFSET ? null : old;
+        }
+
+        @Override
+        public Set<Entry<String, Long>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Long>> iterator() {
+                    List<Entry<String, Long>> entries = new ArrayList<>();
+                    int count = size();
+                    for (int slot = 0; slot < count; slot++) {
+                        long offset = getOffset(slot);
+                        if (offset != NO_OFFSET) {
+                            entries.add(new SimpleImmutableEntry<>(symbolAt(slot), offset));
+                        }
+                    }
+                    return entries.iterator();
+                }
+
+                @Override
+                public int size() {
+                    int present = 0;
+                    int count = SourceRegistry.this.size();
+                    for (int slot = 0; slot < count; slot++) {
+                        present += getOffset(slot) != NO_OFFSET ? 1 : 0;
+                    }
+                    return present;
+                }
+            };
+        }
+    }
+}
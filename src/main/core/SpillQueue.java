@@ -0,0 +1,301 @@
+package main.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead queue for matches that could not be handed to the AlfaResultHandler.
+ * Records are appended to memory-mapped segment files as [length][crc][payload].
+ * A record is removed only after the handler accepted it (ack), so delivery is at-least-once
+ * and survives a restart of the agent.
+ */
+public class SpillQueue {
+
+    // Called for every spilled record during replay. Throwing stops the replay without acking the record.
+    public interface Delivery {
+        void deliver(String logLine, String keyword) throws Exception;
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String ACK_FILE = "spill.ack";
+    private static final int RECORD_HEADER = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final Path ackFile;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    // Read pointer: the first record that has not been acknowledged yet.
+    private long ackSeq;
+    private int ackOffset;
+    private long pendingRecords;
+
+    /**
+     * Opens (or creates) the queue in the given directory and recovers existing segments.
+     * Torn or corrupted records at the tail of a segment (CRC mismatch) are treated as its end.
+     * @param dir Directory that holds the segment files of one path symbol.
+     * @param segmentSize Size of one segment file in bytes.
+     * @throws IOException If the directory or a segment cannot be opened.
+     */
+    public SpillQueue(Path dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.ackFile = dir.resolve(ACK_FILE);
+        Files.createDirectories(dir);
+        loadAck();
+        recoverSegments();
+    }
+
+    /**
+     * Appends a match to the tail of the queue. Call sync() to make a group of appends durable.
+     */
+    public synchronized void append(String logLine, String keyword) throws IOException {
+        byte[] keywordBytes = keyword.getBytes(StandardCharsets.UTF_8);
+        byte[] lineBytes = logLine.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 4 + keywordBytes.length + lineBytes.length;
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.remaining() < RECORD_HEADER + payloadLength) {
+            long nextSeq = tail == null ? Math.max(ackSeq, 0) : tail.seq + 1;
+            tail = Segment.create(segmentPath(nextSeq), nextSeq, Math.max(segmentSize, RECORD_HEADER + payloadLength + 4));
+            segments.addLast(tail);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.putInt(keywordBytes.length).put(keywordBytes).put(lineBytes);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payloadLength);
+
+        MappedByteBuffer buf = tail.buffer;
+        buf.position(tail.writePos);
+        buf.putInt(payloadLength);
+        buf.putInt((int) crc.getValue());
+        buf.put(payload.array(), 0, payloadLength);
+        tail.writePos = buf.position();
+        tail.dirty = true;
+        if (tail.remaining() >= 4) {
+            buf.putInt(tail.writePos, 0); // end marker, hides stale bytes of a torn record
+        }
+        pendingRecords++;
+    }
+
+    /**
+     * Forces the records appended since the last sync to the storage device, also those in segments
+     * that filled up in the meantime.
+     */
+    public synchronized void sync() {
+        for (Segment segment : segments) {
+            if (segment.dirty) {
+                segment.buffer.force();
+                segment.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Replays unacknowledged records in order. Every record accepted by the delivery is acknowledged;
+     * the first failure stops the replay and is rethrown after the acknowledged pointer was saved.
+     * @return The number of records delivered in this call.
+     */
+    public synchronized int replay(Delivery delivery) throws Exception {
+        int delivered = 0;
+        try {
+            while (!segments.isEmpty()) {
+                Segment head = segments.peekFirst();
+                int offset = head.seq == ackSeq ? ackOffset : 0;
+                while (offset < head.writePos) {
+                    ByteBuffer buf = head.buffer.duplicate();
+                    buf.position(offset);
+                    int payloadLength = buf.getInt();
+                    buf.getInt(); // crc was verified during recovery or written by this process
+                    int keywordLength = buf.getInt();
+                    byte[] keywordBytes = new byte[keywordLength];
+                    buf.get(keywordBytes);
+                    byte[] lineBytes = new byte[payloadLength - 4 - keywordLength];
+                    buf.get(lineBytes);
+
+                    delivery.deliver(new String(lineBytes, StandardCharsets.UTF_8), new String(keywordBytes, StandardCharsets.UTF_8));
+
+                    offset += RECORD_HEADER + payloadLength;
+                    ackSeq = head.seq;
+                    ackOffset = offset;
+                    pendingRecords--;
+                    delivered++;
+                }
+                if (head == segments.peekLast()) {
+                    break;
+                }
+                // Fully acknowledged segment which is no longer written to.
+                segments.pollFirst();
+                head.delete();
+                ackSeq = segments.peekFirst().seq;
+                ackOffset = 0;
+            }
+        } finally {
+            if (delivered > 0) {
+                saveAck();
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * @return true if there are records waiting for delivery.
+     */
+    public synchronized boolean hasPending() {
+        return pendingRecords > 0;
+    }
+
+    public synchronized long getPendingCount() {
+        return pendingRecords;
+    }
+
+    /**
+     * Flushes and releases all segments. The files stay on disk for the next start.
+     */
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void recoverSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(files::add);
+        }
+        files.sort(null);
+
+        for (Path file : files) {
+            long seq = Long.parseLong(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+            if (seq < ackSeq) {
+                Files.deleteIfExists(file); // acknowledged before the last shutdown
+                continue;
+            }
+            Segment segment = Segment.open(file, seq);
+            int start = seq == ackSeq ? ackOffset : 0;
+            pendingRecords += segment.scan(start);
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty()) {
+            ackOffset = 0;
+        } else if (segments.peekFirst().seq != ackSeq) {
+            ackSeq = segments.peekFirst().seq;
+            ackOffset = 0;
+        }
+    }
+
+    private void loadAck() throws IOException {
+        if (Files.exists(ackFile)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(ackFile));
+            if (buf.remaining() >= 12) {
+                ackSeq = buf.getLong();
+                ackOffset = buf.getInt();
+            }
+        }
+    }
+
+    private void saveAck() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(12).putLong(ackSeq).putInt(ackOffset);
+        Path tmp = dir.resolve(ACK_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, ackFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    private static class Segment {
+        final long seq;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePos;
+        // appended to since the last force
+        boolean dirty;
+
+        private Segment(long seq, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long seq, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(seq, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        static Segment open(Path path, long seq) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(seq, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+
+        /**
+         * Walks the records to find the end of valid data.
+         * @return The number of valid records at or after 'from'.
+         */
+        int scan(int from) {
+            int pos = 0;
+            int count = 0;
+            CRC32 crc = new CRC32();
+            while (buffer.capacity() - pos >= RECORD_HEADER) {
+                int length = buffer.getInt(pos);
+                if (length <= 0 || length > buffer.capacity() - pos - RECORD_HEADER) {
+                    break;
+                }
+                int expected = buffer.getInt(pos + 4);
+                ByteBuffer payload = buffer.duplicate();
+                payload.position(pos + RECORD_HEADER).limit(pos + RECORD_HEADER + length);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+                if (pos >= from) {
+                    count++;
+                }
+                pos += RECORD_HEADER + length;
+            }
+            writePos = pos;
+            return count;
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePos;
+        }
+
+        void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package main.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue between exactly one producer thread and one consumer thread.
+ * Each side only writes its own counter (ordered store) and reads the other one; the last value seen of the
+ * other side is cached, so the shared counters are only touched when the ring looks full or empty.
+ * offer() and poll() never block; callers wait with idle() when they get false or null.
+ */
+public class SpscRing<E> {
+
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20_000;
+
+    private final Object[] items;
+    private final int mask;
+    // next slot to poll, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // next slot to offer, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    // producer's last view of head, consumer's last view of tail
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * @param capacity Rounded up to a power of two.
+     */
+    public SpscRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.items = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     * @return false if the ring is full.
+     */
+    public boolean offer(E item) {
+        long t = tail.get();
+        if (t - cachedHead >= items.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= items.length) {
+                return false;
+            }
+        }
+        items[(int) t & mask] = item;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side.
+     * @return The oldest item, or null if the ring is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        E item = (E) items[index];
+        items[index] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * Waits a little after a full offer() or an empty poll(): spins first, since the other side is usually
+     * just about to move, then parks briefly so an idle pipeline does not burn a core.
+     * @param attempt Failed attempts in a row, 0 for the first.
+     */
+    public static void idle(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
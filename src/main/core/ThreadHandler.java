@@ -3,43 +3,197 @@ package main.core;
 import main.config.AlfaConfig;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
 
 public class ThreadHandler {
 
     // The threads list holds main.core.Thread (Runnable) objects.
-    private List<LogFilterTask> tasks = new ArrayList<>();
+    // Tasks are added by the init threads while the scheduler iterates, so the list is copy-on-write.
+    private final List<LogFilterTask> tasks = new CopyOnWriteArrayList<>();
     private AlfaConfig config;
 
+    // symbols whose source is not open yet (initializing, failed or waiting for a retry)
+    private final Set<String> pendingSymbols = ConcurrentHashMap.newKeySet();
+    // symbols whose failure has been reported, so retries do not report it again
+    private final Set<String> reportedSymbols = ConcurrentHashMap.newKeySet();
+    // called for every task that becomes ready, see onTaskReady()
+    private Consumer<LogFilterTask> taskListener;
+
+    private ExecutorService initExecutor;
+    private ScheduledExecutorService retryScheduler;
+    private CountDownLatch firstAttempts = new CountDownLatch(0);
+
     public ThreadHandler(AlfaConfig config) {
         this.config = config;
     }
 
+    /**
+     * Opens every source in parallel, each attempt bounded by the source init timeout of the config.
+     * Returns once every source had its first attempt, or after the timeout at the latest; sources that are
+     * still initializing or that failed are retried in the background and handed to the task listener when
+     * they come up, so one slow or missing file does not hold back the others.
+     */
     public void initializeTasks() {
         Set<String> absPathSymbols = config.getAbsPathSymbols();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory daemonThreads = r -> {
+            Thread t = new Thread(r, "AlfaInit-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        synchronized (this) {
+            initExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(config.getInitParallelism(), absPathSymbols.size())), daemonThreads);
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads);
+            firstAttempts = new CountDownLatch(absPathSymbols.size());
+            pendingSymbols.addAll(absPathSymbols);
+            for (String symbol : absPathSymbols) {
+                submit(symbol, true);
+            }
+        }
+        try {
+            if (!firstAttempts.await(config.getSourceInitTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                System.out.println("[AlfaAgent] " + pendingSymbols.size() + " source(s) still initializing in the background.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        for (String symbol : absPathSymbols) {
+    // one init attempt; a watchdog gives up on it after the timeout (e.g. a hung NFS mount)
+    private synchronized void submit(String symbol, boolean first) {
+        if (initExecutor == null || initExecutor.isShutdown()) {
+            return;
+        }
+        AtomicBoolean settled = new AtomicBoolean();
+        initExecutor.execute(() -> {
+            ScheduledFuture<?> watchdog = schedule(() -> {
+                if (settled.compareAndSet(false, true)) {
+                    failed(symbol, new IOException("Initialization timed out after " + config.getSourceInitTimeoutMillis() + " ms"), first);
+                }
+            }, config.getSourceInitTimeoutMillis(), TimeUnit.MILLISECONDS);
             try {
-                FilterHandler handler = new FilterHandler(config, symbol);
+                FilterHandler handler = openSource(symbol);
+                if (settled.compareAndSet(false, true)) {
+                    ready(new LogFilterTask(config, symbol, handler), first);
+                } else {
+                    handler.close(); // the watchdog already gave up on this attempt
+                }
+            } catch (IOException | RuntimeException e) {
+                if (settled.compareAndSet(false, true)) {
+                    failed(symbol, e, first);
+                }
+            } finally {
+                if (watchdog != null) {
+                    watchdog.cancel(false);
+                }
+            }
+        });
+    }
 
-                tasks.add(new LogFilterTask(config, symbol, handler));
+    private FilterHandler openSource(String symbol) throws IOException {
+        String path = config.getAbsPaths().get(symbol);
+        if (config.isVerifyPathsOnStart() && path != null && !Files.exists(Path.of(path))) {
+            throw new NoSuchFileException(path);
+        }
+        return new FilterHandler(config, symbol);
+    }
+
+    private void ready(LogFilterTask task, boolean first) {
+        Consumer<LogFilterTask> listener = null;
+        boolean closed;
+        synchronized (this) {
+            closed = initExecutor == null;
+            if (!closed) {
+                tasks.add(task);
+                pendingSymbols.remove(task.getPathSymbol());
+                listener = taskListener;
+            }
+        }
+        if (first) {
+            firstAttempts.countDown();
+        }
+        if (closed) {
+            task.close(); // closed while this source was initializing
+            return;
+        }
+        if (reportedSymbols.remove(task.getPathSymbol())) {
+            System.out.println("[AlfaAgent] Source " + task.getPathSymbol() + " is available again.");
+        }
+        if (listener != null) {
+            listener.accept(task);
+        }
+    }
 
-            } catch (IOException e) {
+    private void failed(String symbol, Exception e, boolean first) {
+        // an invalid regex is reported by FilterHandler and will not get better with a retry
+        if (!(e.getCause() instanceof PatternSyntaxException)) {
+            if (reportedSymbols.add(symbol)) {
                 config.getResultHandler().onError(symbol, e);
+                System.err.println("[AlfaAgent] Source " + symbol + " will be retried every " + config.getSourceRetryIntervalSeconds() + " s.");
             }
+            schedule(() -> submit(symbol, false), config.getSourceRetryIntervalSeconds(), TimeUnit.SECONDS);
+        }
+        if (first) {
+            firstAttempts.countDown();
         }
     }
 
+    private synchronized ScheduledFuture<?> schedule(Runnable action, long delay, TimeUnit unit) {
+        if (retryScheduler == null || retryScheduler.isShutdown()) {
+            return null;
+        }
+        return retryScheduler.schedule(action, delay, unit);
+    }
+
+    /**
+     * Registers the listener for tasks that become ready later (retries, slow sources).
+     * @return The tasks that are ready now. Every task is either in this list or passed to the listener, never both.
+     */
+    public synchronized List<LogFilterTask> onTaskReady(Consumer<LogFilterTask> listener) {
+        this.taskListener = listener;
+        return new ArrayList<>(tasks);
+    }
+
     // Add a getter so that external classes (e.g., BatchHandler) can retrieve the list of tasks.
     public List<LogFilterTask> getRunnableTasks() {
         return tasks;
     }
 
+    /**
+     * @return Symbols whose source is not open yet.
+     */
+    public Set<String> getPendingSymbols() {
+        return Set.copyOf(pendingSymbols);
+    }
+
+    /**
+     * Stops initialization and retries and closes every task. initializeTasks() can be called again afterwards.
+     */
     public void closeTasks() {
+        synchronized (this) {
+            taskListener = null;
+            if (initExecutor != null) {
+                initExecutor.shutdownNow();
+                retryScheduler.shutdownNow();
+                initExecutor = null;
+                retryScheduler = null;
+            }
+            pendingSymbols.clear();
+            reportedSymbols.clear();
+        }
         for (LogFilterTask task : tasks) {
             task.close();
         }
+        tasks.clear();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package main.flow;
+
+/**
+ * One match as seen by a Flow subscriber. 'offset' is the file offset just after the matched line:
+ * passing it to AlfaAgent.matchesFrom() resumes right after this match.
+ */
+public class Match {
+
+    private final String symbol;
+    private final String keyword;
+    private final String line;
+    private final long offset;
+
+    public Match(String symbol, String keyword, String line, long offset) {
+        this.symbol = symbol;
+        this.keyword = keyword;
+        this.line = line;
+        this.offset = offset;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + "@" + offset + " [" + keyword + "] " + line;
+    }
+}
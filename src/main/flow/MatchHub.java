@@ -0,0 +1,143 @@
+package main.flow;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The Flow publishers of one config: one per path symbol and a merged one.
+ * While a symbol (or the merged publisher) has subscribers, FilterHandler takes one unit of demand per match
+ * before it reads past the match; without demand the run ends in front of the matched line and the symbol is
+ * marked starved. A later request() wakes it through the listener set by BatchHandler.
+ * Subscribers see every match, sampling policies only apply to the result handler.
+ */
+public class MatchHub {
+
+    private static final MatchSubscription[] NO_SUBSCRIPTIONS = new MatchSubscription[0];
+
+    private final Map<String, MatchPublisher> publishers = new ConcurrentHashMap<>();
+    private final MatchPublisher merged = new MatchPublisher(this, null);
+    // offsets requested by matchesFrom(), applied by the next run of the symbol
+    private final Map<String, Long> seeks = new ConcurrentHashMap<>();
+    private final Set<String> starved = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<String> wakeListener;
+
+    public MatchPublisher publisher(String symbol) {
+        return publishers.computeIfAbsent(symbol, s -> new MatchPublisher(this, s));
+    }
+
+    public MatchPublisher merged() {
+        return merged;
+    }
+
+    /**
+     * @return true if matches of the symbol are gated by subscriber demand.
+     */
+    public boolean isGated(String symbol) {
+        MatchPublisher publisher = publishers.get(symbol);
+        return merged.hasSubscribers() || (publisher != null && publisher.hasSubscribers());
+    }
+
+    /**
+     * @return true if every subscriber of the symbol can take at least one more match.
+     */
+    public boolean hasDemand(String symbol) {
+        MatchPublisher publisher = publishers.get(symbol);
+        return merged.hasDemand() && (publisher == null || publisher.hasDemand());
+    }
+
+    /**
+     * Takes one unit of demand from every subscriber of the symbol.
+     * @return The grant to publish the match with, or null, taking nothing, if one of them has no demand.
+     */
+    public Grant tryAcquire(String symbol) {
+        MatchPublisher publisher = publishers.get(symbol);
+        MatchSubscription[] own = publisher == null ? NO_SUBSCRIPTIONS : publisher.tryAcquire();
+        if (own == null) {
+            return null;
+        }
+        MatchSubscription[] all = merged.tryAcquire();
+        if (all == null) {
+            MatchPublisher.release(own);
+            return null;
+        }
+        return new Grant(own, all);
+    }
+
+    /**
+     * Emits a match to the subscribers that granted demand for it.
+     */
+    public void publish(Grant grant, Match match) {
+        MatchPublisher.emit(grant.own, match);
+        MatchPublisher.emit(grant.merged, match);
+    }
+
+    /**
+     * Makes the next run of the symbol start at 'offset'. The result handler sees the lines after it again.
+     */
+    public void seek(String symbol, long offset) {
+        seeks.put(symbol, offset);
+        starved.remove(symbol);
+        Consumer<String> listener = wakeListener;
+        if (listener != null) {
+            listener.accept(symbol);
+        }
+    }
+
+    /**
+     * @return The pending seek of the symbol, or null. The seek is consumed.
+     */
+    public Long takeSeek(String symbol) {
+        return seeks.remove(symbol);
+    }
+
+    public void markStarved(String symbol) {
+        starved.add(symbol);
+    }
+
+    /**
+     * @param listener Called with a starved symbol when demand for it arrives.
+     */
+    public void setWakeListener(Consumer<String> listener) {
+        this.wakeListener = listener;
+    }
+
+    /**
+     * Completes every subscription, e.g. when the agent stops.
+     */
+    public void completeAll() {
+        for (MatchPublisher publisher : publishers.values()) {
+            publisher.complete();
+        }
+        merged.complete();
+        starved.clear();
+    }
+
+    /**
+     * Demand taken by tryAcquire(): the subscribers of the symbol and of the merged publisher at that moment.
+     */
+    public static final class Grant {
+        private final MatchSubscription[] own;
+        private final MatchSubscription[] merged;
+
+        private Grant(MatchSubscription[] own, MatchSubscription[] merged) {
+            this.own = own;
+            this.merged = merged;
+        }
+    }
+
+    // symbol is null when the merged publisher got demand
+    void onDemand(String symbol) {
+        Consumer<String> listener = wakeListener;
+        if (symbol == null) {
+            for (String s : starved) {
+                if (starved.remove(s) && listener != null) {
+                    listener.accept(s);
+                }
+            }
+        } else if (starved.remove(symbol) && listener != null) {
+            listener.accept(symbol);
+        }
+    }
+}
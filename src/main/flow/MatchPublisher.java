@@ -0,0 +1,118 @@
+package main.flow;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * Publisher of the matches of one path symbol, or of every symbol (the merged publisher of MatchHub).
+ * Items are emitted on the reader thread of the symbol; there is no buffer, because reading stops when a
+ * subscriber has no demand left.
+ */
+public class MatchPublisher implements Flow.Publisher<Match> {
+
+    private static final MatchSubscription[] NONE = new MatchSubscription[0];
+
+    private final MatchHub hub;
+    // null for the merged publisher
+    private final String symbol;
+    // replaced, never changed, on subscribe and cancel: a reader takes demand from and emits to one snapshot
+    private volatile MatchSubscription[] subscriptions = NONE;
+
+    MatchPublisher(MatchHub hub, String symbol) {
+        this.hub = hub;
+        this.symbol = symbol;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Match> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        MatchSubscription subscription = new MatchSubscription(this, subscriber);
+        synchronized (this) {
+            MatchSubscription[] current = subscriptions;
+            MatchSubscription[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = subscription;
+            subscriptions = next;
+        }
+        subscription.start();
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    boolean hasDemand() {
+        for (MatchSubscription subscription : subscriptions) {
+            if (!subscription.hasDemand()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes one unit of demand from every subscriber, or none if one of them has no demand.
+     * @return The subscribers the demand was taken from, to pass to emit() or release(); null without demand.
+     */
+    MatchSubscription[] tryAcquire() {
+        MatchSubscription[] snapshot = subscriptions;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (!snapshot[i].tryAcquire()) {
+                for (int j = 0; j < i; j++) {
+                    snapshot[j].release();
+                }
+                return null;
+            }
+        }
+        return snapshot;
+    }
+
+    static void release(MatchSubscription[] acquired) {
+        for (MatchSubscription subscription : acquired) {
+            subscription.release();
+        }
+    }
+
+    /**
+     * Emits to the subscribers that granted the demand; one that subscribed since then did not ask for the match.
+     */
+    static void emit(MatchSubscription[] acquired, Match match) {
+        for (MatchSubscription subscription : acquired) {
+            subscription.emit(match);
+        }
+    }
+
+    void complete() {
+        MatchSubscription[] completed;
+        synchronized (this) {
+            completed = subscriptions;
+            subscriptions = NONE;
+        }
+        for (MatchSubscription subscription : completed) {
+            subscription.complete();
+        }
+    }
+
+    void remove(MatchSubscription subscription) {
+        synchronized (this) {
+            MatchSubscription[] current = subscriptions;
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index >= 0) {
+                MatchSubscription[] next = new MatchSubscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, index);
+                System.arraycopy(current, index + 1, next, index, next.length - index);
+                subscriptions = next;
+            }
+        }
+        // the gate may be open now
+        hub.onDemand(symbol);
+    }
+
+    void onDemand() {
+        hub.onDemand(symbol);
+    }
+}
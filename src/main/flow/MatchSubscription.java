@@ -0,0 +1,96 @@
+package main.flow;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Demand of one subscriber. Readers take one unit per match with tryAcquire() before the match is read past,
+ * so a subscriber never gets more items than it requested. Signals to the subscriber are serialized.
+ */
+class MatchSubscription implements Flow.Subscription {
+
+    private final MatchPublisher publisher;
+    private final Flow.Subscriber<? super Match> subscriber;
+    // Long.MAX_VALUE means unbounded (Flow rule 3.17)
+    private final AtomicLong demand = new AtomicLong();
+    private volatile boolean cancelled;
+
+    MatchSubscription(MatchPublisher publisher, Flow.Subscriber<? super Match> subscriber) {
+        this.publisher = publisher;
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+        if (cancelled) {
+            return;
+        }
+        if (n <= 0) {
+            cancel();
+            signalError(new IllegalArgumentException("Non-positive request: " + n));
+            return;
+        }
+        long before = demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        if (before == 0) {
+            publisher.onDemand();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            publisher.remove(this);
+        }
+    }
+
+    boolean hasDemand() {
+        return !cancelled && demand.get() > 0;
+    }
+
+    boolean tryAcquire() {
+        while (!cancelled) {
+            long current = demand.get();
+            if (current == 0) {
+                return false;
+            }
+            if (current == Long.MAX_VALUE || demand.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+        // a cancelled subscriber does not hold readers back
+        return true;
+    }
+
+    void release() {
+        demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current + 1);
+    }
+
+    void start() {
+        subscriber.onSubscribe(this);
+    }
+
+    synchronized void emit(Match match) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            subscriber.onNext(match);
+        } catch (Throwable t) {
+            // rule 2.13: a throwing subscriber is cancelled
+            cancel();
+            System.err.println("[AlfaAgent] Flow subscriber failed and was cancelled: " + t);
+        }
+    }
+
+    synchronized void complete() {
+        if (!cancelled) {
+            cancelled = true;
+            subscriber.onComplete();
+        }
+    }
+
+    private synchronized void signalError(Throwable t) {
+        subscriber.onError(t);
+    }
+}
@@ -0,0 +1,427 @@
+package main.index;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Optional in-memory index of recent matches for dashboards and ad hoc queries (see AlfaConfig.setMatchIndex).
+ * <ul>
+ *     <li>Every match is reduced to a template: whitespace separated tokens that contain a digit become "&lt;*&gt;",
+ *     so "user 42 failed" and "user 7 failed" count as one template "user &lt;*&gt; failed".</li>
+ *     <li>Symbols, keywords, templates and tokens are interned to int ids. Counts are kept per time bucket in a
+ *     primitive long-keyed map (symbol, keyword, template), and every token has a posting list of the templates
+ *     that contain it.</li>
+ *     <li>Buckets older than the retention are evicted, and so is the oldest bucket while the estimated memory is above
+ *     the cap. Templates and tokens no longer referenced by a bucket are removed with it.</li>
+ *     <li>The last few raw lines of each symbol and keyword are kept as samples.</li>
+ * </ul>
+ * Windows of queries are rounded to whole buckets. All methods are thread-safe.
+ */
+public class MatchIndex {
+
+    public static final String WILDCARD = "<*>";
+
+    private static final int MAX_TEMPLATE_TOKENS = 32;
+    private static final int MAX_SYMBOLS = 1 << 20;
+    private static final int MAX_KEYWORDS = 1 << 12;
+
+    /**
+     * One row of a top-K result.
+     */
+    public static class TemplateCount {
+        public final String symbol;
+        public final String keyword;
+        public final String template;
+        public final long count;
+
+        TemplateCount(String symbol, String keyword, String template, long count) {
+            this.symbol = symbol;
+            this.keyword = keyword;
+            this.template = template;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return count + " " + symbol + " [" + keyword + "] " + template;
+        }
+    }
+
+    private static class Bucket {
+        final long start;
+        final LongIntMap counts = new LongIntMap();
+
+        Bucket(long start) {
+            this.start = start;
+        }
+    }
+
+    private final long bucketMillis;
+    private final int retentionBuckets;
+    private final long maxBytes;
+    private final int samplesPerKey;
+    private final LongSupplier clock;
+
+    private final StringTable symbols = new StringTable();
+    private final StringTable keywords = new StringTable();
+    private final StringTable templates = new StringTable();
+    private final StringTable tokens = new StringTable();
+    // token ids of each template, indexed by template id
+    private final List<int[]> templateTokens = new ArrayList<>();
+    // template ids containing each token, indexed by token id
+    private final List<IntList> postings = new ArrayList<>();
+    private final ArrayDeque<Bucket> buckets = new ArrayDeque<>();
+    // (symbol id << 12 | keyword id) -> newest lines last
+    private final Map<Long, ArrayDeque<String>> samples = new HashMap<>();
+
+    private long estimatedBytes;
+    private long droppedMatches;
+
+    /**
+     * @param bucketMillis Width of one time bucket, e.g. 60 000 for one minute.
+     * @param retentionBuckets Number of buckets kept; the index covers bucketMillis * retentionBuckets.
+     * @param maxBytes Memory cap of the index (estimated).
+     */
+    public MatchIndex(long bucketMillis, int retentionBuckets, long maxBytes) {
+        this(bucketMillis, retentionBuckets, maxBytes, 16, System::currentTimeMillis);
+    }
+
+    public MatchIndex(long bucketMillis, int retentionBuckets, long maxBytes, int samplesPerKey, LongSupplier clock) {
+        if (bucketMillis < 1 || retentionBuckets < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("bucketMillis, retentionBuckets and maxBytes must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.retentionBuckets = retentionBuckets;
+        this.maxBytes = maxBytes;
+        this.samplesPerKey = samplesPerKey;
+        this.clock = clock;
+    }
+
+    /**
+     * Records one match. Called by FilterHandler for every match, sampled or not.
+     */
+    public synchronized void add(String symbol, String keyword, String line) {
+        long now = clock.getAsLong();
+        Bucket bucket = currentBucket(now);
+        enforceCap();
+
+        int symbolId = symbols.find(symbol);
+        int keywordId = keywords.find(keyword);
+        if ((symbolId == 0 && symbols.maxId() + 1 >= MAX_SYMBOLS) || (keywordId == 0 && keywords.maxId() + 1 >= MAX_KEYWORDS)) {
+            droppedMatches++;
+            return;
+        }
+        if (symbolId == 0) {
+            symbolId = symbols.intern(symbol);
+            estimatedBytes += stringBytes(symbol);
+        }
+        if (keywordId == 0) {
+            keywordId = keywords.intern(keyword);
+            estimatedBytes += stringBytes(keyword);
+        }
+
+        String template = templateOf(line);
+        int templateId = templates.find(template);
+        if (templateId == 0) {
+            if (estimatedBytes > maxBytes) {
+                droppedMatches++; // the current bucket alone fills the cap: count known templates only
+                return;
+            }
+            templateId = addTemplate(template);
+        }
+
+        long before = bucket.counts.estimateBytes();
+        bucket.counts.increment(key(symbolId, keywordId, templateId));
+        estimatedBytes += bucket.counts.estimateBytes() - before;
+
+        ArrayDeque<String> recent = samples.computeIfAbsent(((long) symbolId << 12) | keywordId, k -> new ArrayDeque<>());
+        recent.addLast(line);
+        estimatedBytes += stringBytes(line);
+        if (recent.size() > samplesPerKey) {
+            estimatedBytes -= stringBytes(recent.removeFirst());
+        }
+
+        enforceCap();
+    }
+
+    // evicts the oldest buckets while the estimate is above the cap; the current bucket always stays
+    private void enforceCap() {
+        while (estimatedBytes > maxBytes && buckets.size() > 1) {
+            buckets.removeFirst();
+            sweep();
+        }
+    }
+
+    /**
+     * @param symbol Path symbol, or null for all.
+     * @param keyword Filter keyword, or null for all.
+     * @param windowMillis Look-back window from now.
+     * @return Number of matches in the window.
+     */
+    public synchronized long count(String symbol, String keyword, long windowMillis) {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : aggregate(symbol, keyword, windowMillis, null).entrySet()) {
+            total += entry.getValue();
+        }
+        return total;
+    }
+
+    /**
+     * @return The k most frequent templates in the window, most frequent first.
+     */
+    public synchronized List<TemplateCount> topTemplates(String symbol, String keyword, long windowMillis, int k) {
+        return top(aggregate(symbol, keyword, windowMillis, null), k);
+    }
+
+    /**
+     * Uses the token postings: only templates containing the token are aggregated.
+     * @return The k most frequent templates in the window that contain the token, most frequent first.
+     */
+    public synchronized List<TemplateCount> topTemplatesWithToken(String token, long windowMillis, int k) {
+        int tokenId = tokens.find(token);
+        if (tokenId == 0) {
+            return Collections.emptyList();
+        }
+        IntList templateIds = postings.get(tokenId);
+        Set<Integer> allowed = new HashSet<>();
+        for (int i = 0; i < templateIds.size; i++) {
+            allowed.add(templateIds.values[i]);
+        }
+        return top(aggregate(null, null, windowMillis, allowed), k);
+    }
+
+    /**
+     * @return Up to 'limit' of the newest raw lines of the symbol and keyword, newest first.
+     */
+    public synchronized List<String> recentSamples(String symbol, String keyword, int limit) {
+        ArrayDeque<String> recent = samples.get(((long) symbols.find(symbol) << 12) | keywords.find(keyword));
+        List<String> result = new ArrayList<>();
+        if (recent != null) {
+            Iterator<String> newestFirst = recent.descendingIterator();
+            while (newestFirst.hasNext() && result.size() < limit) {
+                result.add(newestFirst.next());
+            }
+        }
+        return result;
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public synchronized int getTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * @return Matches not indexed because the memory cap or the id space was exhausted.
+     */
+    public synchronized long getDroppedMatches() {
+        return droppedMatches;
+    }
+
+    /**
+     * Reduces a line to its template. Visible for tests and for callers that want to look up a line's template.
+     */
+    public static String templateOf(String line) {
+        StringBuilder template = new StringBuilder();
+        int count = 0;
+        int i = 0;
+        int n = line.length();
+        while (i < n && count < MAX_TEMPLATE_TOKENS) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            boolean digit = false;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) {
+                digit |= Character.isDigit(line.charAt(i));
+                i++;
+            }
+            if (i > start) {
+                if (count++ > 0) {
+                    template.append(' ');
+                }
+                template.append(digit ? WILDCARD : line.substring(start, i));
+            }
+        }
+        return template.toString();
+    }
+
+    private Bucket currentBucket(long now) {
+        long start = now - Math.floorMod(now, bucketMillis);
+        Bucket last = buckets.peekLast();
+        if (last == null || last.start < start) {
+            last = new Bucket(start);
+            buckets.addLast(last);
+            estimatedBytes += last.counts.estimateBytes();
+        }
+        long oldest = start - (retentionBuckets - 1) * bucketMillis;
+        boolean evicted = false;
+        while (buckets.peekFirst().start < oldest) {
+            buckets.removeFirst();
+            evicted = true;
+        }
+        if (evicted) {
+            sweep();
+        }
+        return last;
+    }
+
+    private int addTemplate(String template) {
+        int templateId = templates.intern(template);
+        List<Integer> ids = new ArrayList<>();
+        for (String token : template.split(" ")) {
+            if (token.isEmpty() || token.equals(WILDCARD)) {
+                continue;
+            }
+            int tokenId = tokens.find(token);
+            if (tokenId == 0) {
+                tokenId = tokens.intern(token);
+                estimatedBytes += stringBytes(token);
+            }
+            while (postings.size() <= tokenId) {
+                postings.add(null);
+            }
+            if (postings.get(tokenId) == null) {
+                postings.set(tokenId, new IntList());
+            }
+            if (!ids.contains(tokenId)) {
+                ids.add(tokenId);
+                postings.get(tokenId).add(templateId);
+            }
+        }
+        int[] tokenIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        while (templateTokens.size() <= templateId) {
+            templateTokens.add(null);
+        }
+        templateTokens.set(templateId, tokenIds);
+        estimatedBytes += stringBytes(template) + 8L * tokenIds.length;
+        return templateId;
+    }
+
+    /**
+     * Removes templates and tokens that no remaining bucket refers to and recomputes the memory estimate.
+     */
+    private void sweep() {
+        Set<Integer> live = new HashSet<>();
+        long bytes = 0;
+        for (Bucket bucket : buckets) {
+            LongIntMap counts = bucket.counts;
+            bytes += counts.estimateBytes();
+            for (int slot = 0; slot < counts.capacity(); slot++) {
+                if (counts.keyAt(slot) != 0) {
+                    live.add((int) counts.keyAt(slot));
+                }
+            }
+        }
+        for (int templateId = 1; templateId <= templates.maxId(); templateId++) {
+            String template = templates.get(templateId);
+            if (template == null) {
+                continue;
+            }
+            if (!live.contains(templateId)) {
+                for (int tokenId : templateTokens.get(templateId)) {
+                    IntList list = postings.get(tokenId);
+                    list.remove(templateId);
+                    if (list.size == 0) {
+                        postings.set(tokenId, null);
+                        tokens.remove(tokenId);
+                    }
+                }
+                templateTokens.set(templateId, null);
+                templates.remove(templateId);
+            } else {
+                bytes += stringBytes(template) + 8L * templateTokens.get(templateId).length;
+            }
+        }
+        for (int tokenId = 1; tokenId <= tokens.maxId(); tokenId++) {
+            if (tokens.get(tokenId) != null) {
+                bytes += stringBytes(tokens.get(tokenId));
+            }
+        }
+        for (int id = 1; id <= symbols.maxId(); id++) {
+            bytes += stringBytes(symbols.get(id));
+        }
+        for (int id = 1; id <= keywords.maxId(); id++) {
+            bytes += stringBytes(keywords.get(id));
+        }
+        for (ArrayDeque<String> recent : samples.values()) {
+            for (String line : recent) {
+                bytes += stringBytes(line);
+            }
+        }
+        estimatedBytes = bytes;
+    }
+
+    // (symbol, keyword, template) key -> count over the buckets in the window
+    private Map<Long, Long> aggregate(String symbol, String keyword, long windowMillis, Set<Integer> templateFilter) {
+        Map<Long, Long> totals = new HashMap<>();
+        int symbolId = symbol == null ? -1 : symbols.find(symbol);
+        int keywordId = keyword == null ? -1 : keywords.find(keyword);
+        if (symbolId == 0 || keywordId == 0) {
+            return totals;
+        }
+        long now = clock.getAsLong();
+        long from = now - Math.floorMod(now, bucketMillis) - Math.max(0, (windowMillis - 1) / bucketMillis) * bucketMillis;
+        for (Bucket bucket : buckets) {
+            if (bucket.start < from) {
+                continue;
+            }
+            LongIntMap counts = bucket.counts;
+            for (int slot = 0; slot < counts.capacity(); slot++) {
+                long key = counts.keyAt(slot);
+                if (key == 0
+                        || (symbolId > 0 && (int) (key >>> 44) != symbolId)
+                        || (keywordId > 0 && (int) ((key >>> 32) & (MAX_KEYWORDS - 1)) != keywordId)
+                        || (templateFilter != null && !templateFilter.contains((int) key))) {
+                    continue;
+                }
+                totals.merge(key, (long) counts.valueAt(slot), Long::sum);
+            }
+        }
+        return totals;
+    }
+
+    private List<TemplateCount> top(Map<Long, Long> totals, int k) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<TemplateCount> result = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : entries.subList(0, Math.min(k, entries.size()))) {
+            long key = entry.getKey();
+            result.add(new TemplateCount(symbols.get((int) (key >>> 44)), keywords.get((int) ((key >>> 32) & (MAX_KEYWORDS - 1))),
+                    templates.get((int) key), entry.getValue()));
+        }
+        return result;
+    }
+
+    private static long key(int symbolId, int keywordId, int templateId) {
+        return ((long) symbolId << 44) | ((long) keywordId << 32) | (templateId & 0xFFFFFFFFL);
+    }
+
+    private static long stringBytes(String s) {
+        return 48L + 2L * s.length();
+    }
+
+    // growable int array for posting lists
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package main.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns strings to small positive ids (starting at 1) and back. Removed ids are reused.
+ */
+class StringTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<Integer> free = new ArrayList<>();
+
+    StringTable() {
+        strings.add(null); // id 0 is never used
+    }
+
+    /**
+     * @return The id of the string, or 0 if it is not interned.
+     */
+    int find(String s) {
+        Integer id = ids.get(s);
+        return id == null ? 0 : id;
+    }
+
+    int intern(String s) {
+        Integer id = ids.get(s);
+        if (id != null) {
+            return id;
+        }
+        int newId;
+        if (free.isEmpty()) {
+            newId = strings.size();
+            strings.add(s);
+        } else {
+            newId = free.remove(free.size() - 1);
+            strings.set(newId, s);
+        }
+        ids.put(s, newId);
+        return newId;
+    }
+
+    String get(int id) {
+        return strings.get(id);
+    }
+
+    void remove(int id) {
+        ids.remove(strings.get(id));
+        strings.set(id, null);
+        free.add(id);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    // highest id ever handed out, for iteration
+    int maxId() {
+        return strings.size() - 1;
+    }
+}
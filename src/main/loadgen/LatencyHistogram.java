@@ -0,0 +1,74 @@
+package main.loadgen;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of latencies in microseconds.
+ * Values below 32 are exact; above, every power of two is split into 16 buckets (about 6% precision).
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * HALF + HALF * 2);
+
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    static int indexOf(long v) {
+        if (v < (1 << SUB_BITS)) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1;
+        return shift * HALF + (int) (v >>> shift);
+    }
+
+    // highest value that falls into the bucket
+    static long upperBound(int index) {
+        if (index < (1 << SUB_BITS)) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile 0 to 100, e.g. 99.9
+     * @return The upper bound of the bucket holding the percentile, or 0 when empty.
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    public long getMax() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,64 @@
+package main.loadgen;
+
+import main.config.AlfaResultHandler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Result handler for load tests: measures the time from LoadGenerator writing a matching line to onLogFiltered.
+ */
+public class LatencyRecorder implements AlfaResultHandler {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong untagged = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    @Override
+    public void onLogFiltered(String logLine, String keyword) {
+        long now = System.nanoTime();
+        received.incrementAndGet();
+        int tag = logLine.indexOf(LoadGenerator.LATENCY_TAG);
+        if (tag < 0) {
+            untagged.incrementAndGet();
+            return;
+        }
+        long written = 0;
+        for (int i = tag + LoadGenerator.LATENCY_TAG.length(); i < logLine.length(); i++) {
+            char c = logLine.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            written = written * 10 + (c - '0');
+        }
+        histogram.record((now - written) / 1000);
+    }
+
+    @Override
+    public void onBatchComplete(List<String> filteredLines, String symbol) {
+        // counted per line in onLogFiltered
+    }
+
+    @Override
+    public void onError(String pathSymbol, Exception e) {
+        errors.incrementAndGet();
+        System.err.println("[AlfaLoadGen] Agent error on " + pathSymbol + ": " + e.getMessage());
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getUntagged() {
+        return untagged.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+}
@@ -0,0 +1,252 @@
+package main.loadgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log files at a configured rate for load tests of the agent.
+ * One thread per file appends through a 64 KB buffer that is flushed whenever the writer is ahead of its
+ * schedule, so lines reach the file at most about a millisecond after they are generated.
+ * Matching lines carry "alfa-lat=&lt;System.nanoTime()&gt;" so LatencyRecorder can measure write-to-handler latency
+ * when the generator and the agent run in the same JVM.
+ */
+public class LoadGenerator {
+
+    public static final String LATENCY_TAG = "alfa-lat=";
+
+    private static final String[] LEVELS = {"INFO", "DEBUG", "WARN"};
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final Path directory;
+    private final LoadProfile profile;
+    // padding characters; letters of the keyword are left out so padding can never form a match
+    private final char[] padding;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong linesWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong matchesWritten = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+
+    public LoadGenerator(Path directory, LoadProfile profile) {
+        this.directory = directory;
+        this.profile = profile;
+        StringBuilder chars = new StringBuilder();
+        String keyword = profile.getMatchKeyword().toLowerCase();
+        for (char c = 'a'; c <= 'z'; c++) {
+            if (keyword.indexOf(c) < 0) {
+                chars.append(c);
+            }
+        }
+        this.padding = chars.append("0123456789").toString().toCharArray();
+        for (int i = 0; i < profile.getFiles(); i++) {
+            files.add(directory.resolve("load-" + i + ".log"));
+        }
+    }
+
+    /**
+     * Creates the files (empty) so the agent can open them before anything is written.
+     */
+    public void createFiles() throws IOException {
+        Files.createDirectories(directory);
+        for (Path file : files) {
+            Files.write(file, new byte[0]);
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        createFiles();
+        running = true;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            Thread writer = new Thread(() -> write(file), "AlfaLoadGen-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writers.clear();
+    }
+
+    private void write(Path file) {
+        SplittableRandom random = new SplittableRandom();
+        int fileCount = files.size();
+        // nanoseconds of budget one line and one byte cost on this file
+        double nanosPerLine = profile.getLinesPerSecond() > 0 ? 1e9 * fileCount / profile.getLinesPerSecond() : 0;
+        double nanosPerByte = profile.getBytesPerSecond() > 0 ? 1e9 * fileCount / profile.getBytesPerSecond() : 0;
+        long rotateNanos = TimeUnit.SECONDS.toNanos(profile.getRotateEverySeconds());
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        StringBuilder line = new StringBuilder(profile.getMaxLineBytes() + 64);
+        String timestamp = "";
+        long timestampSecond = -1;
+
+        FileChannel channel = null;
+        try {
+            channel = open(file);
+            long start = System.nanoTime();
+            double due = start;
+            long nextRotation = start + rotateNanos;
+            while (running) {
+                long now = System.nanoTime();
+                if (due - now > 1_000_000) {
+                    // ahead of schedule: make what is buffered visible, then wait
+                    flush(channel, buffer);
+                    LockSupport.parkNanos((long) (due - now));
+                    continue;
+                }
+                if (rotateNanos > 0 && now - nextRotation >= 0) {
+                    flush(channel, buffer);
+                    channel = rotate(file, channel);
+                    nextRotation = now + rotateNanos;
+                }
+
+                long second = now / 1_000_000_000L;
+                if (second != timestampSecond) {
+                    timestampSecond = second;
+                    timestamp = LocalDateTime.now().format(TIMESTAMP);
+                }
+                int lines = 1;
+                boolean match = random.nextDouble() < profile.getMatchRatio();
+                int size = profile.getMinLineBytes() + random.nextInt(profile.getMaxLineBytes() - profile.getMinLineBytes() + 1);
+                buildLine(line, timestamp, match, size, random);
+                if (match && random.nextDouble() < profile.getStackTraceRatio()) {
+                    lines += appendStackTrace(line, random);
+                }
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > buffer.remaining()) {
+                    flush(channel, buffer);
+                }
+                if (bytes.length > buffer.capacity()) {
+                    channel.write(ByteBuffer.wrap(bytes));
+                } else {
+                    buffer.put(bytes);
+                }
+
+                linesWritten.addAndGet(lines);
+                bytesWritten.addAndGet(bytes.length);
+                if (match) {
+                    matchesWritten.incrementAndGet();
+                }
+                due += Math.max(nanosPerLine * lines, nanosPerByte * bytes.length);
+                if (nanosPerLine == 0 && nanosPerByte == 0) {
+                    due = now; // unlimited
+                }
+            }
+            flush(channel, buffer);
+        } catch (IOException e) {
+            System.err.println("[AlfaLoadGen] Writer for " + file + " stopped: " + e.getMessage());
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // "[timestamp] [LEVEL] message" padded to about 'size' bytes, ending with '\n'
+    private void buildLine(StringBuilder line, String timestamp, boolean match, int size, SplittableRandom random) {
+        line.setLength(0);
+        line.append('[').append(timestamp).append("] [");
+        if (match) {
+            line.append(profile.getMatchKeyword()).append("] request failed ").append(LATENCY_TAG).append(System.nanoTime());
+        } else {
+            line.append(LEVELS[random.nextInt(LEVELS.length)]).append("] request served id=").append(random.nextInt(1_000_000));
+        }
+        line.append(" payload=");
+        while (line.length() < size - 1) {
+            line.append(padding[random.nextInt(padding.length)]);
+        }
+        line.append('\n');
+    }
+
+    // appends a Java style stack trace and returns the number of lines appended
+    private static int appendStackTrace(StringBuilder line, SplittableRandom random) {
+        int frames = 5 + random.nextInt(20);
+        for (int i = 0; i < frames; i++) {
+            line.append("\tat com.example.service.Handler").append(i).append(".handle(Handler").append(i).append(".java:")
+                    .append(10 + random.nextInt(500)).append(")\n");
+        }
+        line.append("Caused by: java.io.IOException: connection reset\n");
+        line.append("\t... ").append(frames).append(" more\n");
+        return frames + 2;
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private FileChannel rotate(Path file, FileChannel channel) throws IOException {
+        Path rotated = file.resolveSibling(file.getFileName() + ".1");
+        if (profile.getRotationMode() == LoadProfile.RotationMode.RENAME) {
+            channel.close();
+            Files.move(file, rotated, StandardCopyOption.REPLACE_EXISTING);
+            channel = open(file);
+        } else {
+            Files.copy(file, rotated, StandardCopyOption.REPLACE_EXISTING);
+            channel.truncate(0);
+        }
+        rotations.incrementAndGet();
+        return channel;
+    }
+
+    public List<Path> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public long getLinesWritten() {
+        return linesWritten.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getMatchesWritten() {
+        return matchesWritten.get();
+    }
+
+    public long getRotations() {
+        return rotations.get();
+    }
+}
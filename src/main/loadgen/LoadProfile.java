@@ -0,0 +1,120 @@
+package main.loadgen;
+
+/**
+ * Settings of a LoadGenerator run. Rates are totals over all files; 0 means unlimited.
+ */
+public class LoadProfile {
+
+    public enum RotationMode {
+        // file is renamed to file.1 and a new file is created (logrotate default)
+        RENAME,
+        // file is copied to file.1 and truncated in place (logrotate copytruncate)
+        COPYTRUNCATE
+    }
+
+    // number of files written in parallel, one writer thread each.
+    private int files = 4;
+
+    // lines per second over all files. 0 means unlimited.
+    private long linesPerSecond = 10_000;
+
+    // bytes per second over all files. 0 means unlimited. The stricter of the two limits applies.
+    private long bytesPerSecond = 0;
+
+    // line sizes are uniformly distributed in [minLineBytes, maxLineBytes].
+    private int minLineBytes = 80;
+    private int maxLineBytes = 300;
+
+    // share of lines that contain matchKeyword.
+    private double matchRatio = 0.01;
+
+    private String matchKeyword = "ERROR";
+
+    // share of matching lines followed by a multi-line stack trace (lines that do not match).
+    private double stackTraceRatio = 0.0;
+
+    // seconds between rotations of each file. 0 means no rotation.
+    private int rotateEverySeconds = 0;
+
+    private RotationMode rotationMode = RotationMode.RENAME;
+
+    public int getFiles() {
+        return files;
+    }
+
+    public void setFiles(int files) {
+        this.files = files;
+    }
+
+    public long getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public void setLinesPerSecond(long linesPerSecond) {
+        this.linesPerSecond = linesPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public int getMinLineBytes() {
+        return minLineBytes;
+    }
+
+    public int getMaxLineBytes() {
+        return maxLineBytes;
+    }
+
+    public void setLineBytes(int minLineBytes, int maxLineBytes) {
+        if (minLineBytes < 1 || maxLineBytes < minLineBytes) {
+            throw new IllegalArgumentException("Invalid line size range: " + minLineBytes + ".." + maxLineBytes);
+        }
+        this.minLineBytes = minLineBytes;
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    public double getMatchRatio() {
+        return matchRatio;
+    }
+
+    public void setMatchRatio(double matchRatio) {
+        this.matchRatio = matchRatio;
+    }
+
+    public String getMatchKeyword() {
+        return matchKeyword;
+    }
+
+    public void setMatchKeyword(String matchKeyword) {
+        this.matchKeyword = matchKeyword;
+    }
+
+    public double getStackTraceRatio() {
+        return stackTraceRatio;
+    }
+
+    public void setStackTraceRatio(double stackTraceRatio) {
+        this.stackTraceRatio = stackTraceRatio;
+    }
+
+    public int getRotateEverySeconds() {
+        return rotateEverySeconds;
+    }
+
+    public void setRotateEverySeconds(int rotateEverySeconds) {
+        this.rotateEverySeconds = rotateEverySeconds;
+    }
+
+    public RotationMode getRotationMode() {
+        return rotationMode;
+    }
+
+    public void setRotationMode(RotationMode rotationMode) {
+        this.rotationMode = rotationMode;
+    }
+}
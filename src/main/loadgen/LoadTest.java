@@ -0,0 +1,85 @@
+package main.loadgen;
+
+import main.agent.AlfaAgent;
+import main.config.AlfaConfig;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs LoadGenerator and an AlfaAgent in one JVM and reports throughput and write-to-handler latency.
+ * <pre>
+ * java -cp alfa.jar main.loadgen.LoadTest --files=8 --lines-per-sec=200000 --match-ratio=0.01 --duration=30
+ * </pre>
+ * Options (defaults in brackets): --dir [alfa-load], --files [4], --lines-per-sec [10000], --mb-per-sec [0],
+ * --min-line [80], --max-line [300], --match-ratio [0.01], --stack-ratio [0], --rotate-every [0],
+ * --rotate-mode [rename|copytruncate], --duration [30], --batch-time [1], --pool [4], --filter [ERROR].
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Invalid option (expected --name=value): " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        LoadProfile profile = new LoadProfile();
+        profile.setFiles(Integer.parseInt(options.getOrDefault("files", "4")));
+        profile.setLinesPerSecond(Long.parseLong(options.getOrDefault("lines-per-sec", "10000")));
+        profile.setBytesPerSecond((long) (Double.parseDouble(options.getOrDefault("mb-per-sec", "0")) * 1024 * 1024));
+        profile.setLineBytes(Integer.parseInt(options.getOrDefault("min-line", "80")), Integer.parseInt(options.getOrDefault("max-line", "300")));
+        profile.setMatchRatio(Double.parseDouble(options.getOrDefault("match-ratio", "0.01")));
+        profile.setStackTraceRatio(Double.parseDouble(options.getOrDefault("stack-ratio", "0")));
+        profile.setRotateEverySeconds(Integer.parseInt(options.getOrDefault("rotate-every", "0")));
+        profile.setRotationMode(LoadProfile.RotationMode.valueOf(options.getOrDefault("rotate-mode", "rename").toUpperCase()));
+        String filter = options.getOrDefault("filter", "ERROR");
+        profile.setMatchKeyword(filter);
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int batchTime = Integer.parseInt(options.getOrDefault("batch-time", "1"));
+
+        Path dir = Paths.get(options.getOrDefault("dir", "alfa-load"));
+        LoadGenerator generator = new LoadGenerator(dir, profile);
+        generator.createFiles();
+
+        Map<String, String> paths = new HashMap<>();
+        Map<String, Set<String>> filters = new HashMap<>();
+        for (int i = 0; i < generator.getFiles().size(); i++) {
+            paths.put("LOAD_" + i, generator.getFiles().get(i).toString());
+            filters.put("LOAD_" + i, Set.of(filter));
+        }
+        LatencyRecorder recorder = new LatencyRecorder();
+        AlfaConfig config = new AlfaConfig(recorder, paths, filters, batchTime,
+                Integer.parseInt(options.getOrDefault("pool", "4")), null, null, false);
+        AlfaAgent agent = new AlfaAgent(config);
+
+        agent.start();
+        generator.start();
+        long begin = System.nanoTime();
+        TimeUnit.SECONDS.sleep(duration);
+        generator.stop();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        // let the agent catch up with what was written last
+        TimeUnit.SECONDS.sleep(batchTime * 2L + 1);
+        agent.stop();
+
+        LatencyHistogram latency = recorder.getHistogram();
+        System.out.printf("[AlfaLoadGen] wrote %,d lines (%,.0f lines/s), %.1f MB (%.1f MB/s), %d rotation(s)%n",
+                generator.getLinesWritten(), generator.getLinesWritten() / seconds,
+                generator.getBytesWritten() / 1048576.0, generator.getBytesWritten() / 1048576.0 / seconds, generator.getRotations());
+        System.out.printf("[AlfaLoadGen] matches written %,d, received %,d (%d without latency tag), errors %d%n",
+                generator.getMatchesWritten(), recorder.getReceived(), recorder.getUntagged(), recorder.getErrors());
+        System.out.printf("[AlfaLoadGen] latency p50 %.1f ms, p99 %.1f ms, p999 %.1f ms, max %.1f ms%n",
+                latency.getPercentile(50) / 1000.0, latency.getPercentile(99) / 1000.0,
+                latency.getPercentile(99.9) / 1000.0, latency.getMax() / 1000.0);
+    }
+}
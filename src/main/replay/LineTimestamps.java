@@ -0,0 +1,54 @@
+package main.replay;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Reads the timestamp at the start of a log line, to the second.
+ * Consecutive lines usually share their second, so a line that starts with the same text as the last parsed
+ * timestamp reuses its value without parsing. Not thread safe: one instance per chunk.
+ */
+class LineTimestamps {
+
+    static final long NONE = Long.MIN_VALUE;
+
+    private final DateTimeFormatter format;
+    private final ZoneId zone;
+
+    private String lastPrefix = "";
+    private long lastSeconds = NONE;
+
+    LineTimestamps(DateTimeFormatter format, ZoneId zone) {
+        this.format = format;
+        this.zone = zone;
+    }
+
+    /**
+     * @return Epoch seconds of the timestamp the line starts with, or NONE.
+     */
+    long secondsOf(String line) {
+        if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+            return NONE; // cheap rejection of stack traces and continuation lines
+        }
+        if (!lastPrefix.isEmpty() && line.startsWith(lastPrefix)) {
+            return lastSeconds;
+        }
+        ParsePosition position = new ParsePosition(0);
+        try {
+            TemporalAccessor parsed = format.parse(line, position);
+            long seconds = parsed.isSupported(ChronoField.INSTANT_SECONDS)
+                    ? parsed.getLong(ChronoField.INSTANT_SECONDS)
+                    : LocalDateTime.from(parsed).atZone(zone).toEpochSecond();
+            lastPrefix = line.substring(0, position.getIndex());
+            lastSeconds = seconds;
+            return seconds;
+        } catch (DateTimeException e) {
+            return NONE;
+        }
+    }
+}
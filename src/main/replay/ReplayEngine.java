@@ -0,0 +1,369 @@
+package main.replay;
+
+import main.config.AlfaResultHandler;
+import main.config.BatchStats;
+import main.core.BytePrefilter;
+import main.core.CompiledFilterSet;
+import main.core.LineReader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs a filter set over log files after the fact, e.g. to see what a new filter would have matched over last
+ * week's logs. Files are only read: there is no AlfaConfig and no read position, so a live agent and its
+ * checkpoints are not touched.
+ * <p>
+ * Plain files are split into chunks of whole lines that are matched in parallel; .gz archives cannot be split and
+ * are one task each. Results are emitted from the calling thread in file order and line order, so the same input
+ * always gives the same output: AlfaResultHandler.onLogFiltered per match, then onBatchComplete per chunk with the
+ * file name as symbol. Masks of the filter set are applied as in the live agent.
+ * <p>
+ * A byte range keeps the lines that start inside it (uncompressed offsets for archives). A time range keeps the
+ * lines whose timestamp is inside it, to the second; a line without a timestamp (a stack trace) takes the last one
+ * before it, and is kept if there is none. Log files are written in time order, so in plain files a binary search
+ * first narrows the time range down to a byte range and the rest of the file is never read.
+ */
+public class ReplayEngine {
+
+    private static final long DEFAULT_CHUNK_BYTES = 16L * 1024 * 1024;
+    // the binary search for a time range stops at this distance
+    private static final long SEARCH_STOP_BYTES = 64 * 1024;
+    // lines a search probe reads while looking for a timestamp
+    private static final int PROBE_LINES = 100;
+    // matches of at most this many chunks per thread are held for in-order emission
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private static class Chunk {
+        final Path file;
+        final boolean archive;
+        final long start;
+        final long end;
+
+        Chunk(Path file, boolean archive, long start, long end) {
+            this.file = file;
+            this.archive = archive;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class ChunkResult {
+        final List<String> lines = new ArrayList<>();
+        final List<String> keywords = new ArrayList<>();
+        long linesRead;
+        long bytes;
+    }
+
+    private final AlfaResultHandler resultHandler;
+    private final CompiledFilterSet filters;
+
+    private Charset charset = StandardCharsets.UTF_8;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long chunkBytes = DEFAULT_CHUNK_BYTES;
+    private long fromByte = 0;
+    private long toByte = Long.MAX_VALUE;
+    // epoch seconds, [fromSecond, toSecond); unset when fromSecond is LineTimestamps.NONE
+    private long fromSecond = LineTimestamps.NONE;
+    private long toSecond = Long.MAX_VALUE;
+    private DateTimeFormatter timestampFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * @param filters Filters in the syntax of the live agent (regex, literal:, exclude:, all:, mask:, ...).
+     * @throws java.util.regex.PatternSyntaxException If one of the filters is not a valid regex.
+     */
+    public ReplayEngine(AlfaResultHandler resultHandler, Collection<String> filters) {
+        this.resultHandler = resultHandler;
+        this.filters = new CompiledFilterSet(CompiledFilterSet.inDefinedOrder(filters));
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @param parallelism Files and chunks matched at the same time. Defaults to the number of cores.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setChunkBytes(long chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Keeps the lines that start in [from, to) of every file.
+     */
+    public void setByteRange(long from, long to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid byte range: " + from + ".." + to);
+        }
+        this.fromByte = from;
+        this.toByte = to;
+    }
+
+    /**
+     * Keeps the lines with a timestamp in [from, to), compared to the second.
+     */
+    public void setTimeRange(Instant from, Instant to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Invalid time range: " + from + ".." + to);
+        }
+        this.fromSecond = from.getEpochSecond();
+        this.toSecond = to.getEpochSecond();
+    }
+
+    /**
+     * Format of the timestamp at the start of a line, "yyyy-MM-dd'T'HH:mm:ss" by default (the LoadGenerator and
+     * ISO format; a fraction after the seconds is ignored). Timestamps without a zone are read in 'zone'.
+     */
+    public void setTimestampFormat(DateTimeFormatter timestampFormat, ZoneId zone) {
+        this.timestampFormat = timestampFormat;
+        this.zone = zone;
+    }
+
+    /**
+     * Matches the files and emits the results through the AlfaResultHandler, from the calling thread.
+     * A file that cannot be read is reported to onError and skipped.
+     */
+    public ReplayResult replay(List<Path> files) throws InterruptedException {
+        long started = System.nanoTime();
+        BytePrefilter prefilter = BytePrefilter.create(filters, charset);
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                plan(file, chunks);
+            } catch (IOException e) {
+                resultHandler.onError(symbolOf(file), e);
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "AlfaReplay-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        int failed = 0;
+        long bytes = 0;
+        long matches = 0;
+        Map<String, Long> byKeyword = new TreeMap<>();
+        try {
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            for (Chunk chunk : chunks) {
+                while (submitted < chunks.size() && inFlight.size() < parallelism * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                    Chunk next = chunks.get(submitted++);
+                    inFlight.add(pool.submit(() -> scan(next, prefilter)));
+                }
+                ChunkResult result;
+                try {
+                    result = inFlight.poll().get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    Throwable cause = e.getCause();
+                    resultHandler.onError(symbolOf(chunk.file), cause instanceof Exception ? (Exception) cause : new IOException(cause));
+                    continue;
+                }
+                for (int i = 0; i < result.lines.size(); i++) {
+                    resultHandler.onLogFiltered(result.lines.get(i), result.keywords.get(i));
+                    byKeyword.merge(result.keywords.get(i), 1L, Long::sum);
+                }
+                resultHandler.onBatchComplete(result.lines, symbolOf(chunk.file), new BatchStats(result.linesRead,
+                        result.bytes, result.lines.size(), result.lines.size(), false));
+                bytes += result.bytes;
+                matches += result.lines.size();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ReplayResult(files.size(), chunks.size(), failed, bytes, matches, byKeyword, System.nanoTime() - started);
+    }
+
+    private static String symbolOf(Path file) {
+        return file.getFileName().toString();
+    }
+
+    private void plan(Path file, List<Chunk> chunks) throws IOException {
+        if (file.getFileName().toString().endsWith(".gz")) {
+            chunks.add(new Chunk(file, true, fromByte, toByte));
+            return;
+        }
+        long start = fromByte;
+        long end = Math.min(toByte, Files.size(file));
+        if (fromSecond != LineTimestamps.NONE && start < end) {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+                // a region without timestamps keeps the range wide on both ends
+                long narrowedStart = search(raf, start, end, fromSecond, true)[0];
+                long narrowedEnd = search(raf, narrowedStart, end, toSecond, false)[1];
+                if (narrowedEnd < end) {
+                    // lines between the probe and the next timestamp (a stack trace) still belong to the range
+                    narrowedEnd = nextTimestampedLine(raf, narrowedEnd, end);
+                }
+                start = narrowedStart;
+                end = narrowedEnd;
+            }
+        }
+        for (long chunkStart = start; chunkStart < end; chunkStart += chunkBytes) {
+            chunks.add(new Chunk(file, false, chunkStart, Math.min(end, chunkStart + chunkBytes)));
+        }
+    }
+
+    /**
+     * Binary search for the first line with a timestamp at or after 'second'.
+     * @param unknownIsAfter How to treat a probe that finds no timestamp.
+     * @return [lo, hi]: lines before lo are earlier, lines from hi on are not.
+     */
+    private long[] search(RandomAccessFile raf, long lo, long hi, long second, boolean unknownIsAfter) throws IOException {
+        LineTimestamps clock = new LineTimestamps(timestampFormat, zone);
+        LineReader reader = new LineReader(raf, charset);
+        try {
+            while (hi - lo > SEARCH_STOP_BYTES) {
+                long mid = lo + (hi - lo) / 2;
+                long found = firstTimestampAfter(reader, clock, mid);
+                if (found == LineTimestamps.NONE ? unknownIsAfter : found >= second) {
+                    hi = mid;
+                } else {
+                    lo = mid;
+                }
+            }
+        } finally {
+            reader.release();
+        }
+        return new long[]{lo, hi};
+    }
+
+    private static long firstTimestampAfter(LineReader reader, LineTimestamps clock, long position) throws IOException {
+        reader.seek(position);
+        reader.readLine(); // rest of the line 'position' falls into
+        String line;
+        for (int i = 0; i < PROBE_LINES && (line = reader.readLine()) != null; i++) {
+            long seconds = clock.secondsOf(line);
+            if (seconds != LineTimestamps.NONE) {
+                return seconds;
+            }
+        }
+        return LineTimestamps.NONE;
+    }
+
+    /**
+     * @return The start of the first line with a timestamp that starts after 'position', or 'limit' if there is none before it.
+     */
+    private long nextTimestampedLine(RandomAccessFile raf, long position, long limit) throws IOException {
+        LineTimestamps clock = new LineTimestamps(timestampFormat, zone);
+        LineReader reader = new LineReader(raf, charset);
+        try {
+            // the line that crosses 'position' is already inside the range
+            reader.seek(position - 1);
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null && reader.getLastLineStart() < limit) {
+                if (clock.secondsOf(line) != LineTimestamps.NONE) {
+                    return reader.getLastLineStart();
+                }
+            }
+            return limit;
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * @return The timestamp in effect at 'position': the last one in the SEARCH_STOP_BYTES before it, or NONE.
+     */
+    private static long lastTimestampBefore(LineReader reader, LineTimestamps clock, long position) throws IOException {
+        long from = Math.max(0, position - SEARCH_STOP_BYTES);
+        reader.seek(from);
+        if (from > 0) {
+            reader.readLine();
+        }
+        long seconds = LineTimestamps.NONE;
+        String line;
+        while ((line = reader.readLine()) != null && reader.getLastLineStart() < position) {
+            long lineSeconds = clock.secondsOf(line);
+            if (lineSeconds != LineTimestamps.NONE) {
+                seconds = lineSeconds;
+            }
+        }
+        return seconds;
+    }
+
+    private ChunkResult scan(Chunk chunk, BytePrefilter prefilter) throws IOException {
+        ChunkResult result = new ChunkResult();
+        LineTimestamps clock = fromSecond == LineTimestamps.NONE ? null : new LineTimestamps(timestampFormat, zone);
+        // the time of a line may come from a line before it, so every line is read when a time range is set
+        BytePrefilter skip = clock == null ? prefilter : null;
+        boolean masking = filters.hasMasks();
+        try (InputStream in = chunk.archive ? new GZIPInputStream(new FileInputStream(chunk.file.toFile()), 64 * 1024) : null;
+             RandomAccessFile raf = chunk.archive ? null : new RandomAccessFile(chunk.file.toFile(), "r")) {
+            LineReader reader = chunk.archive ? new LineReader(in, charset) : new LineReader(raf, charset);
+            try {
+                long second = LineTimestamps.NONE;
+                if (chunk.archive || chunk.start == 0) {
+                    reader.seek(0);
+                } else {
+                    if (clock != null) {
+                        second = lastTimestampBefore(reader, clock, chunk.start);
+                    }
+                    // the line that crosses the chunk start belongs to the previous chunk
+                    reader.seek(chunk.start - 1);
+                    reader.readLine();
+                }
+                long skippedLines = reader.getLineCount();
+                String line;
+                while ((line = skip != null ? reader.readCandidateLine(skip, chunk.end) : reader.readLine()) != null) {
+                    long lineStart = reader.getLastLineStart();
+                    if (lineStart >= chunk.end) {
+                        skippedLines++;
+                        break;
+                    }
+                    if (clock != null) {
+                        long lineSecond = clock.secondsOf(line);
+                        if (lineSecond != LineTimestamps.NONE) {
+                            second = lineSecond;
+                        }
+                    }
+                    if (lineStart < chunk.start
+                            || (second != LineTimestamps.NONE && (second < fromSecond || second >= toSecond))) {
+                        continue;
+                    }
+                    String keyword = filters.match(line);
+                    if (keyword != null) {
+                        result.lines.add(masking ? filters.mask(line) : line);
+                        result.keywords.add(keyword);
+                    }
+                }
+                result.linesRead = reader.getLineCount() - skippedLines;
+                result.bytes = chunk.archive ? Math.max(0, Math.min(reader.position(), chunk.end) - chunk.start)
+                        : chunk.end - chunk.start;
+            } finally {
+                reader.release();
+            }
+        }
+        return result;
+    }
+}
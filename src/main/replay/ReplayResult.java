@@ -0,0 +1,77 @@
+package main.replay;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Totals of one ReplayEngine.replay() call.
+ */
+public class ReplayResult {
+
+    private final int files;
+    private final int chunks;
+    private final int failedChunks;
+    private final long bytes;
+    private final long matches;
+    private final Map<String, Long> matchesByKeyword;
+    private final long elapsedNanos;
+
+    public ReplayResult(int files, int chunks, int failedChunks, long bytes, long matches,
+                        Map<String, Long> matchesByKeyword, long elapsedNanos) {
+        this.files = files;
+        this.chunks = chunks;
+        this.failedChunks = failedChunks;
+        this.bytes = bytes;
+        this.matches = matches;
+        this.matchesByKeyword = Collections.unmodifiableMap(matchesByKeyword);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return Chunks that could not be read; each was reported to AlfaResultHandler.onError.
+     */
+    public int getFailedChunks() {
+        return failedChunks;
+    }
+
+    /**
+     * @return Bytes scanned, uncompressed for archives.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMatches() {
+        return matches;
+    }
+
+    /**
+     * @return Match count per keyword (the filter string that matched), sorted by keyword.
+     */
+    public Map<String, Long> getMatchesByKeyword() {
+        return matchesByKeyword;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : bytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d file(s), %d chunk(s) (%d failed), %d bytes, %d match(es) in %d ms (%.1f MB/s) %s",
+                files, chunks, failedChunks, bytes, matches, elapsedNanos / 1_000_000, getMegabytesPerSecond(),
+                matchesByKeyword);
+    }
+}
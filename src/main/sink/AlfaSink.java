@@ -0,0 +1,18 @@
+package main.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of formatted match records, used through SinkResultHandler.
+ * The handler does the batching and buffering; a sink only encodes one batch and sends it.
+ */
+public interface AlfaSink extends Closeable {
+
+    /**
+     * Sends one batch. On failure the sink drops its connection, so the next call reconnects.
+     * @throws IOException If the batch could not be sent. The caller keeps it and retries later.
+     */
+    void write(List<String> records) throws IOException;
+}
@@ -0,0 +1,87 @@
+package main.sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends batches to a local file and rolls it when it exceeds maxFileBytes:
+ * name.log becomes name.log.1, name.log.1 becomes name.log.2 ... and the oldest file is deleted so that at most
+ * maxFiles files (the active one included) exist.
+ * With SinkCodec.GZIP the files are named name.log.gz, name.log.1.gz ... and can be read with zcat.
+ */
+public class RollingFileSink implements AlfaSink {
+
+    private final Path directory;
+    private final String baseName;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final SinkCodec codec;
+
+    private FileChannel channel;
+
+    public RollingFileSink(Path directory, String baseName, long maxFileBytes, int maxFiles, SinkCodec codec) {
+        if (maxFiles < 1 || maxFileBytes < 1) {
+            throw new IllegalArgumentException("maxFiles and maxFileBytes must be positive");
+        }
+        this.directory = directory;
+        this.baseName = baseName;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.codec = codec;
+    }
+
+    /**
+     * @param index 0 for the active file, n for the n-th rolled file.
+     */
+    public Path file(int index) {
+        String suffix = codec == SinkCodec.GZIP ? ".gz" : "";
+        return directory.resolve(index == 0 ? baseName + ".log" + suffix : baseName + ".log." + index + suffix);
+    }
+
+    @Override
+    public synchronized void write(List<String> records) throws IOException {
+        ByteBuffer payload = ByteBuffer.wrap(codec.encode(records));
+        try {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                channel = FileChannel.open(file(0), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+            if (channel.size() >= maxFileBytes) {
+                roll();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+        Files.deleteIfExists(file(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            if (Files.exists(file(i))) {
+                Files.move(file(i), file(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package main.sink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding of one batch.
+ * NONE writes one record per line. GZIP writes one gzip member per batch; concatenated members are a valid .gz file,
+ * and on sockets every member is prefixed with its length as a 4 byte big-endian int.
+ */
+public enum SinkCodec {
+    NONE,
+    GZIP;
+
+    public byte[] encode(List<String> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = this == GZIP ? new GZIPOutputStream(bytes) : bytes) {
+            for (String record : records) {
+                out.write(record.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The codec for a name in a config file ("none", "gzip").
+     */
+    public static SinkCodec of(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,200 @@
+package main.sink;
+
+import main.config.AlfaResultHandler;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlfaResultHandler that ships matches to an AlfaSink in batches.
+ * <ul>
+ *     <li>Matches of a task run are collected per worker thread and tagged with the path symbol in onBatchComplete,
+ *     so a record is "symbol TAB keyword TAB line". A run that fails after delivering matches ends in onError
+ *     instead; its matches are tagged with that symbol there, so they are neither lost nor given to the next run
+ *     of the thread.</li>
+ *     <li>A batch is sent once 'batchSize' records are pending or the oldest one is 'lingerMillis' old; a timer
+ *     thread sends lingering records of sources that stay quiet. With lingerMillis 0 every task run sends what
+ *     it found.</li>
+ *     <li>While the sink is down records stay pending and are retried at the next run (or timer tick). At most 'maxPendingRecords'
+ *     are kept; beyond that the oldest are dropped and counted (see getDroppedCount()).</li>
+ * </ul>
+ */
+public class SinkResultHandler implements AlfaResultHandler, Flushable, Closeable {
+
+    private final AlfaSink sink;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxPendingRecords;
+
+    // matches of the current task run of each worker thread: {line, keyword}
+    private final ThreadLocal<List<String[]>> runMatches = ThreadLocal.withInitial(ArrayList::new);
+
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private long oldestPendingAt;
+    private long sentCount;
+    private long droppedCount;
+    private boolean sinkDown;
+
+    // sends lingering records when no run completes; null with lingerMillis 0
+    private final ScheduledExecutorService lingerTimer;
+
+    public SinkResultHandler(AlfaSink sink) {
+        this(sink, 1000, 0, 100_000);
+    }
+
+    public SinkResultHandler(AlfaSink sink, int batchSize, long lingerMillis, int maxPendingRecords) {
+        if (batchSize < 1 || maxPendingRecords < batchSize) {
+            throw new IllegalArgumentException("batchSize must be positive and not larger than maxPendingRecords");
+        }
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.maxPendingRecords = maxPendingRecords;
+        if (lingerMillis > 0) {
+            lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "AlfaSink-linger");
+                t.setDaemon(true);
+                return t;
+            });
+            lingerTimer.scheduleWithFixedDelay(this::sendLingering, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        } else {
+            lingerTimer = null;
+        }
+    }
+
+    @Override
+    public void onLogFiltered(String logLine, String keyword) {
+        runMatches.get().add(new String[]{logLine, keyword});
+    }
+
+    @Override
+    public void onBatchComplete(List<String> filteredLines, String symbol) {
+        List<String[]> matches = runMatches.get();
+        synchronized (this) {
+            enqueue(symbol, matches);
+            if (pending.size() >= batchSize || lingered()) {
+                send();
+            }
+        }
+        matches.clear();
+    }
+
+    /**
+     * Queues the matches the failed run delivered before the error, then reports the error as the
+     * default handler does.
+     */
+    @Override
+    public void onError(String pathSymbol, Exception e) {
+        List<String[]> matches = runMatches.get();
+        if (!matches.isEmpty()) {
+            synchronized (this) {
+                enqueue(pathSymbol, matches);
+            }
+            matches.clear();
+        }
+        AlfaResultHandler.super.onError(pathSymbol, e);
+    }
+
+    // adds records to pending, dropping the oldest beyond maxPendingRecords
+    private void enqueue(String symbol, List<String[]> matches) {
+        for (String[] match : matches) {
+            if (pending.isEmpty()) {
+                oldestPendingAt = System.nanoTime();
+            }
+            pending.addLast(format(symbol, match[1], match[0]));
+        }
+        while (pending.size() > maxPendingRecords) {
+            pending.removeFirst();
+            droppedCount++;
+        }
+    }
+
+    private boolean lingered() {
+        return !pending.isEmpty() && System.nanoTime() - oldestPendingAt >= lingerMillis * 1_000_000;
+    }
+
+    private synchronized void sendLingering() {
+        if (lingered()) {
+            send();
+        }
+    }
+
+    /**
+     * Formats one record. Override to change the layout.
+     */
+    protected String format(String symbol, String keyword, String line) {
+        return symbol + '\t' + keyword + '\t' + line;
+    }
+
+    /**
+     * Sends every pending record. Matches of a task run that has not completed yet are not included.
+     */
+    @Override
+    public synchronized void flush() {
+        send();
+    }
+
+    // sends pending records in batches until they are all sent or the sink fails
+    private void send() {
+        while (!pending.isEmpty()) {
+            List<String> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (String record : pending) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                batch.add(record);
+            }
+            try {
+                sink.write(batch);
+            } catch (IOException e) {
+                if (!sinkDown) {
+                    sinkDown = true;
+                    System.err.println("[AlfaAgent] Sink unavailable, keeping up to " + maxPendingRecords + " records: " + e.getMessage());
+                }
+                return;
+            }
+            if (sinkDown) {
+                sinkDown = false;
+                System.out.println("[AlfaAgent] Sink recovered.");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                pending.removeFirst();
+            }
+            sentCount += batch.size();
+            oldestPendingAt = System.nanoTime();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Stops the linger timer, sends what is pending (one attempt) and closes the sink.
+     */
+    @Override
+    public void close() throws IOException {
+        if (lingerTimer != null) {
+            lingerTimer.shutdown();
+        }
+        synchronized (this) {
+            send();
+            sink.close();
+        }
+    }
+}
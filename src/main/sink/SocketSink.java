@@ -0,0 +1,89 @@
+package main.sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Base of the socket sinks. Connects lazily, drops the connection on a failed write and
+ * waits an exponentially growing backoff before the next connect attempt.
+ * Delivery is at least once: a batch that failed half way is sent again in full.
+ */
+public abstract class SocketSink implements AlfaSink {
+
+    private final SinkCodec codec;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private SocketChannel channel;
+    private long backoffMillis;
+    // System.nanoTime() before which no connect is attempted
+    private long nextConnectAt;
+
+    protected SocketSink(SinkCodec codec, long initialBackoffMillis, long maxBackoffMillis) {
+        this.codec = codec;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Opens a new blocking connection.
+     */
+    protected abstract SocketChannel connect() throws IOException;
+
+    @Override
+    public synchronized void write(List<String> records) throws IOException {
+        byte[] payload = codec.encode(records);
+        ByteBuffer frame;
+        if (codec == SinkCodec.NONE) {
+            frame = ByteBuffer.wrap(payload);
+        } else {
+            frame = ByteBuffer.allocate(4 + payload.length);
+            frame.putInt(payload.length).put(payload).flip();
+        }
+        SocketChannel ch = channel();
+        try {
+            while (frame.hasRemaining()) {
+                ch.write(frame);
+            }
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private SocketChannel channel() throws IOException {
+        if (channel != null) {
+            return channel;
+        }
+        long now = System.nanoTime();
+        if (now - nextConnectAt < 0) {
+            throw new IOException("Waiting " + backoffMillis + " ms before reconnecting");
+        }
+        try {
+            channel = connect();
+            backoffMillis = 0;
+            return channel;
+        } catch (IOException e) {
+            backoffMillis = backoffMillis == 0 ? initialBackoffMillis : Math.min(backoffMillis * 2, maxBackoffMillis);
+            nextConnectAt = now + backoffMillis * 1_000_000;
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+}
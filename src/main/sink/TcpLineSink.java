@@ -0,0 +1,40 @@
+package main.sink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Sends records to a TCP endpoint, one per line (or length-prefixed gzip frames with SinkCodec.GZIP).
+ */
+public class TcpLineSink extends SocketSink {
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMillis;
+
+    public TcpLineSink(String host, int port, SinkCodec codec) {
+        this(host, port, codec, 3000, 100, 30_000);
+    }
+
+    public TcpLineSink(String host, int port, SinkCodec codec, int connectTimeoutMillis,
+                       long initialBackoffMillis, long maxBackoffMillis) {
+        super(codec, initialBackoffMillis, maxBackoffMillis);
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    @Override
+    protected SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            channel.socket().setTcpNoDelay(true);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package main.sink;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Sends records to a local collector over a Unix domain socket (Java 16+).
+ */
+public class UnixSocketSink extends SocketSink {
+
+    private final Path socketPath;
+
+    public UnixSocketSink(Path socketPath, SinkCodec codec) {
+        this(socketPath, codec, 100, 30_000);
+    }
+
+    public UnixSocketSink(Path socketPath, SinkCodec codec, long initialBackoffMillis, long maxBackoffMillis) {
+        super(codec, initialBackoffMillis, maxBackoffMillis);
+        this.socketPath = socketPath;
+    }
+
+    @Override
+    protected SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package test.bench;
+
+import main.core.CompiledFilterSet;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Case-insensitive matching of decoded lines: java.util.regex with (?i) and (?iu) against the
+ * "literal-ci:" filters of CompiledFilterSet. Lines are a mix of ASCII and Korean text.
+ * The regexes are the trimmed "(?i)(FATAL|ERROR|DENIED)": with the leading ".*" of the shipped example
+ * find() is quadratic in the line length and far slower than any of these.
+ *   java -cp out test.bench.CaseFoldBenchmark
+ */
+public class CaseFoldBenchmark {
+
+    private static final int LINES = 100_000;
+    private static final int ROUNDS = 5;
+    private static final String[] KEYWORDS = {"FATAL", "ERROR", "DENIED"};
+
+    private interface Matcher {
+        boolean matches(String line);
+    }
+
+    public static void main(String[] args) {
+        List<String> lines = generate();
+        Pattern ascii = Pattern.compile("(?i)(FATAL|ERROR|DENIED)");
+        Pattern unicode = Pattern.compile("(?iu)(FATAL|ERROR|DENIED)");
+        List<String> literalFilters = new ArrayList<>();
+        for (String keyword : KEYWORDS) {
+            literalFilters.add("literal-ci:" + keyword);
+        }
+        CompiledFilterSet literals = new CompiledFilterSet(literalFilters);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("round " + (round + 1));
+            long expected = timed("Pattern (?i)       ", lines, line -> ascii.matcher(line).find());
+            check(expected, timed("Pattern (?iu)      ", lines, line -> unicode.matcher(line).find()));
+            check(expected, timed("literal-ci filters ", lines, line -> literals.match(line) != null));
+        }
+    }
+
+    private static long timed(String label, List<String> lines, Matcher matcher) {
+        long start = System.nanoTime();
+        long matches = 0;
+        for (String line : lines) {
+            if (matcher.matches(line)) {
+                matches++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %s %10.0f lines/s (%d matches)%n", label, lines.size() / seconds, matches);
+        return matches;
+    }
+
+    private static void check(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("match counts differ: " + expected + " vs " + actual);
+        }
+    }
+
+    private static List<String> generate() {
+        Random random = new Random(7);
+        String[] words = {"request", "served", "user", "session", "cache", "요청", "처리", "완료", "사용자", "세션"};
+        String[] levels = {"INFO", "DEBUG", "WARN", "info", "Error", "fatal", "Denied"};
+        List<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            StringBuilder sb = new StringBuilder("2024-05-01 12:00:00 [");
+            // about 2% of the lines carry a keyword in some case
+            sb.append(random.nextInt(50) == 0 ? levels[4 + random.nextInt(3)] : levels[random.nextInt(4)]).append("] ");
+            int n = 8 + random.nextInt(16);
+            for (int w = 0; w < n; w++) {
+                sb.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            sb.append("id=").append(random.nextInt(100_000));
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,119 @@
+package test.bench;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.BatchHandler;
+import main.core.ThreadHandler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Multi-file fairness benchmark for the per-run read budget.
+ * One "hot" file suddenly grows by HOT_FILE_MB while probe lines are appended to the other files;
+ * the detection latency of the probes (append -> onLogFiltered) is reported with and without a budget.
+ * Run: java -cp out test.bench.FairnessBenchmark
+ */
+public class FairnessBenchmark {
+
+    private static final int SMALL_FILES = 9;
+    private static final int HOT_FILE_MB = 128;
+    private static final int POOL_SIZE = 1;
+    private static final int PROBE_SECONDS = 10;
+
+    static class LatencyHandler implements AlfaResultHandler {
+        final List<Long> latenciesNanos = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onLogFiltered(String logLine, String keyword) {
+            int idx = logLine.lastIndexOf(' ');
+            latenciesNanos.add(System.nanoTime() - Long.parseLong(logLine.substring(idx + 1)));
+        }
+
+        @Override
+        public void onBatchComplete(List<String> filteredLines, String symbol) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        run("no budget", 0);
+        run("1 MB budget", 1024 * 1024);
+    }
+
+    private static void run(String label, long maxBytesPerRun) throws Exception {
+        Path dir = Files.createTempDirectory("alfa-fairness-");
+        Map<String, String> paths = new HashMap<>();
+        Map<String, Set<String>> filters = new HashMap<>();
+        for (int i = 0; i <= SMALL_FILES; i++) {
+            Path file = dir.resolve("app-" + i + ".log");
+            Files.createFile(file);
+            paths.put("APP_" + i, file.toString());
+            // the hot file uses the expensive pattern from Main so that catching up takes a while
+            filters.put("APP_" + i, Set.of(i == 0 ? "(?i).*(FATAL|ERROR|DENIED).*" : "PROBE"));
+        }
+
+        LatencyHandler handler = new LatencyHandler();
+        AlfaConfig config = new AlfaConfig(handler, paths, filters, 1, POOL_SIZE, null, StandardCharsets.UTF_8, false);
+        config.setMaxBytesPerRun(maxBytesPerRun);
+        ThreadHandler threadHandler = new ThreadHandler(config);
+        threadHandler.initializeTasks();
+        BatchHandler batchHandler = new BatchHandler(threadHandler, config);
+        batchHandler.startBatchProcessing();
+
+        int[] probes = new int[1];
+        Thread prober = new Thread(() -> {
+            long end = System.nanoTime() + PROBE_SECONDS * 1_000_000_000L;
+            try {
+                while (System.nanoTime() < end) {
+                    for (int i = 1; i <= SMALL_FILES; i++) {
+                        Files.writeString(Path.of(paths.get("APP_" + i)), "[ERROR] PROBE " + System.nanoTime() + "\n",
+                                StandardOpenOption.APPEND);
+                        probes[0]++;
+                    }
+                    Thread.sleep(200);
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        prober.start();
+
+        // sudden growth of the hot file
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(paths.get("APP_0")), StandardOpenOption.APPEND)) {
+            String filler = "[DEBUG] " + "x".repeat(120);
+            long bytes = 0;
+            while (bytes < HOT_FILE_MB * 1024L * 1024L) {
+                writer.write(filler);
+                writer.newLine();
+                bytes += filler.length() + 1;
+            }
+        }
+
+        prober.join();
+        Thread.sleep(2000);
+        batchHandler.stopBatchProcessing();
+
+        List<Long> sorted = new ArrayList<>(handler.latenciesNanos);
+        Collections.sort(sorted);
+        System.out.printf("%-12s probes=%d detected=%d p50=%dms p99=%dms max=%dms%n", label, probes[0], sorted.size(),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+
+        for (String p : paths.values()) {
+            Files.deleteIfExists(Path.of(p));
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static long percentile(List<Long> sorted, double q) {
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        int idx = (int) Math.min(sorted.size() - 1, Math.ceil(q * sorted.size()) - 1);
+        return sorted.get(Math.max(idx, 0)) / 1_000_000;
+    }
+}
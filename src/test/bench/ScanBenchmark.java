@@ -0,0 +1,131 @@
+package test.bench;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.ByteScanners;
+import main.core.FilterHandler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of one full pass over a log file: the previous FilterHandler path
+ * (BufferedReader.readLine + HashSet of Pattern.find) against the current one (LineReader, ByteScanner prefilter,
+ * analyzed patterns). Compare the scanners by running it twice, with src/vector compiled into out (see Readme 4.1):
+ *   java --add-modules jdk.incubator.vector -cp out test.bench.ScanBenchmark
+ *   java -Dalfa.scanner=scalar -cp out test.bench.ScanBenchmark
+ * and the read paths with -Dalfa.readAheadKB=1024 (background read-ahead) plus -Dalfa.directIo=true (O_DIRECT).
+ * Without direct I/O the file is in the page cache after the first pass, so read-ahead mostly shows its copy cost.
+ * -Dalfa.pipelineWorkers=N matches the file on N threads (ChunkPipeline).
+ */
+public class ScanBenchmark {
+
+    private static final int FILE_MB = 64;
+    private static final int ROUNDS = 5;
+    private static final Set<String> FILTERS = Set.of("(?i).*(FATAL|ERROR|DENIED).*");
+    private static final int READ_AHEAD_KB = Integer.getInteger("alfa.readAheadKB", 0);
+    private static final boolean DIRECT_IO = Boolean.getBoolean("alfa.directIo");
+    private static final int PIPELINE_WORKERS = Integer.getInteger("alfa.pipelineWorkers", 0);
+
+    static class CountingHandler implements AlfaResultHandler {
+        long matches;
+
+        @Override
+        public void onLogFiltered(String logLine, String keyword) {
+            matches++;
+        }
+
+        @Override
+        public void onBatchComplete(List<String> filteredLines, String symbol) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Files.createTempFile("alfa-scan-", ".log");
+        try {
+            writeLog(file);
+            System.out.println("scanner: " + ByteScanners.get().name() + ", file: " + FILE_MB + " MB"
+                    + ", read-ahead: " + READ_AHEAD_KB + " KB" + (DIRECT_IO ? " direct" : "")
+                    + ", pipeline workers: " + PIPELINE_WORKERS);
+            // the legacy path is slow enough that one pass is representative
+            long legacyMatches = timed("legacy readLine+Pattern", () -> legacy(file));
+            for (int round = 0; round < ROUNDS; round++) {
+                long currentMatches = timed("FilterHandler.doFilter ", () -> current(file));
+                if (legacyMatches != currentMatches) {
+                    throw new IllegalStateException("match counts differ: " + legacyMatches + " vs " + currentMatches);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Pass {
+        long run() throws IOException;
+    }
+
+    private static long timed(String label, Pass pass) throws IOException {
+        long start = System.nanoTime();
+        long matches = pass.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %s %8.1f MB/s (%d matches)%n", label, FILE_MB / seconds, matches);
+        return matches;
+    }
+
+    private static long legacy(Path file) throws IOException {
+        Set<Pattern> patterns = new HashSet<>();
+        for (String regex : FILTERS) {
+            patterns.add(Pattern.compile(regex));
+        }
+        long matches = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                for (Pattern pattern : patterns) {
+                    if (pattern.matcher(line).find()) {
+                        matches++;
+                        break;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static long current(Path file) throws IOException {
+        CountingHandler handler = new CountingHandler();
+        AlfaConfig config = new AlfaConfig(handler, Map.of("BENCH", file.toString()), Map.of("BENCH", FILTERS),
+                null, null, null, StandardCharsets.UTF_8, false);
+        config.setReadAheadBytes(READ_AHEAD_KB * 1024);
+        config.setDirectIo(DIRECT_IO);
+        config.setPipelineWorkers("BENCH", PIPELINE_WORKERS);
+        FilterHandler filterHandler = new FilterHandler(config, "BENCH");
+        try {
+            filterHandler.doFilter();
+        } finally {
+            filterHandler.close();
+        }
+        return handler.matches;
+    }
+
+    private static void writeLog(Path file) throws IOException {
+        Random random = new Random(7);
+        String[] levels = {"INFO", "DEBUG", "WARN"};
+        String[] errors = {"ERROR", "fatal", "Denied"};
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long written = 0;
+            while (written < FILE_MB * 1024L * 1024L) {
+                String level = random.nextInt(100) == 0 ? errors[random.nextInt(3)] : levels[random.nextInt(3)];
+                String line = "2025-01-01T10:00:00.123 [" + level + "] request handled id=" + random.nextInt(1_000_000)
+                        + " user=u" + random.nextInt(1000) + " path=/api/v1/orders latency=" + random.nextInt(500) + "ms";
+                writer.write(line);
+                writer.newLine();
+                written += line.length() + 1;
+            }
+        }
+    }
+}
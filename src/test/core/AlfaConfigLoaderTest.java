@@ -0,0 +1,133 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaConfigLoader;
+import main.config.Lane;
+import main.config.PrintResultHandler;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlfaConfigLoaderTest {
+
+    @Test
+    @DisplayName("Config Loader: Should build sources, ordered filters and options from properties")
+    void fromProperties_ShouldBuildConfig() {
+        Properties props = new Properties();
+        props.setProperty("alfa.batchTime", "5");
+        props.setProperty("alfa.threadPoolSize", "2");
+        props.setProperty("alfa.encoding", "UTF-8");
+        props.setProperty("alfa.notifier.enabled", "false");
+        props.setProperty("alfa.maxBytesPerRun", "1024");
+        props.setProperty("source.APP.path", "/var/log/app.log");
+        props.setProperty("source.APP.filter.2", "DENIED");
+        props.setProperty("source.APP.filter.10", "FATAL");
+        props.setProperty("source.APP.filter.1", "(?i)ERROR");
+        props.setProperty("source.APP.sampling", "reservoir:50");
+        props.setProperty("source.LEGACY.path", "/var/log/legacy.log");
+        props.setProperty("source.LEGACY.encoding", "EUC-KR");
+        props.setProperty("source.WEB.path", "/var/log/web.log");
+        props.setProperty("source.WEB.encoding", "auto");
+        props.setProperty("source.APP.lane", "critical");
+        props.setProperty("source.WEB.lane", "bulk");
+        props.setProperty("alfa.lane.critical.sloMillis", "500");
+        props.setProperty("source.WEB.pipeline.workers", "4");
+        props.setProperty("alfa.control.port", "9465");
+        props.setProperty("alfa.control.token", "s3cret");
+        props.setProperty("alfa.governor.readKBPerSecond", "2048");
+        props.setProperty("alfa.governor.cpuPercent", "10");
+        props.setProperty("alfa.governor.heapMB", "32");
+
+        AlfaConfig config = AlfaConfigLoader.fromProperties(props);
+
+        assertEquals("/var/log/app.log", config.getAbsPaths().get("APP"));
+        assertEquals(Arrays.asList("(?i)ERROR", "DENIED", "FATAL"), new ArrayList<>(config.getFilterOpts().get("APP")),
+                "Filters must keep the numeric order of their keys.");
+        assertEquals(5, config.getBatchTime());
+        assertEquals(2, config.getThreadPoolSize());
+        assertEquals(StandardCharsets.UTF_8, config.getFileEncoding());
+        assertFalse(config.isNotifierEnabled());
+        assertFalse(config.isVerifyPathsOnStart(), "The daemon must not block on path verification by default.");
+        assertEquals(1024L, config.getMaxBytesPerRun());
+        assertNotNull(config.getSamplingPolicy("APP"));
+        assertEquals(Charset.forName("EUC-KR"), config.getFileEncoding("LEGACY"));
+        assertEquals(StandardCharsets.UTF_8, config.getFileEncoding("APP"));
+        assertTrue(config.isDetectEncoding("WEB"));
+        assertFalse(config.isDetectEncoding("APP"));
+        assertEquals(Lane.CRITICAL, config.getLane("APP"));
+        assertEquals(Lane.BULK, config.getLane("WEB"));
+        assertEquals(Lane.NORMAL, config.getLane("LEGACY"));
+        assertEquals(500L, config.getLaneSloMillis(Lane.CRITICAL));
+        assertEquals(4, config.getPipelineWorkers("WEB"));
+        assertEquals(0, config.getPipelineWorkers("APP"));
+        assertEquals(9465, config.getControlPort());
+        assertEquals("s3cret", config.getControlToken());
+        assertEquals(2048L * 1024, config.getMaxReadBytesPerSecond());
+        assertEquals(10, config.getCpuPercent());
+        assertEquals(32L * 1024 * 1024, config.getHeapBudgetBytes());
+        assertEquals(0, config.getShedEveryNthLine());
+        assertTrue(config.getResultHandler() instanceof PrintResultHandler);
+    }
+
+    @Test
+    @DisplayName("Config Loader: Should reject unknown keys and filters without a source")
+    void fromProperties_InvalidConfig_ShouldThrow() {
+        Properties unknown = new Properties();
+        unknown.setProperty("source.APP.path", "/var/log/app.log");
+        unknown.setProperty("source.APP.filtre.1", "ERROR");
+        assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.fromProperties(unknown));
+
+        Properties orphan = new Properties();
+        orphan.setProperty("source.APP.path", "/var/log/app.log");
+        orphan.setProperty("source.SYS.filter.1", "ERROR");
+        assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.fromProperties(orphan));
+
+        assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.fromProperties(new Properties()));
+
+        Properties noToken = new Properties();
+        noToken.setProperty("source.APP.path", "/var/log/app.log");
+        noToken.setProperty("alfa.control.port", "9465");
+        assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.fromProperties(noToken),
+                "The control endpoint must not open without a token.");
+
+        Properties badEncoding = new Properties();
+        badEncoding.setProperty("source.APP.path", "/var/log/app.log");
+        badEncoding.setProperty("source.APP.encoding", "UTF-9");
+        assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.fromProperties(badEncoding));
+    }
+
+    @Test
+    @DisplayName("Config Loader: Filters in a file should keep their backslashes, other values should follow Properties escapes")
+    void load_ShouldReadFilterValuesAsWritten() throws IOException {
+        Path file = Files.createTempFile("alfa-config", ".properties");
+        try {
+            Files.writeString(file, String.join("\n",
+                    "alfa.checkpoint.file=C:\\\\alfa\\\\positions",
+                    "source.APP.path=/var/log/app.log",
+                    "# source.APP.filter.9=commented out",
+                    "source.APP.filter.1=\\bERROR\\b",
+                    "  source.APP.filter.2 : (?i)disk\\s+full\\\\",
+                    "source.APP.filter.3 \\d{3}",
+                    "source.APP.filter.4=literal:a\\tb"), StandardCharsets.UTF_8);
+
+            AlfaConfig config = AlfaConfigLoader.load(file);
+
+            assertEquals(List.of("\\bERROR\\b", "(?i)disk\\s+full\\\\", "\\d{3}", "literal:a\\tb"),
+                    new ArrayList<>(config.getFilterOpts().get("APP")));
+            assertEquals("C:\\alfa\\positions", config.getCheckpointFile());
+
+            Files.writeString(file, "source.APP.path=/var/log/app.log\nsource.APP.filter.1=ERROR|\\\nFATAL\n");
+            assertThrows(IllegalArgumentException.class, () -> AlfaConfigLoader.load(file),
+                    "A filter continued on the next line must be rejected rather than read half.");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
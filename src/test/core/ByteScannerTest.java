@@ -0,0 +1,68 @@
+package test.core;
+
+import main.core.ByteScanner;
+import main.core.ByteScanners;
+import main.core.ScalarByteScanner;
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteScannerTest {
+
+    private static int naiveIndexOfAny(ByteBuffer buf, int from, int to, byte[] set) {
+        for (int i = from; i < to; i++) {
+            for (byte b : set) {
+                if (buf.get(i) == b) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int naiveCount(ByteBuffer buf, int from, int to, byte b) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Both scanners must agree with a byte-by-byte search on heap and direct buffers, at every alignment.
+     */
+    @Test
+    @DisplayName("Byte Scanner: Scalar and selected scanner should match a naive search")
+    void scanners_ShouldAgreeWithNaiveSearch() {
+        Random random = new Random(42);
+        ByteScanner[] scanners = {new ScalarByteScanner(), ByteScanners.get()};
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            // sparse hits and high bytes that could confuse the SWAR borrow logic
+            data[i] = random.nextInt(50) == 0 ? (byte) '\n' : (byte) (0x80 + random.nextInt(0x7F));
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data);
+        ByteBuffer[] buffers = {ByteBuffer.wrap(data), direct};
+        byte[] set = {(byte) '\n', (byte) 0xA1, (byte) 'E'};
+
+        for (ByteScanner scanner : scanners) {
+            for (ByteBuffer buf : buffers) {
+                for (int from = 0; from < 70; from++) {
+                    for (int to = from; to < data.length; to += 37) {
+                        assertEquals(naiveIndexOfAny(buf, from, to, new byte[]{'\n'}), scanner.indexOf(buf, from, to, (byte) '\n'),
+                                scanner.name() + " indexOf from=" + from + " to=" + to);
+                        assertEquals(naiveIndexOfAny(buf, from, to, set), scanner.indexOfAny(buf, from, to, set),
+                                scanner.name() + " indexOfAny from=" + from + " to=" + to);
+                        assertEquals(naiveCount(buf, from, to, (byte) '\n'), scanner.count(buf, from, to, (byte) '\n'),
+                                scanner.name() + " count from=" + from + " to=" + to);
+                    }
+                }
+            }
+        }
+    }
+}
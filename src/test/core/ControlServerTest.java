@@ -0,0 +1,229 @@
+package test.core;
+
+import main.agent.AlfaAgent;
+import main.agent.ControlServer;
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ControlServerTest {
+
+    private static final String TOKEN = "test-token";
+
+    private Path tempDir;
+    private Path logFile;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private int port;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("alfa-control");
+        logFile = tempDir.resolve("app.log");
+        Files.writeString(logFile, "[ERROR] first\n");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Control: Pause, resume, filter updates and checkpoints should work over HTTP")
+    void controlServer_ShouldOperateTheAgent() throws Exception {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        AlfaResultHandler handler = new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                delivered.add(logLine);
+            }
+
+            @Override
+            public void onBatchComplete(List<String> filteredLines, String symbol) {
+            }
+        };
+        AlfaConfig config = new AlfaConfig(handler, Map.of("APP", logFile.toString()), Map.of("APP", Set.of("ERROR")),
+                1, 2, null, null, false);
+        config.setCheckpointFile(tempDir.resolve("positions").toString());
+        config.setControlToken(TOKEN);
+        AlfaAgent agent = new AlfaAgent(config);
+        agent.start();
+        try (ControlServer server = new ControlServer(agent, 0)) {
+            server.start();
+            port = server.getPort();
+            waitFor(() -> delivered.size() == 1);
+
+            HttpResponse<String> status = send("GET", "/status", null);
+            assertEquals(200, status.statusCode());
+            assertTrue(status.body().contains("\"running\":true"), status.body());
+            assertTrue(send("GET", "/metrics?symbol=APP", null).body().contains("\"matches\":1"));
+            assertEquals(404, send("GET", "/metrics?symbol=NOPE", null).statusCode());
+            assertEquals(405, send("GET", "/pause", null).statusCode());
+
+            // paused: appended lines wait until the resume
+            assertTrue(send("POST", "/pause?symbol=APP", null).body().contains("[\"APP\"]"));
+            Thread.sleep(300); // a run that started before the pause ends
+            Files.writeString(logFile, "[ERROR] while paused\n", StandardOpenOption.APPEND);
+            Thread.sleep(2500);
+            assertEquals(1, delivered.size());
+            assertEquals(200, send("POST", "/resume?symbol=APP", null).statusCode());
+            waitFor(() -> delivered.size() == 2);
+
+            // an invalid filter is rejected and changes nothing
+            assertEquals(400, send("POST", "/filters?symbol=APP", "WARN\n([unclosed\n").statusCode());
+            assertEquals(200, send("POST", "/filters?symbol=APP", "WARN\nliteral:timeout\n").statusCode());
+            assertEquals("WARN\nliteral:timeout", send("GET", "/filters?symbol=APP", null).body().strip());
+            Files.writeString(logFile, "[ERROR] old filter\n[WARN] new filter\n", StandardOpenOption.APPEND);
+            waitFor(() -> delivered.size() == 3);
+            assertEquals("[WARN] new filter", delivered.get(2));
+
+            assertEquals(202, send("POST", "/checkpoint", null).statusCode());
+            waitFor(() -> checkpointState().contains("\"saved\""));
+            assertTrue(Files.readString(tempDir.resolve("positions")).contains("APP"));
+        } finally {
+            agent.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Control: A hanging flush must not block requests or checkpoint later deliveries")
+    void checkpoint_HangingFlush_ShouldAnswerAtOnceAndCoverOnlyFlushedLines() throws Exception {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        CountDownLatch flushEntered = new CountDownLatch(1);
+        CountDownLatch releaseFlush = new CountDownLatch(1);
+        class BlockingHandler implements AlfaResultHandler, Flushable {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                delivered.add(logLine);
+            }
+
+            @Override
+            public void flush() {
+                flushEntered.countDown();
+                try {
+                    releaseFlush.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        AlfaConfig config = new AlfaConfig(new BlockingHandler(), Map.of("APP", logFile.toString()),
+                Map.of("APP", Set.of("ERROR")), 1, 2, null, null, false);
+        Path positions = tempDir.resolve("positions");
+        config.setCheckpointFile(positions.toString());
+        config.setControlToken(TOKEN);
+        AlfaAgent agent = new AlfaAgent(config);
+        agent.start();
+        try (ControlServer server = new ControlServer(agent, 0)) {
+            server.start();
+            port = server.getPort();
+            waitFor(() -> delivered.size() == 1);
+            Thread.sleep(200); // the run completes its batch
+            long flushedUpTo = Files.size(logFile);
+
+            long start = System.nanoTime();
+            assertEquals(202, send("POST", "/checkpoint", null).statusCode());
+            assertTrue(flushEntered.await(5, TimeUnit.SECONDS));
+            assertTrue(checkpointState().contains("\"running\""));
+            HttpResponse<String> status = send("GET", "/status", null);
+            assertEquals(200, status.statusCode());
+            assertTrue(status.body().contains("\"checkpoint\":\"running\""), status.body());
+            assertTrue(System.nanoTime() - start < 1_000_000_000L, "Requests must not wait for the flush.");
+
+            // delivered while the flush runs: not covered by this checkpoint
+            Files.writeString(logFile, "[ERROR] during flush\n", StandardOpenOption.APPEND);
+            waitFor(() -> delivered.size() == 2);
+            releaseFlush.countDown();
+            waitFor(() -> checkpointState().contains("\"saved\""));
+            assertEquals("APP=" + flushedUpTo, Files.readString(positions).strip());
+        } finally {
+            releaseFlush.countDown();
+            agent.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Control: Requests without the token, from web pages or for other hosts should be refused")
+    void controlServer_UntrustedRequests_ShouldBeRefused() throws Exception {
+        AlfaConfig config = new AlfaConfig(new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+            }
+        }, Map.of("APP", logFile.toString()), Map.of("APP", Set.of("ERROR")), 60, 1, null, null, false);
+        AlfaAgent agent = new AlfaAgent(config);
+        assertThrows(IllegalStateException.class, () -> new ControlServer(agent, 0), "No token, no endpoint.");
+
+        config.setControlToken(TOKEN);
+        try (ControlServer server = new ControlServer(agent, 0)) {
+            server.start();
+            port = server.getPort();
+            assertEquals(401, send("POST", "/pause", null, null).statusCode());
+            assertEquals(401, send("POST", "/pause", null, "Bearer wrong").statusCode());
+            HttpRequest fromPage = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/pause"))
+                    .header("Authorization", "Bearer " + TOKEN).header("Origin", "http://evil.example")
+                    .POST(HttpRequest.BodyPublishers.ofString("x")).build();
+            assertEquals(403, client.send(fromPage, HttpResponse.BodyHandlers.ofString()).statusCode());
+            // DNS rebinding: the browser sends the attacker's host name
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.getOutputStream().write(("POST /pause HTTP/1.1\r\nHost: evil.example:" + port
+                        + "\r\nAuthorization: Bearer " + TOKEN + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+                assertTrue(statusLine.contains(" 403 "), statusLine);
+            }
+            assertTrue(config.getPausedSymbols().isEmpty(), "No refused request may change the agent.");
+            assertEquals(200, send("GET", "/status", null).statusCode());
+        }
+    }
+
+    private String checkpointState() {
+        try {
+            return send("GET", "/checkpoint", null).body();
+        } catch (Exception e) {
+            return e.toString();
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        return send(method, path, body, "Bearer " + TOKEN);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String authorization) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package test.core;
 
 import main.config.AlfaConfig;
 import main.config.AlfaResultHandler;
+import main.config.BatchStats;
+import main.config.SamplingPolicy;
 import main.core.FilterHandler;
+import main.core.SourceRegistry;
 import org.junit.jupiter.api.*;
 
 import java.io.IOException;
@@ -10,6 +13,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 
@@ -20,15 +24,20 @@ public class FilterHandlerTest {
     private AlfaConfig testConfig;
     private FilterHandler filterHandler;
     private MockResultHandler mockResultHandler; // mock handler for result capture
+    private Path spillDir; // spill queue directory of the test that uses one
 
     // Mock implementation of AlfaResultHandler to capture test results
     static class MockResultHandler implements AlfaResultHandler {
         final List<String> filteredLogs = Collections.synchronizedList(new ArrayList<>());
         final List<String> keywordsFound = Collections.synchronizedList(new ArrayList<>());
         final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean failing; // simulates an unreachable sink
 
         @Override
         public void onLogFiltered(String logLine, String keyword) {
+            if (failing) {
+                throw new IllegalStateException("sink unreachable");
+            }
             filteredLogs.add(logLine);
             keywordsFound.add(keyword);
         }
@@ -42,6 +51,7 @@ public class FilterHandlerTest {
             filteredLogs.clear();
             keywordsFound.clear();
             errors.clear();
+            failing = false;
         }
     }
 
@@ -79,11 +89,17 @@ public class FilterHandlerTest {
     }
 
     @AfterEach
-    void cleanup() {
+    void cleanup() throws IOException {
         if (filterHandler != null) {
             filterHandler.close();
         }
         mockResultHandler.clear();
+        if (spillDir != null) {
+            try (var files = Files.walk(spillDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+            spillDir = null;
+        }
     }
 
     /**
@@ -286,6 +302,55 @@ public class FilterHandlerTest {
         assertTrue(mockResultHandler.errors.isEmpty());
     }
 
+    /**
+     * One agent, two files in different encodings: each must be decoded in its own, even when the Korean lines
+     * come after more ASCII than one sniff sample holds.
+     */
+    @Test
+    @DisplayName("Encoding Detection: Should sniff UTF-8 and EUC-KR per file")
+    void doFilter_DetectedEncoding_ShouldDecodeEachFile() throws IOException {
+        filterHandler.close();
+        Path utf8File = Files.createTempFile("alfa-test-utf8-", ".log");
+        try {
+            Charset eucKr = Charset.forName("EUC-KR");
+            Map<String, String> paths = new HashMap<>();
+            paths.put("LEGACY", tempLogFile.toString());
+            paths.put("MODERN", utf8File.toString());
+            Map<String, Set<String>> filters = new HashMap<>();
+            filters.put("LEGACY", Set.of("오류"));
+            filters.put("MODERN", Set.of("오류"));
+            testConfig = new AlfaConfig(mockResultHandler, paths, filters, null, null, null, null, false);
+            testConfig.setDetectEncoding(true);
+
+            List<String> asciiLines = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                asciiLines.add("[INFO] plain ascii line number " + i);
+            }
+            Files.write(tempLogFile, asciiLines, eucKr, StandardOpenOption.APPEND);
+            Files.write(tempLogFile, Arrays.asList("[오류] 디스크 부족", "[정보] 정상"), eucKr, StandardOpenOption.APPEND);
+            Files.write(utf8File, Arrays.asList("[오류] 연결 실패", "[정보] 정상"), StandardCharsets.UTF_8);
+
+            FilterHandler legacy = new FilterHandler(testConfig, "LEGACY");
+            FilterHandler modern = new FilterHandler(testConfig, "MODERN");
+            try {
+                // the LEGACY file needs a run per ASCII sample before the Korean line is sniffed
+                for (int run = 0; run < 10 && legacy.doFilter().isEmpty(); run++) {
+                    assertTrue(legacy.hasBacklog(), "A run that stopped at the sniffed bytes must ask for another one.");
+                }
+                modern.doFilter();
+            } finally {
+                legacy.close();
+                modern.close();
+            }
+
+            assertEquals(Arrays.asList("[오류] 디스크 부족", "[오류] 연결 실패"), mockResultHandler.filteredLogs);
+            assertEquals(Files.size(tempLogFile), testConfig.getLastReadPositions().get("LEGACY"));
+            assertTrue(mockResultHandler.errors.isEmpty());
+        } finally {
+            Files.deleteIfExists(utf8File);
+        }
+    }
+
     /**
      * New Test: Test with a complex regular expression.
      */
@@ -335,4 +400,177 @@ public class FilterHandlerTest {
         assertTrue(mockResultHandler.errors.isEmpty());
     }
 
-}
\ No newline at end of file
+    /**
+     * Matches that the handler rejects are spilled to disk and replayed in order once it recovers,
+     * also by a new FilterHandler instance (agent restart).
+     */
+    @Test
+    @DisplayName("Spill Queue: Should keep matches while the handler fails and replay them in order")
+    void doFilter_HandlerFailure_ShouldSpillAndReplay() throws IOException {
+        spillDir = Files.createTempDirectory("alfa-spill-");
+        filterHandler.close();
+        testConfig.setSpillDirectory(spillDir.toString());
+        filterHandler = new FilterHandler(testConfig, "TEST_LOG");
+
+        Files.write(tempLogFile, Arrays.asList("[ERROR] first", "[INFO] skip", "[FATAL] second"),
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        mockResultHandler.failing = true;
+        filterHandler.doFilter();
+
+        assertTrue(mockResultHandler.filteredLogs.isEmpty());
+        assertEquals(1, mockResultHandler.errors.size(), "The failure must be reported once per run.");
+        assertEquals(2, filterHandler.getSpilledCount(), "Both matches must be kept in the spill queue.");
+        assertEquals(Files.size(tempLogFile), testConfig.getLastReadPositions().get("TEST_LOG"));
+
+        // restart: a new handler recovers the queue from disk
+        filterHandler.close();
+        filterHandler = new FilterHandler(testConfig, "TEST_LOG");
+        assertEquals(2, filterHandler.getSpilledCount());
+
+        mockResultHandler.clear();
+        Files.write(tempLogFile, Arrays.asList("[DENIED] third"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        filterHandler.doFilter();
+
+        assertEquals(Arrays.asList("[ERROR] first", "[FATAL] second", "[DENIED] third"), mockResultHandler.filteredLogs,
+                "Spilled matches must be delivered first and in file order.");
+        assertEquals(0, filterHandler.getSpilledCount());
+        assertTrue(mockResultHandler.errors.isEmpty());
+    }
+
+    /**
+     * A run stops at the byte budget on a line boundary and the next run continues from there.
+     */
+    @Test
+    @DisplayName("Read Budget: Should stop at the byte budget and continue without losing lines")
+    void doFilter_ReadBudget_ShouldYieldAndContinue() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add((i % 2 == 0 ? "[ERROR] line " : "[INFO] line ") + i);
+        }
+        Files.write(tempLogFile, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        testConfig.setMaxBytesPerRun(256);
+
+        int runs = 0;
+        int filtered = 0;
+        do {
+            filtered += filterHandler.doFilter().size();
+            runs++;
+            long position = testConfig.getLastReadPositions().get("TEST_LOG");
+            assertTrue(position == Files.size(tempLogFile) || lineStartsAt(position),
+                    "The saved position must be on a line boundary.");
+        } while (filterHandler.hasBacklog() && runs < 100);
+
+        assertTrue(runs > 1, "The budget must split the file into several runs.");
+        assertEquals(50, filtered, "Every matching line must be filtered exactly once.");
+        assertEquals(50, mockResultHandler.filteredLogs.size());
+        assertEquals(Files.size(tempLogFile), testConfig.getLastReadPositions().get("TEST_LOG"));
+    }
+
+    private static boolean lineStartsAt(long position) throws IOException {
+        byte[] content = Files.readAllBytes(tempLogFile);
+        return position > 0 && content[(int) position - 1] == '\n';
+    }
+
+    /**
+     * Sampling thins out delivery while the batch counters keep the real totals.
+     */
+    @Test
+    @DisplayName("Sampling: Should deliver a sample and report exact or estimated totals")
+    void doFilter_SamplingPolicy_ShouldReportTotals() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            lines.add((i % 2 == 0 ? "[ERROR] line " : "[INFO] line ") + i); // even line numbers match
+        }
+
+        testConfig.setSamplingPolicy("TEST_LOG", SamplingPolicy.everyNthMatch(10));
+        Files.write(tempLogFile, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        List<String> sampled = filterHandler.doFilter();
+        BatchStats stats = filterHandler.getLastBatchStats();
+        assertEquals(5, sampled.size(), "1 in 10 of the 50 matches must be delivered.");
+        assertEquals(100, stats.getLinesRead());
+        assertEquals(50, stats.getMatches(), "The match count must stay exact.");
+        assertFalse(stats.isEstimated());
+
+        testConfig.setSamplingPolicy("TEST_LOG", SamplingPolicy.everyNthLine(4));
+        Files.write(tempLogFile, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        filterHandler.doFilter();
+        stats = filterHandler.getLastBatchStats();
+        assertEquals(100, stats.getLinesRead());
+        assertEquals(100, stats.getMatches(), "25 sampled lines all match, scaled by 4.");
+        assertTrue(stats.isEstimated());
+
+        testConfig.setSamplingPolicy("TEST_LOG", SamplingPolicy.reservoir(3));
+        Files.write(tempLogFile, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        List<String> reservoir = filterHandler.doFilter();
+        stats = filterHandler.getLastBatchStats();
+        assertEquals(3, reservoir.size());
+        assertEquals(50, stats.getMatches());
+        List<Integer> order = new ArrayList<>();
+        for (String line : reservoir) {
+            order.add(Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1)));
+        }
+        List<Integer> sorted = new ArrayList<>(order);
+        Collections.sort(sorted);
+        assertEquals(sorted, order, "The reservoir must be delivered in file order.");
+    }
+
+    /**
+     * Rotation by rename: the old file keeps its size, so only the file key tells that the path moved on.
+     */
+    @Test
+    @DisplayName("Rename Rotation: Should finish the old file, then read the new file from the start")
+    void doFilter_RenameRotation_ShouldDrainOldFileThenSwitch() throws IOException {
+        Path rotated = Path.of(tempLogFile + ".1");
+        try {
+            Files.write(tempLogFile, Arrays.asList("[ERROR] old 1", "[INFO] old 2"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            assertEquals(1, filterHandler.doFilter().size());
+
+            // written to the old file after the last run, then the file is renamed away
+            Files.write(tempLogFile, Arrays.asList("[FATAL] old 3"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            Files.move(tempLogFile, rotated, StandardCopyOption.ATOMIC_MOVE);
+            Files.write(tempLogFile, Arrays.asList("[ERROR] new 1", "[INFO] new 2 padding to be longer than the old file"),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+
+            List<String> drained = filterHandler.doFilter();
+            assertEquals(List.of("[FATAL] old 3"), drained, "The rest of the old file must be read first.");
+            assertTrue(filterHandler.hasBacklog(), "The new file must be read right after the switch.");
+            assertEquals(0L, testConfig.getLastReadPositions().get("TEST_LOG"));
+
+            List<String> fresh = filterHandler.doFilter();
+            assertEquals(List.of("[ERROR] new 1"), fresh);
+            assertEquals(Files.size(tempLogFile), testConfig.getLastReadPositions().get("TEST_LOG"));
+
+            SourceRegistry registry = testConfig.getSourceRegistry();
+            int slot = registry.slotOf("TEST_LOG");
+            assertEquals(5, registry.getLinesRead(slot));
+            assertEquals(3, registry.getMatches(slot));
+            assertEquals(SourceRegistry.fileKeyOf(tempLogFile), registry.getFileKey(slot));
+            assertTrue(mockResultHandler.errors.isEmpty());
+        } finally {
+            Files.deleteIfExists(rotated);
+        }
+    }
+
+    /**
+     * The registry backs getLastReadPositions(); the Map view must behave like the map it replaced.
+     */
+    @Test
+    @DisplayName("Source Registry: Offsets should be readable and writable through the Map view")
+    void sourceRegistry_PositionView_ShouldBehaveLikeMap() {
+        SourceRegistry registry = new SourceRegistry();
+        Map<String, Long> positions = registry.positions();
+        for (int i = 0; i < 3000; i++) {
+            positions.put("S" + i, (long) i);
+        }
+        assertEquals(3000, registry.size());
+        assertEquals(3000, positions.size());
+        assertEquals(2999L, positions.get("S2999"));
+        assertEquals(1500L, positions.remove("S1500"));
+        assertNull(positions.get("S1500"));
+        assertFalse(positions.containsKey("S1500"));
+        assertEquals(7L, positions.getOrDefault("S1500", 7L));
+        assertEquals(2999, positions.size());
+        assertNull(positions.get("unknown"));
+        assertEquals(3000, registry.size(), "Lookups must not allocate slots.");
+    }
+}
@@ -0,0 +1,186 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaConfigLoader;
+import main.config.AlfaResultHandler;
+import main.core.BytePrefilter;
+import main.core.CompiledFilterSet;
+import main.core.FilterHandler;
+import main.core.PatternCache;
+import main.core.PatternProfile;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilterPipelineTest {
+
+    private static final List<String> PIPELINE = List.of(
+            "ERROR",
+            "all:FATAL && literal-ci:disk",
+            "exclude:literal:HealthCheck",
+            "exclude:(?i)debug",
+            "mask:\\b\\d{4}-\\d{4}-\\d{4}-\\d{4}\\b => ****-****-****-****");
+
+    /**
+     * The reference semantics: first include in configured order, no exclude may match.
+     */
+    private static String reference(String line) {
+        if (line.contains("HealthCheck") || line.toLowerCase().contains("debug")) {
+            return null;
+        }
+        if (line.contains("ERROR")) {
+            return "ERROR";
+        }
+        if (line.contains("FATAL") && line.toLowerCase().contains("disk")) {
+            return "all:FATAL && literal-ci:disk";
+        }
+        return null;
+    }
+
+    @Test
+    @DisplayName("Pipeline: Include, exclude and AND groups should keep their meaning while the order adapts")
+    void pipeline_ShouldMatchReferenceWhileReordering() {
+        CompiledFilterSet set = new CompiledFilterSet(PIPELINE);
+        String[] parts = {"ERROR", "FATAL", "Disk", "HealthCheck", "Debug", "info", "user=1", "FATAL ERROR"};
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int p = 0; p < 3; p++) {
+                // HealthCheck lines dominate, as on a load balanced service
+                line.append(random.nextInt(3) == 0 ? "HealthCheck" : parts[random.nextInt(parts.length)]).append(' ');
+            }
+            assertEquals(reference(line.toString()), set.match(line.toString()), "line=" + line);
+        }
+        assertTrue(set.describeOrder().startsWith("excludes first [literal:HealthCheck"),
+                "The frequent and cheap exclude must run first: " + set.describeOrder());
+        assertTrue(set.describeOrder().contains("all:FATAL && literal-ci:disk [FATAL, literal-ci:disk]"));
+
+        assertEquals("****-****-****-**** 1234-5678-9012-345", set.mask("1234-5678-9012-3456 1234-5678-9012-345"));
+        assertNotNull(BytePrefilter.create(set, StandardCharsets.UTF_8), "Excludes must not disable the byte prefilter.");
+
+        CompiledFilterSet excludeOnly = new CompiledFilterSet(List.of("exclude:HealthCheck"));
+        assertEquals(CompiledFilterSet.MATCH_ALL_KEYWORD, excludeOnly.match("GET /"));
+        assertNull(excludeOnly.match("GET /HealthCheck"));
+        assertNull(new CompiledFilterSet(List.of()).match("anything"), "An empty set must still match nothing.");
+        assertThrows(PatternSyntaxException.class, () -> new CompiledFilterSet(List.of("mask:\\d+")));
+    }
+
+    @Test
+    @DisplayName("Pipeline: The profile should estimate evaluations and hits and rank the costly regex first")
+    void profile_ShouldRankCostlyFilterFirst() {
+        String costly = "(?i)^.*(timeout|refused)\\s+\\w+=\\d+.*$";
+        CompiledFilterSet set = new CompiledFilterSet(List.of("literal:ERROR", costly, "exclude:literal:HealthCheck"));
+        int lines = 64_000;
+        for (int i = 0; i < lines; i++) {
+            set.match(i % 4 == 0 ? "[ERROR] request " + i : "[INFO] connection refused retry=" + i + " " + "x".repeat(200));
+        }
+        List<PatternProfile> profile = set.getProfile();
+        assertEquals(3, profile.size());
+        assertEquals(costly, profile.get(0).getFilter(), "The regex must cost the most: " + profile);
+        PatternProfile literal = profile.stream().filter(p -> p.getFilter().equals("literal:ERROR")).findFirst().orElseThrow();
+        // every line tries the first include, a quarter of them match it
+        assertEquals(lines, literal.getEvaluations(), lines / 10.0);
+        assertEquals(0.25, literal.getHitRate(), 0.05);
+    }
+
+    @Test
+    @DisplayName("Pipeline: The keyword of a line matching several includes should not depend on the set type")
+    void keyword_ShouldFollowDefinedOrder() {
+        String line = "ERROR disk full, FATAL shutdown";
+        List<String> configured = List.of("literal:FATAL", "ERROR", "disk");
+        assertEquals("literal:FATAL", PatternCache.get(new LinkedHashSet<>(configured)).match(line),
+                "An ordered set must keep its configured order.");
+        // unordered sets are sorted, whatever their iteration order in this JVM
+        for (Set<String> unordered : List.of(Set.copyOf(configured), new HashSet<>(configured))) {
+            assertEquals(List.of("ERROR", "disk", "literal:FATAL"), CompiledFilterSet.inDefinedOrder(unordered));
+            assertEquals("ERROR", PatternCache.get(unordered).match(line));
+        }
+    }
+
+    @Test
+    @DisplayName("Pipeline: FilterHandler should deliver masked lines and drop excluded ones")
+    void filterHandler_ShouldMaskAndExclude() throws IOException {
+        Path file = Files.createTempFile("alfa-pipeline-", ".log");
+        try {
+            Files.write(file, List.of(
+                    "[ERROR] payment failed card=4111-1111-1111-1111",
+                    "[ERROR] HealthCheck timeout",
+                    "[FATAL] DISK full",
+                    "[FATAL] cpu hot",
+                    "[INFO] card=4111-1111-1111-1111"), StandardCharsets.UTF_8);
+            List<String> delivered = new ArrayList<>();
+            List<String> keywords = new ArrayList<>();
+            AlfaResultHandler handler = new AlfaResultHandler() {
+                @Override
+                public void onLogFiltered(String logLine, String keyword) {
+                    delivered.add(logLine);
+                    keywords.add(keyword);
+                }
+
+                @Override
+                public void onBatchComplete(List<String> filteredLines, String symbol) {
+                }
+            };
+            AlfaConfig config = new AlfaConfig(handler, Map.of("APP", file.toString()),
+                    Map.of("APP", new LinkedHashSet<>(PIPELINE)), null, null, null, StandardCharsets.UTF_8, false);
+            FilterHandler filterHandler = new FilterHandler(config, "APP");
+            try {
+                filterHandler.doFilter();
+            } finally {
+                filterHandler.close();
+            }
+            assertEquals(List.of("[ERROR] payment failed card=****-****-****-****", "[FATAL] DISK full"), delivered);
+            assertEquals(List.of("ERROR", "all:FATAL && literal-ci:disk"), keywords);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Pipeline: The mask example of the Readme should mask card numbers when loaded from a file")
+    void readmeExample_LoadedFromFile_ShouldMask() throws IOException {
+        Path log = Files.createTempFile("alfa-pipeline-", ".log");
+        Path properties = Files.createTempFile("alfa-pipeline-", ".properties");
+        try {
+            Files.write(log, List.of("ERROR card=4111111111111111", "ERROR HealthCheck card=1"), StandardCharsets.UTF_8);
+            // copied from Readme 4.12
+            Files.write(properties, List.of(
+                    "source.API.path=" + log,
+                    "source.API.filter.1=ERROR",
+                    "source.API.filter.2=exclude:literal:HealthCheck",
+                    "source.API.filter.3=mask:card=\\d+ => card=***"), StandardCharsets.UTF_8);
+            Set<String> filters = AlfaConfigLoader.load(properties).getFilterOpts().get("API");
+
+            List<String> delivered = new ArrayList<>();
+            AlfaResultHandler handler = new AlfaResultHandler() {
+                @Override
+                public void onLogFiltered(String logLine, String keyword) {
+                    delivered.add(logLine);
+                }
+
+                @Override
+                public void onBatchComplete(List<String> filteredLines, String symbol) {
+                }
+            };
+            AlfaConfig config = new AlfaConfig(handler, Map.of("API", log.toString()), Map.of("API", filters),
+                    null, null, null, StandardCharsets.UTF_8, false);
+            FilterHandler filterHandler = new FilterHandler(config, "API");
+            try {
+                filterHandler.doFilter();
+            } finally {
+                filterHandler.close();
+            }
+            assertEquals(List.of("ERROR card=***"), delivered);
+        } finally {
+            Files.deleteIfExists(log);
+            Files.deleteIfExists(properties);
+        }
+    }
+}
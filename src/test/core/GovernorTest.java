@@ -0,0 +1,157 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.FilterHandler;
+import main.core.GovernorMetrics;
+import main.core.ResourceGovernor;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GovernorTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("alfa-governor");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Governor: Reads should be limited to the token bucket and deferred while it is empty")
+    void readLimit_ShouldDeferRunsUntilTokensRefill() throws IOException {
+        Path file = writeLines("app.log", "ERROR disk full on /var/data", 10_000);
+        AtomicInteger delivered = new AtomicInteger();
+        AlfaConfig config = new AlfaConfig(counting(delivered), Map.of("APP", file.toString()),
+                Map.of("APP", Set.of("ERROR")), null, null, null, null, false);
+        config.setMaxReadBytesPerSecond(100_000);
+
+        FilterHandler handler = new FilterHandler(config, "APP");
+        try {
+            handler.doFilter();
+            long first = config.getLastReadPositions().get("APP");
+            assertTrue(first <= 100_000 + 64, "The first run may read one second of tokens: " + first);
+            assertTrue(handler.wasThrottled());
+            assertTrue(handler.hasBacklog());
+
+            handler.doFilter();
+            assertEquals(first, config.getLastReadPositions().get("APP"), "An empty bucket must defer the run.");
+            GovernorMetrics metrics = config.getResourceGovernor().getMetrics();
+            assertTrue(metrics.isThrottled());
+            assertEquals(Set.of(ResourceGovernor.Reason.IO), metrics.getReasons());
+            assertEquals(1, metrics.getDeferredRuns());
+
+            long start = System.nanoTime();
+            while (handler.hasBacklog()) {
+                sleepNanos(config.getResourceGovernor().getRetryDelayNanos());
+                handler.doFilter();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long rest = Files.size(file) - first;
+            assertTrue(seconds > rest / 100_000.0 * 0.8, "The rest must take about its refill time: " + seconds + " s");
+            assertEquals(10_000, delivered.get(), "Every line must be delivered exactly once.");
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Governor: A run should end once its undelivered lines fill the heap budget")
+    void heapBudget_ShouldShortenRunsWithoutLosingLines() throws IOException {
+        Path file = writeLines("app.log", "ERROR request failed", 5_000);
+        AtomicInteger delivered = new AtomicInteger();
+        AlfaConfig config = new AlfaConfig(counting(delivered), Map.of("APP", file.toString()),
+                Map.of("APP", Set.of("ERROR")), null, null, null, null, false);
+        config.setHeapBudgetBytes(64 * 1024);
+
+        FilterHandler handler = new FilterHandler(config, "APP");
+        try {
+            List<String> batch = handler.doFilter();
+            long lineBytes = ResourceGovernor.estimateBytes("ERROR request failed");
+            assertEquals(64 * 1024 / lineBytes + 1, batch.size(), "The run must end at the line that filled the budget.");
+            assertTrue(handler.wasThrottled());
+            assertTrue(config.getResourceGovernor().getMetrics().getHeldBytes() > 64 * 1024);
+
+            handler.releaseBatchMemory();
+            assertEquals(0, config.getResourceGovernor().getMetrics().getHeldBytes());
+            int runs = 1;
+            while (handler.hasBacklog()) {
+                handler.doFilter();
+                handler.releaseBatchMemory();
+                runs++;
+            }
+            assertTrue(runs > 5);
+            assertEquals(5_000, delivered.get(), "Every line must be delivered exactly once.");
+            assertEquals(Files.size(file), config.getLastReadPositions().get("APP"));
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Governor: CPU debt should first sample, then defer non-critical runs only")
+    void cpuLimit_ShouldSampleThenDefer() {
+        AlfaConfig config = new AlfaConfig(counting(new AtomicInteger()), Map.of(), Map.of(), null, null, null, null, false);
+        config.setCpuPercent(10);
+        config.setShedEveryNthLine(10);
+        ResourceGovernor governor = config.getResourceGovernor();
+        double second = 0.1 * Runtime.getRuntime().availableProcessors() * 1e9;
+
+        assertTrue(governor.admit(false));
+        assertNull(governor.shedPolicy(false), "A full bucket must not sample.");
+
+        governor.chargeCpu((long) (second * 0.7));
+        assertTrue(governor.admit(false));
+        assertEquals("everyNthLine(10)", String.valueOf(governor.shedPolicy(false)));
+        assertNull(governor.shedPolicy(true), "CRITICAL sources are never sampled.");
+
+        governor.chargeCpu((long) (second * 0.7));
+        assertFalse(governor.admit(false), "A bucket in debt must defer the run.");
+        assertTrue(governor.admit(true), "CRITICAL sources are never deferred.");
+        long delay = governor.getRetryDelayNanos();
+        assertTrue(delay >= 300_000_000L && delay <= 1_000_000_000L, "The delay must cover the debt: " + delay);
+
+        GovernorMetrics metrics = governor.getMetrics();
+        assertEquals(Set.of(ResourceGovernor.Reason.CPU), metrics.getReasons());
+        assertEquals(1, metrics.getSampledRuns());
+        assertEquals(1, metrics.getDeferredRuns());
+    }
+
+    private Path writeLines(String name, String line, int count) throws IOException {
+        Path file = dir.resolve(name);
+        Files.writeString(file, (line + "\n").repeat(count), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static AlfaResultHandler counting(AtomicInteger delivered) {
+        return new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                delivered.incrementAndGet();
+            }
+        };
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package test.core;
+
+import main.agent.AlfaAgent;
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.config.Lane;
+import main.core.FilterHandler;
+import main.core.LaneMetrics;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LaneTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("alfa-lane");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Lanes: A BULK run should stop at a chunk boundary while a CRITICAL file is read")
+    void bulkRun_ShouldYieldToCriticalWork() throws IOException {
+        Path bulkFile = writeLines("bulk.log", "ACCESS GET /index.html 200", 20_000);
+        AtomicInteger delivered = new AtomicInteger();
+        AlfaConfig config = new AlfaConfig(counting(delivered), Map.of("BULK", bulkFile.toString()),
+                Map.of("BULK", Set.of("ACCESS")), null, null, null, null, false);
+        config.setLane("BULK", Lane.BULK);
+
+        FilterHandler handler = new FilterHandler(config, "BULK");
+        try {
+            config.getLaneMonitor().beginCritical();
+            handler.doFilter();
+            assertTrue(handler.wasPreempted());
+            assertTrue(handler.hasBacklog());
+            long yieldedAt = config.getLastReadPositions().get("BULK");
+            assertTrue(yieldedAt > 0 && yieldedAt < 2 * 64 * 1024, "The run must end after about one chunk: " + yieldedAt);
+
+            config.getLaneMonitor().endCritical();
+            handler.doFilter();
+            assertFalse(handler.wasPreempted());
+            assertEquals(Files.size(bulkFile), config.getLastReadPositions().get("BULK"));
+            assertEquals(20_000, delivered.get(), "Every line must be delivered exactly once.");
+        } finally {
+            handler.close();
+        }
+    }
+
+    /**
+     * The CRITICAL delivery is held until the BULK lane has yielded, so the overlap is certain; the held run
+     * also misses its 1 ms objective.
+     */
+    @Test
+    @DisplayName("Lanes: CRITICAL symbols should run on their own threads, preempt BULK work and report SLO misses")
+    void agent_ShouldSeparateLanesAndReportMetrics() throws Exception {
+        Path bulkFile = writeLines("bulk.log", "ACCESS GET /index.html 200", 50_000);
+        Path criticalFile = writeLines("payment.log", "PAYMENT declined", 1);
+        AtomicInteger bulkDelivered = new AtomicInteger();
+        AlfaAgent[] agent = new AlfaAgent[1];
+        AlfaConfig[] configHolder = new AlfaConfig[1];
+        AlfaResultHandler handler = new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                if (keyword.equals("PAYMENT")) {
+                    waitFor(() -> agent[0].getLaneMetrics().get(Lane.BULK).getYields() > 0);
+                } else if (bulkDelivered.incrementAndGet() == 1) {
+                    waitFor(() -> configHolder[0].getLaneMonitor().shouldYield());
+                }
+            }
+        };
+        AlfaConfig config = new AlfaConfig(handler,
+                Map.of("BULK", bulkFile.toString(), "PAYMENT", criticalFile.toString()),
+                Map.of("BULK", Set.of("ACCESS"), "PAYMENT", Set.of("PAYMENT")), 1, 1, null, null, false);
+        config.setLane("BULK", Lane.BULK);
+        config.setLane("PAYMENT", Lane.CRITICAL);
+        config.setLaneSloMillis(Lane.CRITICAL, 1);
+        configHolder[0] = config;
+        agent[0] = new AlfaAgent(config);
+        agent[0].start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (config.getLastReadPositions().getOrDefault("BULK", 0L) < Files.size(bulkFile)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Map<Lane, LaneMetrics> metrics = agent[0].getLaneMetrics();
+            assertTrue(metrics.get(Lane.BULK).getYields() >= 1, "The BULK lane must have yielded: " + metrics);
+            assertTrue(metrics.get(Lane.CRITICAL).getRuns() >= 1);
+            assertTrue(metrics.get(Lane.CRITICAL).getSloMisses() >= 1, "The held run must miss its objective: " + metrics);
+            assertEquals(Files.size(bulkFile), config.getLastReadPositions().get("BULK"), "The BULK file must be read after yielding.");
+            assertEquals(50_000, bulkDelivered.get());
+        } finally {
+            agent[0].stop();
+        }
+    }
+
+    private Path writeLines(String name, String line, int count) throws IOException {
+        Path file = dir.resolve(name);
+        Files.writeString(file, (line + "\n").repeat(count), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static AlfaResultHandler counting(AtomicInteger delivered) {
+        return new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                delivered.incrementAndGet();
+            }
+        };
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static void waitFor(Condition condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
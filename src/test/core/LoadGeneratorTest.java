@@ -0,0 +1,80 @@
+package test.core;
+
+import main.loadgen.LatencyHistogram;
+import main.loadgen.LoadGenerator;
+import main.loadgen.LoadProfile;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("alfa-load");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Load Generator: Should hold the line rate and write exactly the reported lines and matches")
+    void generator_ShouldWriteAtRateWithExactCounts() throws Exception {
+        LoadProfile profile = new LoadProfile();
+        profile.setFiles(2);
+        profile.setLinesPerSecond(4000);
+        profile.setLineBytes(60, 200);
+        profile.setMatchRatio(0.1);
+        profile.setStackTraceRatio(0.5);
+
+        LoadGenerator generator = new LoadGenerator(tempDir, profile);
+        generator.start();
+        Thread.sleep(1000);
+        generator.stop();
+
+        long lines = 0;
+        long matches = 0;
+        long bytes = 0;
+        for (Path file : generator.getFiles()) {
+            List<String> content = Files.readAllLines(file, StandardCharsets.UTF_8);
+            lines += content.size();
+            matches += content.stream().filter(l -> l.contains("ERROR")).count();
+            bytes += Files.size(file);
+        }
+        assertEquals(generator.getLinesWritten(), lines);
+        assertEquals(generator.getMatchesWritten(), matches, "Only generated matches may contain the keyword.");
+        assertEquals(generator.getBytesWritten(), bytes);
+        assertTrue(lines > 3000 && lines < 5000, "About 4000 lines expected in one second, got " + lines);
+    }
+
+    @Test
+    @DisplayName("Latency Histogram: Percentiles should be within the bucket precision")
+    void histogram_ShouldReportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(10_000L, histogram.getCount());
+        assertEquals(5000, histogram.getPercentile(50), 5000 * 0.07);
+        assertEquals(9900, histogram.getPercentile(99), 9900 * 0.07);
+        assertEquals(9990, histogram.getPercentile(99.9), 9990 * 0.07);
+        assertEquals(10_000, histogram.getMax(), 10_000 * 0.07);
+
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(7);
+        assertEquals(7L, small.getPercentile(50), "Small values are exact.");
+    }
+}
@@ -0,0 +1,172 @@
+package test.core;
+
+import main.agent.AlfaAgent;
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.flow.Match;
+import main.flow.MatchHub;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchFlowTest {
+
+    private static final int MATCHES = 100;
+
+    private Path logFile;
+
+    static class CollectingHandler implements AlfaResultHandler {
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onLogFiltered(String logLine, String keyword) {
+            delivered.add(logLine);
+        }
+
+        @Override
+        public void onBatchComplete(List<String> filteredLines, String symbol) {
+        }
+    }
+
+    static class TestSubscriber implements Flow.Subscriber<Match> {
+        final List<Match> received = new CopyOnWriteArrayList<>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        final long initialRequest;
+        volatile Flow.Subscription subscription;
+        volatile boolean completed;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Match item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = Files.createTempFile("alfa-flow-", ".log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < MATCHES; i++) {
+            content.append("[ERROR] event ").append(i).append('\n').append("[INFO] noise ").append(i).append('\n');
+        }
+        Files.writeString(logFile, content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(logFile);
+    }
+
+    @Test
+    @DisplayName("Flow: Reading should follow subscriber demand, and a cancelled subscriber should resume from its offset")
+    void matches_ShouldReadOnlyAsFarAsDemand() throws Exception {
+        CollectingHandler handler = new CollectingHandler();
+        // one periodic run per minute: only demand moves the reader during the test
+        AlfaConfig config = new AlfaConfig(handler, Map.of("APP", logFile.toString()), Map.of("APP", Set.of("ERROR")),
+                60, 1, null, null, false);
+        AlfaAgent agent = new AlfaAgent(config);
+        TestSubscriber subscriber = new TestSubscriber(5);
+        TestSubscriber resumed = new TestSubscriber(Long.MAX_VALUE);
+        agent.matches("APP").subscribe(subscriber);
+        agent.start();
+        try {
+            waitFor(() -> subscriber.received.size() >= 5);
+            Thread.sleep(200);
+            assertEquals(5, subscriber.received.size(), "Nothing may be read past the requested matches.");
+            assertEquals(5, handler.delivered.size());
+            assertEquals(subscriber.received.get(4).getOffset(), config.getLastReadPositions().get("APP"),
+                    "The read position must stop right after the last requested match.");
+
+            subscriber.subscription.request(20);
+            waitFor(() -> subscriber.received.size() >= 25);
+            Thread.sleep(200);
+            assertEquals(25, subscriber.received.size());
+            assertEquals("[ERROR] event 24", subscriber.received.get(24).getLine());
+
+            // without subscribers the file is read to the end for the result handler
+            subscriber.subscription.cancel();
+            waitFor(() -> handler.delivered.size() >= MATCHES);
+            assertEquals(25, subscriber.received.size());
+
+            agent.matchesFrom("APP", subscriber.received.get(24).getOffset()).subscribe(resumed);
+            waitFor(() -> resumed.received.size() >= MATCHES - 25);
+            assertEquals("[ERROR] event 25", resumed.received.get(0).getLine(), "Resume must continue after the last match.");
+            assertEquals(MATCHES - 25, resumed.received.size());
+
+            TestSubscriber invalid = new TestSubscriber(0);
+            agent.matches().subscribe(invalid);
+            assertEquals(1, invalid.errors.size(), "request(0) must be signalled as an error (rule 3.9).");
+        } finally {
+            agent.stop();
+        }
+        assertTrue(resumed.completed, "Subscribers must be completed when the agent stops.");
+        assertFalse(subscriber.completed, "A cancelled subscriber must not be signalled again.");
+    }
+
+    @Test
+    @DisplayName("Flow: A match should go to the subscribers that granted demand for it, and a refused acquire should take nothing")
+    void hub_ShouldEmitToTheSubscribersItAcquiredFrom() {
+        MatchHub hub = new MatchHub();
+        TestSubscriber early = new TestSubscriber(1);
+        hub.publisher("APP").subscribe(early);
+        MatchHub.Grant grant = hub.tryAcquire("APP");
+        assertNotNull(grant);
+
+        // subscribes between acquire and publish
+        TestSubscriber late = new TestSubscriber(Long.MAX_VALUE);
+        hub.publisher("APP").subscribe(late);
+        hub.publish(grant, new Match("APP", "ERROR", "line 1", 7));
+        assertEquals(1, early.received.size());
+        assertTrue(late.received.isEmpty(), "A subscriber added after the acquire did not grant demand for the match.");
+
+        // the first subscribers give a unit, the last has none: the acquire must give the units back
+        MatchHub rollback = new MatchHub();
+        TestSubscriber first = new TestSubscriber(1);
+        TestSubscriber second = new TestSubscriber(1);
+        TestSubscriber merged = new TestSubscriber(1);
+        rollback.publisher("APP").subscribe(first);
+        rollback.publisher("APP").subscribe(second);
+        rollback.merged().subscribe(merged);
+        assertNotNull(rollback.tryAcquire("APP"));
+        first.subscription.request(1);
+        assertNull(rollback.tryAcquire("APP"));
+        second.subscription.request(1);
+        assertNull(rollback.tryAcquire("APP"));
+        merged.subscription.request(1);
+        assertNotNull(rollback.tryAcquire("APP"), "The refused acquires must have released what they took.");
+        assertNull(rollback.tryAcquire("APP"));
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
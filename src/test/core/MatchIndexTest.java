@@ -0,0 +1,69 @@
+package test.core;
+
+import main.index.MatchIndex;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchIndexTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final AtomicLong now = new AtomicLong(10 * MINUTE);
+
+    @Test
+    @DisplayName("Match Index: Should count templates per window and rank the top templates")
+    void index_ShouldCountAndRankTemplates() {
+        MatchIndex index = new MatchIndex(MINUTE, 60, 1 << 20, 4, now::get);
+        for (int i = 0; i < 30; i++) {
+            index.add("APP", "ERROR", "[ERROR] user " + i + " login failed");
+        }
+        for (int i = 0; i < 10; i++) {
+            index.add("APP", "ERROR", "[ERROR] disk /dev/sd" + i + " full");
+        }
+        now.addAndGet(5 * MINUTE);
+        index.add("SYS", "DENIED", "access DENIED for pid=" + 77);
+
+        assertEquals("[ERROR] user <*> login failed", MatchIndex.templateOf("[ERROR]  user 17 login\tfailed"));
+        assertEquals(40L, index.count("APP", null, 60 * MINUTE));
+        assertEquals(0L, index.count("APP", null, MINUTE), "The APP matches are five minutes old.");
+        assertEquals(41L, index.count(null, null, 60 * MINUTE));
+
+        List<MatchIndex.TemplateCount> top = index.topTemplates("APP", "ERROR", 60 * MINUTE, 1);
+        assertEquals(1, top.size());
+        assertEquals("[ERROR] user <*> login failed", top.get(0).template);
+        assertEquals(30L, top.get(0).count);
+
+        List<MatchIndex.TemplateCount> withToken = index.topTemplatesWithToken("full", 60 * MINUTE, 5);
+        assertEquals(1, withToken.size());
+        assertEquals(10L, withToken.get(0).count);
+
+        assertEquals(List.of("[ERROR] disk /dev/sd9 full", "[ERROR] disk /dev/sd8 full"), index.recentSamples("APP", "ERROR", 2));
+    }
+
+    @Test
+    @DisplayName("Match Index: Should evict buckets by age and by memory cap")
+    void index_ShouldEvictByAgeAndMemory() {
+        MatchIndex aged = new MatchIndex(MINUTE, 3, 1 << 20, 4, now::get);
+        aged.add("APP", "ERROR", "old failure");
+        now.addAndGet(3 * MINUTE);
+        aged.add("APP", "ERROR", "new failure");
+        assertEquals(1L, aged.count(null, null, 60 * MINUTE), "Buckets beyond the retention must be evicted.");
+        assertEquals(1, aged.getTemplateCount(), "Templates of evicted buckets must be removed.");
+        assertTrue(aged.topTemplatesWithToken("old", 60 * MINUTE, 5).isEmpty());
+
+        MatchIndex capped = new MatchIndex(MINUTE, 60, 64 * 1024, 4, now::get);
+        for (int minute = 0; minute < 30; minute++) {
+            for (int i = 0; i < 20; i++) {
+                capped.add("APP", "ERROR", "failure kind" + (char) ('a' + i) + " minute" + (char) ('a' + minute));
+            }
+            now.addAndGet(MINUTE);
+        }
+        assertTrue(capped.getEstimatedBytes() <= 64 * 1024, "estimate " + capped.getEstimatedBytes());
+        assertTrue(capped.count(null, null, 60 * MINUTE) < 600, "Old buckets must be evicted to respect the cap.");
+        assertEquals(20L, capped.count(null, null, 2 * MINUTE), "The newest bucket must stay complete.");
+    }
+}
@@ -0,0 +1,201 @@
+package test.core;
+
+import main.core.BytePrefilter;
+import main.core.CompiledFilterSet;
+import main.core.PatternAnalyzer;
+import main.core.PatternCache;
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternAnalyzerTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "[INFO] Standard message. ID: 123",
+            "[error] lower case error",
+            "[FATAL] Critical system failure detected!",
+            "[WARN] Access Denied for user 'guest'",
+            "[DEBUG] nothing to see",
+            "",
+            "ERROR",
+            "a.b*c literal metacharacters",
+            "[오류] 예외가 발생했습니다!",
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaab",
+            "[ſtate] dıSK \u212Aernel ΣΊΣΥΦΟΣ ǅ Ǆ ǆ",
+            "Ünicode ünicode ÉRROR érror"
+    );
+
+    /**
+     * Rewritten patterns must give the same yes/no answer as java.util.regex on the original.
+     */
+    @Test
+    @DisplayName("Analysis: Rewritten filters must match exactly the lines the original regex finds")
+    void analyze_RewrittenPatterns_ShouldBeEquivalent() {
+        List<String> regexes = Arrays.asList(
+                "(?i).*(FATAL|ERROR|DENIED).*",
+                ".*ERROR.*",
+                ".*?ERROR",
+                "ERROR|FATAL",
+                "(?:FATAL|DENIED)",
+                "a\\.b\\*c",
+                "\\[(INFO|WARN|ERROR)\\] .* ID: \\d{3,4}",
+                "오류",
+                "(?i)denied",
+                "(?iu)denied|disk",
+                "(?ui)state",
+                "(?iu)érror",
+                "(?iu)σίσυφος",
+                "(?iu)\\[.*kernel",
+                "(a+)+b",
+                "ab?c",
+                "x.*\\.*",
+                "[.*]",
+                ".*"
+        );
+        for (String regex : regexes) {
+            CompiledFilterSet compiled = new CompiledFilterSet(List.of(regex));
+            Pattern original = Pattern.compile(regex);
+            for (String line : LINES) {
+                boolean expected = original.matcher(line).find();
+                assertEquals(expected, compiled.match(line) != null, "regex=" + regex + " line=" + line);
+                if (expected) {
+                    assertEquals(regex, compiled.match(line), "The reported keyword must stay the original filter.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Escapes that take letters or digits as arguments and inline flags in the middle of a pattern must not
+     * produce a required literal the matching line does not contain.
+     */
+    @Test
+    @DisplayName("Analysis: Escape arguments and mid-pattern flags must not become required literals")
+    void requiredLiteral_EscapesAndInlineFlags_ShouldNotRejectMatches() {
+        Map<String, String> cases = new LinkedHashMap<>();
+        cases.put("\\x41BC", "ABC");
+        cases.put("\\x{41}BC", "ABC");
+        cases.put("\\u0041xyz", "Axyz");
+        cases.put("\\0101xyz", "Axyz");
+        cases.put("\\cMab", "\rab");
+        cases.put("\\p{Lu}bcd", "Xbcd");
+        cases.put("\\pLbcd", "Xbcd");
+        cases.put("\\N{LATIN CAPITAL LETTER A}bc", "Abc");
+        cases.put("(?<g>ab)\\k<g>cd", "ababcd");
+        cases.put("(ab)\\1cd", "ababcd");
+        cases.put("fo(?i)bar", "foBAR");
+        cases.put("ab(?i)cde", "abCDE");
+        cases.put("ab(?i:cde)", "abCDE");
+        cases.put("xy(?-i)zw", "xyzw");
+        for (Map.Entry<String, String> entry : cases.entrySet()) {
+            String regex = entry.getKey();
+            String line = "prefix " + entry.getValue() + " suffix";
+            assertTrue(Pattern.compile(regex).matcher(line).find(), "regex=" + regex);
+            assertEquals(regex, new CompiledFilterSet(List.of(regex)).match(line), "regex=" + regex + " line=" + line);
+        }
+        assertEquals("xyz", PatternAnalyzer.analyze("\\u0041xyz").requiredLiteral);
+        assertEquals("fo", PatternAnalyzer.analyze("fo(?i)bar").requiredLiteral);
+    }
+
+    /**
+     * Inside \Q...\E metacharacters are literal, and a quantifier after \E applies to the last quoted char.
+     * The analysis must never reject a line the regex finds.
+     */
+    @Test
+    @DisplayName("Analysis: Quoted text should never make the prefilter reject a match")
+    void quotedText_ShouldAgreeWithRegex() {
+        for (String line : List.of("a", "ac", "bar")) {
+            assertEquals("\\Qab\\E?", new CompiledFilterSet(List.of("\\Qab\\E?")).match(line), "line=" + line);
+        }
+        assertNull(PatternAnalyzer.analyze("x\\Qa.*|b\\E.*").requiredLiteral);
+
+        String alphabet = "ab.*|(";
+        String[] quantifiers = {"", "?", "*", "+", "{0,2}"};
+        Random random = new Random(7);
+        for (int round = 0; round < 3000; round++) {
+            String regex = randomString(random, "abc", random.nextInt(3))
+                    + "\\Q" + randomString(random, alphabet, 1 + random.nextInt(3))
+                    + (random.nextInt(4) == 0 ? "" : "\\E" + quantifiers[random.nextInt(quantifiers.length)])
+                    + randomString(random, "abc", random.nextInt(3)) + (random.nextBoolean() ? ".*" : "");
+            CompiledFilterSet compiled = new CompiledFilterSet(List.of(regex));
+            for (int i = 0; i < 10; i++) {
+                String line = randomString(random, alphabet + "cr", random.nextInt(8));
+                boolean expected = Pattern.compile(regex).matcher(line).find();
+                assertEquals(expected, compiled.match(line) != null, "regex=" + regex + " line=" + line);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Analysis: Should strip '.*', extract literals and flag nested quantifiers")
+    void analyze_ShouldReportOptimizations() {
+        PatternAnalyzer.Analysis mainPattern = PatternAnalyzer.analyze("(?i).*(FATAL|ERROR|DENIED).*");
+        assertEquals(Arrays.asList("FATAL", "ERROR", "DENIED"), mainPattern.literalAlternatives);
+        assertTrue(mainPattern.ignoreCase);
+        assertEquals("(?i)(FATAL|ERROR|DENIED)", mainPattern.regex);
+
+        PatternAnalyzer.Analysis complex = PatternAnalyzer.analyze("\\[(INFO|WARN|ERROR)\\] .* ID: \\d{3,4}");
+        assertNull(complex.literalAlternatives);
+        assertEquals(" ID: ", complex.requiredLiteral);
+
+        PatternAnalyzer.Analysis nested = PatternAnalyzer.analyze("(a+)+b");
+        assertTrue(nested.notes.stream().anyMatch(n -> n.contains("nested quantifier")));
+
+        PatternAnalyzer.Analysis flagged = PatternAnalyzer.analyze("(?x).*ERROR");
+        assertEquals("(?x).*ERROR", flagged.regex, "Patterns with other inline flags must stay untouched.");
+    }
+
+    @Test
+    @DisplayName("Pattern Cache: Symbols with the same filter set should share one compiled instance")
+    void patternCache_SameFilters_ShouldShareInstance() {
+        Set<String> filters = Set.of("(?i).*(FATAL|ERROR|DENIED).*");
+        CompiledFilterSet first = PatternCache.get(filters);
+        CompiledFilterSet second = PatternCache.get(new HashSet<>(filters));
+        assertSame(first, second);
+    }
+
+    /**
+     * "literal:" and "literal-ci:" filters must agree with the quoted text under java.util.regex,
+     * (?iu) folding included, on any mix of ASCII and non-ASCII chars.
+     */
+    @Test
+    @DisplayName("Literal Filters: Prefixed literals should match like the quoted regex with Unicode folding")
+    void literalFilters_ShouldMatchLikeQuotedRegex() {
+        String alphabet = "aAsSkKiIeErR[]. ſıİ\u212Aéɛ오류σςΣǅǄǆ";
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            String literal = randomString(random, alphabet, 1 + random.nextInt(3));
+            String line = randomString(random, alphabet, random.nextInt(12));
+            for (String filter : List.of("literal:" + literal, "literal-ci:" + literal)) {
+                Pattern quoted = Pattern.compile(Pattern.quote(literal),
+                        filter.startsWith("literal-ci:") ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+                boolean expected = quoted.matcher(line).find();
+                CompiledFilterSet compiled = new CompiledFilterSet(List.of(filter));
+                assertEquals(expected, compiled.match(line) != null, "filter=" + filter + " line=" + line);
+                if (expected) {
+                    assertEquals(filter, compiled.match(line), "The reported keyword must be the whole filter.");
+                }
+            }
+        }
+
+        CompiledFilterSet regexLookalike = new CompiledFilterSet(List.of("regex:literal:.*x"));
+        assertEquals("regex:literal:.*x", regexLookalike.match("literal: x"));
+        assertEquals("a.b*c", PatternAnalyzer.analyze("literal:a.b*c").literalAlternatives.get(0));
+
+        // 'ı' folds to 'i', so raw bytes cannot prove that "disk" is absent
+        assertNull(BytePrefilter.create(new CompiledFilterSet(List.of("literal-ci:disk")), StandardCharsets.UTF_8));
+        assertNotNull(BytePrefilter.create(new CompiledFilterSet(List.of("literal-ci:error")), StandardCharsets.UTF_8));
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.FilterHandler;
+import main.core.SpscRing;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("alfa-pipeline", ".log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    @DisplayName("SpscRing: Items should arrive complete and in order through a small ring")
+    void spscRing_ShouldKeepOrder() throws InterruptedException {
+        SpscRing<Integer> ring = new SpscRing<>(4);
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                for (int attempt = 0; !ring.offer(i); attempt++) {
+                    SpscRing.idle(attempt);
+                }
+            }
+        });
+        producer.start();
+        for (int expected = 0, attempt = 0; expected < count; ) {
+            Integer item = ring.poll();
+            if (item == null) {
+                SpscRing.idle(attempt++);
+                continue;
+            }
+            attempt = 0;
+            assertEquals(expected++, item.intValue());
+        }
+        producer.join();
+        assertTrue(ring.isEmpty());
+    }
+
+    /**
+     * A pipelined handler must deliver the same lines in the same order, save the same offsets and count
+     * the same lines as a plain one: across runs with a byte budget, appended data, a line longer than a
+     * chunk and an unterminated last line.
+     */
+    @Test
+    @DisplayName("Pipeline: Pipelined runs should deliver the same matches and offsets as plain runs")
+    void pipelined_ShouldMatchPlainRuns() throws IOException {
+        List<String> content = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            content.add("[" + (i % 7 == 0 ? "ERROR" : "INFO") + "] request " + i + " " + "x".repeat(i % 61));
+            if (i == 12_345) {
+                content.add("[ERROR] huge " + "y".repeat(200_000));
+            }
+        }
+        List<List<String>> results = new ArrayList<>();
+        List<List<Long>> offsets = new ArrayList<>();
+        for (int workers : new int[]{0, 3}) {
+            List<String> delivered = new ArrayList<>();
+            long linesRead = 0;
+            AlfaResultHandler handler = new AlfaResultHandler() {
+                @Override
+                public void onLogFiltered(String logLine, String keyword) {
+                    delivered.add(keyword + "|" + logLine);
+                }
+
+                @Override
+                public void onError(String pathSymbol, Exception e) {
+                    fail(pathSymbol + ": " + e);
+                }
+            };
+            AlfaConfig config = new AlfaConfig(handler, Map.of("LOG", file.toString()),
+                    Map.of("LOG", Set.of("ERROR")), null, null, null, StandardCharsets.UTF_8, false);
+            config.setPipelineWorkers("LOG", workers);
+            config.setMaxBytesPerRun(300_000);
+            Files.write(file, content);
+            FilterHandler filterHandler = new FilterHandler(config, "LOG");
+            List<Long> runOffsets = new ArrayList<>();
+            try {
+                do {
+                    filterHandler.doFilter();
+                    linesRead += filterHandler.getLastBatchStats().getLinesRead();
+                    runOffsets.add(config.getLastReadPositions().get("LOG"));
+                } while (filterHandler.hasBacklog());
+                // appended while idle, the last line without its newline
+                Files.write(file, "[ERROR] appended\n[ERROR] unterminated".getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+                filterHandler.doFilter();
+                linesRead += filterHandler.getLastBatchStats().getLinesRead();
+                runOffsets.add(config.getLastReadPositions().get("LOG"));
+            } finally {
+                filterHandler.close();
+            }
+            assertEquals(Files.size(file), runOffsets.get(runOffsets.size() - 1));
+            assertEquals(content.size() + 2, linesRead);
+            results.add(delivered);
+            offsets.add(runOffsets);
+        }
+        assertEquals(results.get(0), results.get(1));
+        assertEquals(offsets.get(0), offsets.get(1));
+        assertTrue(results.get(0).contains("ERROR|[ERROR] unterminated"));
+    }
+}
@@ -0,0 +1,92 @@
+package test.core;
+
+import main.agent.AlfaAgent;
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.PoolMetrics;
+import main.core.PoolTuner;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoolTunerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    @DisplayName("Pool Tuner: Should grow blocking pools with waiting tasks, hold CPU-bound ones and shrink idle ones")
+    void nextSize_ShouldFollowBlockingRatioAndLoad() {
+        // 80% of the run time blocked: 4 cores * (1 + 4) = 20 threads
+        int blocking = PoolTuner.targetSize(4, 1000 * MS, 500 * MS, 300 * MS);
+        assertEquals(20, blocking);
+        assertEquals(8, PoolTuner.nextSize(4, blocking, 4.0, 3, 1, 32), "Growth must be limited to doubling.");
+        assertEquals(16, PoolTuner.nextSize(8, blocking, 8.0, 3, 1, 16), "Growth must respect the upper bound.");
+
+        // pure matching: more threads than cores would only thrash
+        int cpuBound = PoolTuner.targetSize(4, 1000 * MS, 0, 0);
+        assertEquals(4, cpuBound);
+        assertEquals(4, PoolTuner.nextSize(4, cpuBound, 4.0, 10, 1, 32));
+
+        assertEquals(6, PoolTuner.nextSize(8, cpuBound, 0.5, 0, 1, 32), "Shrinking must go a quarter at a time.");
+        assertEquals(2, PoolTuner.nextSize(2, cpuBound, 0.0, 0, 2, 32), "Shrinking must respect the lower bound.");
+        assertEquals(8, PoolTuner.nextSize(8, 20, 7.5, 0, 1, 32), "A busy pool without waiting tasks must be kept.");
+    }
+
+    @Test
+    @DisplayName("Adaptive Pool: A slow handler on many files should grow the pool and show up in the metrics")
+    void adaptivePool_SlowHandler_ShouldGrow() throws Exception {
+        Path dir = Files.createTempDirectory("alfa-pool");
+        try {
+            Map<String, String> paths = new HashMap<>();
+            Map<String, Set<String>> filters = new HashMap<>();
+            for (int i = 0; i < 8; i++) {
+                Path file = dir.resolve("f" + i + ".log");
+                Files.writeString(file, "[ERROR] x\n".repeat(5000));
+                paths.put("F" + i, file.toString());
+                filters.put("F" + i, Set.of("ERROR"));
+            }
+            AlfaResultHandler slow = new AlfaResultHandler() {
+                @Override
+                public void onLogFiltered(String logLine, String keyword) {
+                }
+
+                @Override
+                public void onBatchComplete(List<String> filteredLines, String symbol) {
+                    try {
+                        Thread.sleep(200); // a remote sink
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            AlfaConfig config = new AlfaConfig(slow, paths, filters, 1, 1, null, null, false);
+            config.setAdaptivePool(true);
+            config.setMinPoolSize(1);
+            config.setMaxPoolSize(8);
+            config.setPoolAdjustIntervalSeconds(1);
+            AlfaAgent agent = new AlfaAgent(config);
+            agent.start();
+            try {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (agent.getPoolMetrics().getPoolSize() == 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(50);
+                }
+                PoolMetrics metrics = agent.getPoolMetrics();
+                assertTrue(metrics.getPoolSize() > 1, "The pool must grow: " + metrics);
+                assertTrue(metrics.getHandlerShare() > 0.5, "The handler must dominate the busy time: " + metrics);
+                assertTrue(metrics.getResizes() >= 1);
+            } finally {
+                agent.stop();
+            }
+        } finally {
+            try (var files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.FilterHandler;
+import main.core.LineReader;
+import main.core.ReadAhead;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadAheadTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // the working directory is more likely than /tmp to be on a file system with O_DIRECT
+        file = Files.createTempFile(Path.of("."), "alfa-readahead", ".log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Lines and offsets through small read-ahead chunks must be the same as with plain reads,
+     * including lines that span chunks and lines appended between runs.
+     */
+    @Test
+    @DisplayName("Read-Ahead: Chunked reads should give the same lines and offsets as plain reads")
+    void readAhead_ShouldMatchPlainReads() throws IOException {
+        for (boolean direct : new boolean[]{false, true}) {
+            Files.write(file, lines(0, 3000));
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r");
+                 RandomAccessFile plainRaf = new RandomAccessFile(file.toFile(), "r")) {
+                ReadAhead readAhead = new ReadAhead(file, 4096, direct);
+                LineReader chunked = new LineReader(raf, StandardCharsets.UTF_8, 1024, readAhead);
+                LineReader plain = new LineReader(plainRaf, StandardCharsets.UTF_8, 1024);
+
+                long offset = assertSameLines(plain, chunked, 0, 3000);
+                chunked.release();
+                plain.release();
+
+                // the file grows while the reader is idle, as when tailing
+                Files.write(file, lines(3000, 500), StandardOpenOption.APPEND);
+                offset = assertSameLines(plain, chunked, offset, 500);
+                assertEquals(Files.size(file), offset);
+
+                // a seek back into a chunk already dropped
+                assertSameLines(plain, chunked, offset / 3, -1);
+                chunked.release();
+                plain.release();
+                readAhead.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Read-Ahead: FilterHandler with read-ahead should deliver every match once")
+    void filterHandler_WithReadAhead_ShouldDeliverAllMatches() throws IOException {
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        AlfaResultHandler handler = new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                delivered.add(logLine);
+            }
+
+            @Override
+            public void onError(String pathSymbol, Exception e) {
+                fail(pathSymbol + ": " + e);
+            }
+        };
+        AlfaConfig config = new AlfaConfig(handler, Map.of("LOG", file.toString()), Map.of("LOG", Set.of("오류")),
+                null, null, null, StandardCharsets.UTF_8, false);
+        config.setReadAheadBytes(8192);
+        config.setDirectIo(true);
+
+        Files.write(file, lines(0, 2000));
+        FilterHandler filterHandler = new FilterHandler(config, "LOG");
+        try {
+            filterHandler.doFilter();
+            Files.write(file, lines(2000, 1000), StandardOpenOption.APPEND);
+            filterHandler.doFilter();
+        } finally {
+            filterHandler.close();
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (String line : lines(0, 3000)) {
+            if (line.contains("오류")) {
+                expected.add(line);
+            }
+        }
+        assertEquals(expected, delivered);
+        assertEquals(Files.size(file), config.getLastReadPositions().get("LOG"));
+    }
+
+    private static long assertSameLines(LineReader plain, LineReader chunked, long from, int expectedLines)
+            throws IOException {
+        plain.seek(from);
+        chunked.seek(from);
+        int count = 0;
+        while (true) {
+            String expected = plain.readLine();
+            assertEquals(expected, chunked.readLine());
+            assertEquals(plain.position(), chunked.position());
+            if (expected == null) {
+                break;
+            }
+            count++;
+        }
+        if (expectedLines >= 0) {
+            assertEquals(expectedLines, count);
+        }
+        return chunked.position();
+    }
+
+    private static List<String> lines(int from, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            // varying lengths so lines end at every offset within a chunk
+            lines.add("[INFO] line " + i + " " + "x".repeat(i % 97) + (i % 13 == 0 ? " 오류" : ""));
+        }
+        return lines;
+    }
+}
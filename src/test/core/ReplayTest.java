@@ -0,0 +1,210 @@
+package test.core;
+
+import main.config.AlfaResultHandler;
+import main.config.BatchStats;
+import main.replay.ReplayEngine;
+import main.replay.ReplayResult;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("alfa-replay");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static class Recorder implements AlfaResultHandler {
+        final List<String> lines = new ArrayList<>();
+        final List<String> symbols = new ArrayList<>();
+        long linesRead;
+
+        @Override
+        public void onLogFiltered(String logLine, String keyword) {
+            lines.add(keyword + "|" + logLine);
+        }
+
+        @Override
+        public void onBatchComplete(List<String> filteredLines, String symbol, BatchStats stats) {
+            symbols.add(symbol);
+            linesRead += stats.getLinesRead();
+        }
+
+        @Override
+        public void onError(String pathSymbol, Exception e) {
+            fail(pathSymbol + ": " + e);
+        }
+    }
+
+    /**
+     * Small chunks on many threads must give the same lines in the same order as a single sequential pass,
+     * for plain files and archives alike.
+     */
+    @Test
+    @DisplayName("Replay: Parallel chunks should emit the same matches in the same order as one sequential pass")
+    void replay_Parallel_ShouldMatchSequentialOrder() throws IOException, InterruptedException {
+        Path first = write("a.log", lines(0, 5000));
+        Path second = writeGzip("b.log.gz", lines(5000, 3000));
+        List<String> filters = List.of("ERROR", "literal:timeout");
+
+        Recorder expected = new Recorder();
+        for (String line : lines(0, 8000)) {
+            String keyword = line.contains("ERROR") ? "ERROR" : line.contains("timeout") ? "literal:timeout" : null;
+            if (keyword != null) {
+                expected.lines.add(keyword + "|" + line);
+            }
+        }
+
+        Recorder recorder = new Recorder();
+        ReplayEngine engine = new ReplayEngine(recorder, filters);
+        engine.setParallelism(4);
+        engine.setChunkBytes(1000);
+        ReplayResult result = engine.replay(List.of(first, second));
+
+        assertEquals(expected.lines, recorder.lines);
+        assertEquals(lines(0, 8000).size(), recorder.linesRead);
+        assertEquals(0, result.getFailedChunks());
+        assertEquals(expected.lines.size(), result.getMatches());
+        assertEquals("b.log.gz", recorder.symbols.get(recorder.symbols.size() - 1));
+        assertTrue(result.getChunks() > 10);
+    }
+
+    @Test
+    @DisplayName("Replay: Time and byte ranges should keep only the lines inside them")
+    void replay_Ranges_ShouldKeepLinesInside() throws IOException, InterruptedException {
+        List<String> lines = lines(0, 20000);
+        Path file = write("a.log", lines);
+        Path archive = writeGzip("a.log.gz", lines);
+
+        // one line per second; seconds [12000, 12100)
+        Instant from = BASE.plusSeconds(12000).toInstant(ZoneOffset.UTC);
+        Instant to = BASE.plusSeconds(12100).toInstant(ZoneOffset.UTC);
+        List<String> expected = new ArrayList<>();
+        LocalDateTime time = null;
+        for (String line : lines) {
+            if (Character.isDigit(line.charAt(0))) {
+                time = LocalDateTime.parse(line.substring(0, 19));
+            }
+            Instant instant = time.toInstant(ZoneOffset.UTC);
+            if (!instant.isBefore(from) && instant.isBefore(to) && line.contains("ERROR")) {
+                expected.add("ERROR|" + line);
+            }
+        }
+        for (Path input : List.of(file, archive)) {
+            Recorder recorder = new Recorder();
+            ReplayEngine engine = new ReplayEngine(recorder, List.of("ERROR"));
+            engine.setChunkBytes(4096);
+            engine.setTimestampFormat(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"), ZoneOffset.UTC);
+            engine.setTimeRange(from, to);
+            ReplayResult result = engine.replay(List.of(input));
+            assertEquals(expected, recorder.lines, input.toString());
+            if (input == file) {
+                // the binary search leaves only a small part of the file to read
+                assertTrue(result.getBytes() < Files.size(file) / 4, result.toString());
+            }
+        }
+
+        // byte range: lines that start inside [from, to), the line crossing 'from' excluded
+        long fromByte = Files.size(file) / 3 + 5;
+        long toByte = 2 * Files.size(file) / 3;
+        List<String> expectedBytes = new ArrayList<>();
+        long offset = 0;
+        for (String line : lines) {
+            if (offset >= fromByte && offset < toByte && line.contains("ERROR")) {
+                expectedBytes.add("ERROR|" + line);
+            }
+            offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        for (Path input : List.of(file, archive)) {
+            Recorder recorder = new Recorder();
+            ReplayEngine engine = new ReplayEngine(recorder, List.of("ERROR"));
+            engine.setChunkBytes(3000);
+            engine.setByteRange(fromByte, toByte);
+            engine.replay(List.of(input));
+            assertEquals(expectedBytes, recorder.lines, input.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Replay: A stack trace that runs past the end of the time range should be kept whole")
+    void replay_TimeRange_ShouldKeepStackTraceAcrossEnd() throws IOException, InterruptedException {
+        // the last event inside the range is followed by a trace whose last 100 lines (one probe) are wider
+        // than the binary search resolution, so the search ends inside the trace
+        List<String> lines = new ArrayList<>(lines(0, 12100));
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            String frame = "\tat com.example.Deep.call(Deep.java:" + i + ") " + "x".repeat(1000);
+            lines.add(frame);
+            expected.add("literal:Deep|" + frame);
+        }
+        lines.addAll(lines(12100, 8000));
+        Path file = write("a.log", lines);
+
+        Recorder recorder = new Recorder();
+        ReplayEngine engine = new ReplayEngine(recorder, List.of("literal:Deep"));
+        engine.setChunkBytes(4096);
+        engine.setTimestampFormat(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"), ZoneOffset.UTC);
+        engine.setTimeRange(BASE.plusSeconds(12000).toInstant(ZoneOffset.UTC), BASE.plusSeconds(12100).toInstant(ZoneOffset.UTC));
+        engine.replay(List.of(file));
+
+        assertEquals(expected, recorder.lines, "Every frame of the trace must be kept.");
+    }
+
+    private static List<String> lines(int from, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            String time = BASE.plusSeconds(i).toString();
+            if (time.length() == 16) {
+                time += ":00"; // LocalDateTime.toString drops zero seconds
+            }
+            String level = i % 11 == 0 ? "ERROR" : "INFO";
+            lines.add(time + " [" + level + "] request " + i + (i % 17 == 0 ? " timeout" : "") + " " + "x".repeat(i % 53));
+            if (i % 101 == 0) {
+                lines.add("\tat com.example.Service.call(Service.java:" + i + ") ERROR");
+            }
+        }
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        return Files.write(dir.resolve(name), lines);
+    }
+
+    private Path writeGzip(String name, List<String> lines) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,203 @@
+package test.core;
+
+import main.agent.AlfaAgent;
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.CheckpointStore;
+import main.sink.AlfaSink;
+import main.sink.SinkResultHandler;
+import org.junit.jupiter.api.*;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShutdownTest {
+
+    private static final int MATCHES = 300;
+
+    private Path tempDir;
+    private Path logFile;
+
+    // slow consumer, so that stop() always hits a run in progress
+    static class SlowHandler implements AlfaResultHandler {
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onLogFiltered(String logLine, String keyword) {
+            delivered.add(logLine);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onBatchComplete(List<String> filteredLines, String symbol) {
+        }
+    }
+
+    // remembers, for each flush, whether a checkpoint had already been written
+    static class FlushRecorder extends SlowHandler implements Flushable {
+        final List<Boolean> checkpointBeforeFlush = new CopyOnWriteArrayList<>();
+        final Path positions;
+
+        FlushRecorder(Path positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public void flush() {
+            checkpointBeforeFlush.add(Files.exists(positions));
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("alfa-shutdown");
+        logFile = tempDir.resolve("app.log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < MATCHES; i++) {
+            content.append("[ERROR] event ").append(i).append('\n').append("[INFO] noise ").append(i).append('\n');
+        }
+        Files.writeString(logFile, content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private AlfaAgent newAgent(SlowHandler handler) {
+        return new AlfaAgent(newConfig(handler));
+    }
+
+    private AlfaConfig newConfig(SlowHandler handler) {
+        AlfaConfig config = new AlfaConfig(handler, Map.of("APP", logFile.toString()), Map.of("APP", Set.of("ERROR")),
+                60, 1, null, null, false);
+        config.setCheckpointFile(tempDir.resolve("positions").toString());
+        return config;
+    }
+
+    @Test
+    @DisplayName("Drain: Stopping mid-run and restarting from the checkpoint should deliver every match exactly once")
+    void stop_MidRun_ShouldCheckpointExactly() throws Exception {
+        SlowHandler first = new SlowHandler();
+        AlfaAgent agent = newAgent(first);
+        agent.start();
+        Thread.sleep(150);
+        agent.stop();
+
+        assertTrue(first.delivered.size() > 0 && first.delivered.size() < MATCHES,
+                "The stop must interrupt the run part way, delivered " + first.delivered.size());
+        assertEquals(List.of("stop-scheduling", "drain", "flush", "checkpoint", "close"),
+                new ArrayList<>(agent.getLastShutdownTimings().keySet()));
+        assertTrue(agent.getLastShutdownTimings().get("drain") < 1000, "The run must stop after its current line.");
+
+        Map<String, Long> saved = new CheckpointStore(tempDir.resolve("positions")).load();
+        assertTrue(saved.get("APP") > 0);
+
+        SlowHandler second = new SlowHandler();
+        AlfaAgent restarted = newAgent(second);
+        restarted.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (first.delivered.size() + second.delivered.size() < MATCHES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        restarted.stop();
+
+        List<String> all = new ArrayList<>(first.delivered);
+        all.addAll(second.delivered);
+        assertEquals(MATCHES, all.size(), "No match may be lost or delivered twice.");
+        assertEquals(MATCHES, new HashSet<>(all).size());
+    }
+
+    @Test
+    @DisplayName("Drain: The periodic checkpoint should flush the handler before it saves the positions")
+    void periodicCheckpoint_ShouldFlushFirst() throws Exception {
+        Path positions = tempDir.resolve("positions");
+        FlushRecorder handler = new FlushRecorder(positions);
+        AlfaConfig config = newConfig(handler);
+        config.setCheckpointIntervalSeconds(1);
+        AlfaAgent agent = new AlfaAgent(config);
+        agent.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!Files.exists(positions) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(Files.exists(positions), "The periodic checkpoint must be written while running.");
+            assertFalse(handler.checkpointBeforeFlush.isEmpty(), "The periodic checkpoint must flush the handler.");
+            assertFalse(handler.checkpointBeforeFlush.get(0), "The flush must come before the first checkpoint.");
+        } finally {
+            agent.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Drain: A checkpoint taken in the middle of a run should not cover lines the sink still holds")
+    void checkpoint_MidRunCrash_ShouldNotLoseHeldLines() throws Exception {
+        Path positions = tempDir.resolve("positions");
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AlfaSink sink = new AlfaSink() {
+            @Override
+            public void write(List<String> records) {
+                sent.addAll(records);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AlfaAgent[] agent = new AlfaAgent[1];
+        List<String> sentAtCrash = new ArrayList<>();
+        Map<String, Long> savedAtCrash = new HashMap<>();
+        // holds the matches of a run until onBatchComplete, like every SinkResultHandler
+        SinkResultHandler handler = new SinkResultHandler(sink) {
+            int matches;
+
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+                super.onLogFiltered(logLine, keyword);
+                if (++matches == 100) {
+                    // a periodic checkpoint in the middle of a run, then the process dies: what was not sent is lost
+                    assertTrue(agent[0].flushAndCheckpoint());
+                    sentAtCrash.addAll(sent);
+                    try {
+                        savedAtCrash.putAll(new CheckpointStore(positions).load());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        };
+        AlfaConfig config = new AlfaConfig(handler, Map.of("APP", logFile.toString()), Map.of("APP", Set.of("ERROR")),
+                60, 1, null, null, false);
+        config.setCheckpointFile(positions.toString());
+        // several runs, so that the crash comes after completed ones
+        config.setMaxBytesPerRun(2000);
+        agent[0] = new AlfaAgent(config);
+        agent[0].start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (sent.size() < MATCHES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        agent[0].stop();
+
+        long checkpoint = savedAtCrash.getOrDefault("APP", 0L);
+        assertTrue(checkpoint > 0, "Runs completed before the crash must be checkpointed.");
+        String covered = new String(Arrays.copyOf(Files.readAllBytes(logFile), (int) checkpoint), StandardCharsets.UTF_8);
+        long matchesCovered = covered.lines().filter(line -> line.contains("ERROR")).count();
+        assertEquals(matchesCovered, sentAtCrash.size(),
+                "Every match before the checkpointed position must have reached the sink before the crash.");
+    }
+}
@@ -0,0 +1,172 @@
+package test.core;
+
+import main.sink.AlfaSink;
+import main.sink.RollingFileSink;
+import main.sink.SinkCodec;
+import main.sink.SinkResultHandler;
+import main.sink.TcpLineSink;
+import main.sink.UnixSocketSink;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SinkTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("alfa-sink");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // simulates one task run of a worker thread
+    private static void run(SinkResultHandler handler, String symbol, String... lines) {
+        for (String line : lines) {
+            handler.onLogFiltered(line, "ERROR");
+        }
+        handler.onBatchComplete(Arrays.asList(lines), symbol);
+    }
+
+    @Test
+    @DisplayName("Rolling File Sink: Should roll gzip files and keep every record readable")
+    void rollingFileSink_ShouldRollAndKeepRecords() throws IOException {
+        RollingFileSink sink = new RollingFileSink(tempDir, "alfa", 200, 10, SinkCodec.GZIP);
+        SinkResultHandler handler = new SinkResultHandler(sink);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String line = "[ERROR] run " + i + " " + "x".repeat(100);
+            run(handler, "APP", line);
+            expected.add("APP\tERROR\t" + line);
+        }
+        handler.close();
+
+        assertTrue(Files.exists(sink.file(1)), "The sink should have rolled at least once.");
+        List<String> actual = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            if (Files.exists(sink.file(i))) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(sink.file(i))), StandardCharsets.UTF_8))) {
+                    reader.lines().forEach(actual::add);
+                }
+            }
+        }
+        assertEquals(expected, actual, "Rolled files read oldest first must contain every record in order.");
+    }
+
+    @Test
+    @DisplayName("TCP Sink: Should buffer while the server is down and deliver in order after reconnecting")
+    void tcpSink_ServerDown_ShouldReconnectAndDeliver() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort(); // free port, nobody listens yet
+        }
+        SinkResultHandler handler = new SinkResultHandler(
+                new TcpLineSink("127.0.0.1", port, SinkCodec.NONE, 500, 10, 50), 100, 0, 1000);
+
+        run(handler, "APP", "first", "second");
+        assertEquals(2, handler.getPendingCount(), "Records must stay pending while the server is down.");
+
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            Thread.sleep(100); // let the reconnect backoff expire
+            run(handler, "APP", "third");
+            assertEquals(0, handler.getPendingCount());
+            handler.close();
+
+            try (Socket client = server.accept();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+                assertEquals("APP\tERROR\tfirst", reader.readLine());
+                assertEquals("APP\tERROR\tsecond", reader.readLine());
+                assertEquals("APP\tERROR\tthird", reader.readLine());
+                assertNull(reader.readLine());
+            }
+        }
+        assertEquals(3L, handler.getSentCount());
+    }
+
+    @Test
+    @DisplayName("Unix Socket Sink: Should send length-prefixed gzip frames and drop the oldest records when full")
+    void unixSocketSink_ShouldFrameAndBoundBuffer() throws Exception {
+        Path socket = tempDir.resolve("alfa.sock");
+        SinkResultHandler handler = new SinkResultHandler(new UnixSocketSink(socket, SinkCodec.GZIP, 10, 50), 2, 0, 3);
+
+        run(handler, "SYS", "a", "b", "c", "d", "e");
+        assertEquals(3, handler.getPendingCount());
+        assertEquals(2L, handler.getDroppedCount(), "The two oldest records must be dropped.");
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread.sleep(100);
+            handler.close();
+
+            try (SocketChannel client = server.accept();
+                 DataInputStream in = new DataInputStream(Channels.newInputStream(client))) {
+                List<String> records = new ArrayList<>();
+                for (int frame = 0; frame < 2; frame++) {
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            new GZIPInputStream(new ByteArrayInputStream(payload)), StandardCharsets.UTF_8))) {
+                        reader.lines().forEach(records::add);
+                    }
+                }
+                assertEquals(Arrays.asList("SYS\tERROR\tc", "SYS\tERROR\td", "SYS\tERROR\te"), records);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Sink Handler: Matches of a failed run should keep their symbol, quiet sources should still be sent")
+    void sinkHandler_FailedRunAndLinger_ShouldAttributeAndSend() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        AlfaSink sink = new AlfaSink() {
+            @Override
+            public void write(List<String> records) {
+                sent.addAll(records);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SinkResultHandler handler = new SinkResultHandler(sink, 100, 200, 1000);
+        try {
+            // a run of APP fails after delivering a match, then a run of WEB completes on the same thread
+            handler.onLogFiltered("[ERROR] app", "ERROR");
+            handler.onError("APP", new IOException("read failed"));
+            run(handler, "WEB", "[ERROR] web");
+            assertEquals(2, handler.getPendingCount() + sent.size());
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (sent.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of("APP\tERROR\t[ERROR] app", "WEB\tERROR\t[ERROR] web"), sent,
+                    "The timer must send lingering records without another run.");
+        } finally {
+            handler.close();
+        }
+    }
+}
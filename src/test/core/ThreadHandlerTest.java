@@ -0,0 +1,83 @@
+package test.core;
+
+import main.config.AlfaConfig;
+import main.config.AlfaResultHandler;
+import main.core.LogFilterTask;
+import main.core.ThreadHandler;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThreadHandlerTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("alfa-init");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Initialization: A missing source should not block the others and should come up after a retry")
+    void initializeTasks_MissingSource_ShouldRetryInBackground() throws Exception {
+        Path present = Files.writeString(tempDir.resolve("present.log"), "[INFO] ok\n");
+        Path missing = tempDir.resolve("missing.log");
+        List<String> errors = new CopyOnWriteArrayList<>();
+        AlfaResultHandler handler = new AlfaResultHandler() {
+            @Override
+            public void onLogFiltered(String logLine, String keyword) {
+            }
+
+            @Override
+            public void onError(String pathSymbol, Exception e) {
+                errors.add(pathSymbol);
+            }
+        };
+        Map<String, String> paths = new HashMap<>();
+        paths.put("PRESENT", present.toString());
+        paths.put("MISSING", missing.toString());
+        Map<String, Set<String>> filters = new HashMap<>();
+        filters.put("PRESENT", Set.of("ERROR"));
+        filters.put("MISSING", Set.of("ERROR"));
+        AlfaConfig config = new AlfaConfig(handler, paths, filters, 1, 1, null, null, false);
+        config.setSourceRetryIntervalSeconds(1);
+
+        ThreadHandler threadHandler = new ThreadHandler(config);
+        try {
+            threadHandler.initializeTasks();
+            List<LogFilterTask> late = new CopyOnWriteArrayList<>();
+            List<LogFilterTask> ready = threadHandler.onTaskReady(late::add);
+
+            assertEquals(1, ready.size());
+            assertEquals("PRESENT", ready.get(0).getPathSymbol());
+            assertEquals(Set.of("MISSING"), threadHandler.getPendingSymbols());
+            assertEquals(List.of("MISSING"), errors, "The missing source must be reported once.");
+
+            Files.writeString(missing, "[ERROR] late\n");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (late.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, late.size(), "The retried source must be handed to the listener.");
+            assertEquals("MISSING", late.get(0).getPathSymbol());
+            assertTrue(threadHandler.getPendingSymbols().isEmpty());
+            assertEquals(2, threadHandler.getRunnableTasks().size());
+        } finally {
+            threadHandler.closeTasks();
+        }
+        assertTrue(threadHandler.getRunnableTasks().isEmpty(), "Closed tasks must not be scheduled again on restart.");
+    }
+}
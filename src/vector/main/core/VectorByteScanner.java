@@ -0,0 +1,68 @@
+package main.core;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ByteScanner on the incubating Vector API: compares SPECIES_PREFERRED lanes at once
+ * (32 bytes with AVX2, 64 bytes with AVX-512).
+ * Only loaded through ByteScanners when the jdk.incubator.vector module is present
+ * (java --add-modules jdk.incubator.vector). It lives in its own source root, src/vector, so the default build
+ * needs no incubator module; compile it with the same flag on top of the main classes (see Readme 4.1).
+ */
+public class VectorByteScanner implements ByteScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final ScalarByteScanner tail = new ScalarByteScanner();
+
+    @Override
+    public int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> hits = ByteVector.fromByteBuffer(SPECIES, buf, i, ByteOrder.nativeOrder()).eq(b);
+            if (hits.anyTrue()) {
+                return i + hits.firstTrue();
+            }
+        }
+        return tail.indexOf(buf, i, to, b);
+    }
+
+    @Override
+    public int indexOfAny(ByteBuffer buf, int from, int to, byte[] set) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, buf, i, ByteOrder.nativeOrder());
+            VectorMask<Byte> hits = v.eq(set[0]);
+            for (int k = 1; k < set.length; k++) {
+                hits = hits.or(v.eq(set[k]));
+            }
+            if (hits.anyTrue()) {
+                return i + hits.firstTrue();
+            }
+        }
+        return tail.indexOfAny(buf, i, to, set);
+    }
+
+    @Override
+    public int count(ByteBuffer buf, int from, int to, byte b) {
+        int count = 0;
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            count += ByteVector.fromByteBuffer(SPECIES, buf, i, ByteOrder.nativeOrder()).eq(b).trueCount();
+        }
+        return count + tail.count(buf, i, to, b);
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize() + "bit";
+    }
+}